@@ -6,9 +6,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.ToIntFunction;
 
+import eu.aston.javajs.types.JsArray;
 import eu.aston.javajs.types.JsFunction;
+import eu.aston.javajs.types.JsIterator;
+import eu.aston.javajs.types.JsMap;
 import eu.aston.javajs.types.JsOps;
+import eu.aston.javajs.types.JsRope;
+import eu.aston.javajs.types.JsSet;
 import eu.aston.javajs.types.JsTypes;
 import eu.aston.javajs.types.Undefined;
 
@@ -39,6 +45,12 @@ public class AstNodes {
         }
     }
 
+    // value of the node for .length, + and string concatenation, an identifier gives its JsRope without flattening
+    public static Object sequenceValue(ASTNode node, Scope scope) {
+        return node instanceof IdentifierNode identifier ? identifier.slotValue(scope) : wrapOptionalNotFound(node,
+                                                                                                             scope);
+    }
+
     public static boolean wrapBreakBlock(ASTNode node, Scope scope) {
         try {
             node.exec(scope);
@@ -55,16 +67,28 @@ public class AstNodes {
     public static class ProgramNode extends BlockNode {
         public final BlockNode blockNode;
         public final Scope.ScopeDef scopeDef;
+        // first lines of the statements of a CompiledScript, null when the nodes hold absolute lines
+        public final ToIntFunction<Object> segmentLines;
 
         public ProgramNode(BlockNode blockNode, Scope.ScopeDef scopeDef) {
+            this(blockNode, scopeDef, null);
+        }
+
+        public ProgramNode(BlockNode blockNode, Scope.ScopeDef scopeDef, ToIntFunction<Object> segmentLines) {
             this.blockNode = blockNode;
             this.scopeDef = scopeDef;
+            this.segmentLines = segmentLines;
         }
 
         @Override
         public Object exec(Scope scope) {
-            Scope newScope = new Scope(scope, scopeDef.size(), null);
-            return blockNode.exec(newScope);
+            Scope newScope = scopeDef.createScope(scope, null);
+            newScope.segmentLines(segmentLines);
+            try {
+                return blockNode.exec(newScope);
+            } catch (ExecuteScriptException e) {
+                throw e.locate(newScope);
+            }
         }
     }
 
@@ -410,9 +434,16 @@ public class AstNodes {
         @Override
         public Object exec(Scope scope) {
             Object value = wrapOptionalNotFound(expression, scope);
-            if (value instanceof List list) {
+            Iterable<?> items = switch (value) {
+                case List<?> list -> list;
+                case JsIterator iterator -> iterator;
+                case JsSet set -> set.values();
+                case JsMap map -> map.entryArrays();
+                case null, default -> null;
+            };
+            if (items != null) {
                 int step = 0;
-                for (Object o : list) {
+                for (Object o : items) {
                     variableName.setValue(scope, o);
                     if (wrapBreakBlock(body, scope)) {
                         break;
@@ -454,15 +485,57 @@ public class AstNodes {
         }
     }
 
+    private static final Map<Object, Integer> SEQUENTIAL_CASES = Map.of();
+    private static final Object NULL_CASE = new Object();
+
     public static class SwitchStatementNode extends ASTNode {
         public final ASTNode discriminant;
         public final List<SwitchCaseNode> cases = new ArrayList<>();
         public ASTNode defaultCase;
 
+        // index of the first case for every constant test, SEQUENTIAL_CASES when a test has to be evaluated
+        private Map<Object, Integer> jumpTable;
+
         public SwitchStatementNode(ASTNode discriminant) {
             this.discriminant = discriminant;
         }
 
+        private Map<Object, Integer> createJumpTable() {
+            Map<Object, Integer> table = new HashMap<>();
+            for (int i = 0; i < cases.size(); i++) {
+                if (!(cases.get(i).test instanceof ConstantNode constant)) {
+                    return SEQUENTIAL_CASES;
+                }
+                Object key = switchKey(constant.value);
+                if (key == null) {
+                    return SEQUENTIAL_CASES;
+                }
+                table.putIfAbsent(key, i);
+            }
+            return Map.copyOf(table);
+        }
+
+        // key with the strictEqual semantics, numbers of any type with the same value have the same key
+        private static Object switchKey(Object value) {
+            if (value instanceof String || value instanceof Boolean || value == Undefined.INSTANCE) {
+                return value;
+            }
+            if (value == null) {
+                return NULL_CASE;
+            }
+            if (value instanceof Double || value instanceof Float) {
+                double d = ((Number) value).doubleValue();
+                if (Double.isNaN(d)) {
+                    return null;
+                }
+                return d == (long) d ? (Object) (long) d : (Object) d;
+            }
+            if (value instanceof Number number) {
+                return number.longValue();
+            }
+            return null;
+        }
+
         public void addCase(SwitchCaseNode node) {
             cases.add(node);
         }
@@ -474,10 +547,30 @@ public class AstNodes {
         @Override
         public Object exec(Scope scope) {
             Object discriminantValue = wrapOptionalNotFound(discriminant, scope);
+            Map<Object, Integer> table = jumpTable;
+            if (table == null) {
+                table = createJumpTable();
+                jumpTable = table;
+            }
+            if (table != SEQUENTIAL_CASES) {
+                Object key = switchKey(discriminantValue);
+                Integer start = key != null ? table.get(key) : null;
+                if (start != null) {
+                    for (int i = start; i < cases.size(); i++) {
+                        if (wrapBreakBlock(cases.get(i), scope)) {
+                            return null;
+                        }
+                    }
+                }
+                if (defaultCase != null) {
+                    wrapBreakBlock(defaultCase, scope);
+                }
+                return null;
+            }
             boolean switched = false;
             for (SwitchCaseNode caseNode : cases) {
-                Object caseValue = caseNode.test.exec(scope);
-                if (switched || JsOps.strictEqual(discriminantValue, caseValue)) {
+                // tests after the matched case are not evaluated
+                if (switched || JsOps.strictEqual(discriminantValue, caseNode.test.exec(scope))) {
                     switched = true;
                     if (wrapBreakBlock(caseNode, scope)) {
                         return null;
@@ -559,7 +652,7 @@ public class AstNodes {
             } catch (BreakBlockException e) {
                 throw e;
             } catch (ExecuteScriptException e) {
-                Object throwValue = e.throwValue() != null ? e.throwValue() : e.getMessage();
+                Object throwValue = e.throwValue() != null ? e.throwValue() : e.locate(scope).getMessage();
                 if (catchClause != null) {
                     if (catchClause.param != null) {
                         catchClause.param.setValue(scope, throwValue);
@@ -632,11 +725,19 @@ public class AstNodes {
                 if (operand == null) {
                     throw new JsParser.SyntaxError("Invalid operator " + operator);
                 }
-                this.operatorFunction = (scope) -> {
-                    Object leftValue = wrapOptionalNotFound(left, scope);
-                    Object rightValue = wrapOptionalNotFound(right, scope);
-                    return operand.apply(leftValue, rightValue);
-                };
+                if (operator.equals("+")) {
+                    this.operatorFunction = (scope) -> {
+                        Object leftValue = sequenceValue(left, scope);
+                        Object rightValue = sequenceValue(right, scope);
+                        return operand.apply(leftValue, rightValue);
+                    };
+                } else {
+                    this.operatorFunction = (scope) -> {
+                        Object leftValue = wrapOptionalNotFound(left, scope);
+                        Object rightValue = wrapOptionalNotFound(right, scope);
+                        return operand.apply(leftValue, rightValue);
+                    };
+                }
             }
         }
 
@@ -648,17 +749,37 @@ public class AstNodes {
 
     public static class StringConcatExpressionNode extends ASTNode implements ExecuteWithReturn {
         public final List<ASTNode> items;
+        // constant parts are kept as strings, the builder is sized for them and a guess for the others
+        private final ASTNode[] parts;
+        private final String[] constants;
+        private final int capacity;
 
         public StringConcatExpressionNode(List<ASTNode> items) {
             this.items = items;
+            this.parts = items.toArray(new ASTNode[0]);
+            this.constants = new String[parts.length];
+            int length = 0;
+            for (int i = 0; i < parts.length; i++) {
+                if (parts[i] instanceof ConstantNode c && (c.value instanceof String || c.value instanceof Number)) {
+                    constants[i] = JsTypes.toString(c.value);
+                    length += constants[i].length();
+                } else {
+                    length += 16;
+                }
+            }
+            this.capacity = length;
         }
 
         @Override
         public Object exec(Scope scope) {
-            StringBuilder sb = new StringBuilder();
-            for (ASTNode item : items) {
-                Object value = item.exec(scope);
-                sb.append(JsTypes.toString(value));
+            StringBuilder sb = new StringBuilder(capacity);
+            for (int i = 0; i < parts.length; i++) {
+                if (constants[i] != null) {
+                    sb.append(constants[i]);
+                } else {
+                    JsTypes.appendString(sb, parts[i] instanceof IdentifierNode identifier ? identifier.slotValue(scope)
+                                                                                           : parts[i].exec(scope));
+                }
             }
             return sb.toString();
         }
@@ -669,11 +790,18 @@ public class AstNodes {
         public final String operator;
         public final ASTNode right;
         public final BiFunction<GetSet, Object, Object> assignmentFunction;
+        // expression statement, its value is not used
+        public final boolean statement;
 
         public AssignmentExpressionNode(ASTNode left, String operator, ASTNode right) {
+            this(left, operator, right, false);
+        }
+
+        public AssignmentExpressionNode(ASTNode left, String operator, ASTNode right, boolean statement) {
             this.left = left;
             this.operator = operator;
             this.right = right;
+            this.statement = statement;
             if (operator.equals("=")) {
                 assignmentFunction = (leftGetSet, rightValue) -> {
                     leftGetSet.setter().accept(rightValue);
@@ -697,6 +825,15 @@ public class AstNodes {
         @Override
         public Object exec(Scope scope) {
             try {
+                if (statement && left instanceof IdentifierNode identifier && operator.equals("+=")) {
+                    Object leftValue = identifier.slotValue(scope);
+                    if (leftValue instanceof JsRope || leftValue instanceof String) {
+                        // string built in a loop is appended to a rope instead of copied by every +=
+                        JsRope rope = leftValue instanceof JsRope r ? r : new JsRope((String) leftValue);
+                        identifier.set(scope, rope.append(JsTypes.toString(right.exec(scope))));
+                        return null;
+                    }
+                }
                 GetSet leftGetSet = ((GetSetReturn) left).createGetSet(scope);
                 Object rightValue = right.exec(scope);
                 return assignmentFunction.apply(leftGetSet, rightValue);
@@ -789,6 +926,8 @@ public class AstNodes {
         public final TokenPos tokenPos;
         public Scope.IGetSet scopeGetSet;
         public boolean wasAssigned;
+        // declaration of the const variable this identifier is linked to
+        public VariableDeclarationNode constDeclaration;
 
         public IdentifierNode(String name, TokenPos tokenPos) {
             this.name = name;
@@ -806,6 +945,12 @@ public class AstNodes {
         }
 
         public Object get(Scope scope) {
+            Object value = slotValue(scope);
+            return value instanceof JsRope rope ? rope.toString() : value;
+        }
+
+        // value in the variable slot, a string built by += statements is kept as JsRope
+        public Object slotValue(Scope scope) {
             try {
                 return scopeGetSet.get(scope);
             } catch (RuntimeException e) {
@@ -840,7 +985,7 @@ public class AstNodes {
 
         @Override
         public Object exec(Scope scope) {
-            List<Object> array = new ArrayList<>();
+            List<Object> array = new JsArray(elements.size());
             for (ASTNode element : elements) {
                 array.add(wrapOptionalNotFound(element, scope));
             }
@@ -927,7 +1072,9 @@ public class AstNodes {
 
         @Override
         public GetSet createGetSet(Scope scope) {
-            Object parent = object.exec(scope);
+            // a JsRope parent answers length and index reads without flattening
+            Object parent = object instanceof IdentifierNode identifier ? identifier.slotValue(scope)
+                                                                        : object.exec(scope);
             Object property = staticProperty != null ? staticProperty
                                                      : dynamicProperty != null ? dynamicProperty.exec(scope) : null;
             return GetSet.createGetSet(parent, property, scope, tokenPos);
@@ -940,6 +1087,10 @@ public class AstNodes {
         public final JsFunction function;
         public final String name;
         public final TokenPos tokenPos;
+        public final List<String> params;
+        public final ASTNode body;
+        public final Scope.ScopeDef scopeDef;
+        public final boolean inlineThis;
         public Scope.IGetSet scopeGetSet;
 
         public FunctionDeclarationNode(String name, TokenPos tokenPos, List<String> params, ASTNode body,
@@ -947,6 +1098,10 @@ public class AstNodes {
             this.function = new JsFunction(name, params, new JsFunction.LocalFunctionExec(body), inlineThis, scopeDef);
             this.name = name;
             this.tokenPos = tokenPos;
+            this.params = params;
+            this.body = body;
+            this.scopeDef = scopeDef;
+            this.inlineThis = inlineThis;
         }
 
         @Override
@@ -972,14 +1127,22 @@ public class AstNodes {
             if (!(functionRaw instanceof JsFunction function)) {
                 throw new AstNodes.ExecuteScriptException(JsTypes.typeof(functionRaw) + " is not function", tokenPos);
             }
-            // Prepare arguments
-            List<Object> args = new ArrayList<>();
-            for (int i = 0; i < Math.max(arguments.size(), function.params().size()); i++) {
-                Object argValue = Undefined.INSTANCE;
-                if (i < arguments.size()) {
-                    argValue = wrapOptionalNotFound(arguments.get(i), scope);
+            int size = arguments.size();
+            int params = function.params().size();
+            Scope frame = function.positionalFrame(scope);
+            if (frame != null) {
+                // arguments go straight to the param slots, extra arguments are only evaluated
+                for (int i = 0; i < size; i++) {
+                    Object argValue = wrapOptionalNotFound(arguments.get(i), scope);
+                    if (i < params) {
+                        frame.setParam(i, argValue);
+                    }
                 }
-                args.add(argValue);
+                return function.execFrame(frame, Math.min(size, params));
+            }
+            Object[] args = new Object[Math.max(size, params)];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = i < size ? wrapOptionalNotFound(arguments.get(i), scope) : Undefined.INSTANCE;
             }
             return function.exec(scope, args);
         }
@@ -987,27 +1150,49 @@ public class AstNodes {
 
     public static class ExecuteScriptException extends RuntimeException {
         private final Object throwValue;
+        private TokenPos tokenPos;
 
         public ExecuteScriptException(String message, Object throwValue, TokenPos tokenPos) {
-            super(tokenPos != null ? message + " at line " + tokenPos.line() + ", column " + tokenPos.column()
-                                   : message);
+            super(message);
             this.throwValue = throwValue;
+            this.tokenPos = tokenPos;
         }
 
         public ExecuteScriptException(String message, TokenPos tokenPos) {
             this(message, null, tokenPos);
         }
 
+        // control flow of the script, thrown on every return or break so it has no stack trace
+        protected ExecuteScriptException(String message, Object throwValue) {
+            super(message, null, false, false);
+            this.throwValue = throwValue;
+        }
+
         public Object throwValue() {
             return throwValue;
         }
+
+        @Override
+        public String getMessage() {
+            return tokenPos != null ? super.getMessage() + " at line " + tokenPos.line() + ", column " +
+                    tokenPos.column() : super.getMessage();
+        }
+
+        // a node of a CompiledScript counts lines from its statement, the scope of the script running it gives the
+        // first line, so the message reports the line in that script
+        public ExecuteScriptException locate(Scope scope) {
+            if (tokenPos != null && tokenPos.segment() != null) {
+                tokenPos = scope.resolve(tokenPos);
+            }
+            return this;
+        }
     }
 
     public static class BreakBlockException extends ExecuteScriptException {
         private final boolean nextLoop;
 
         public BreakBlockException(boolean nextLoop) {
-            super(nextLoop ? "continue" : "break", null);
+            super(nextLoop ? "continue" : "break", (Object) null);
             this.nextLoop = nextLoop;
         }
 
@@ -1018,7 +1203,7 @@ public class AstNodes {
 
     public static class ReturnException extends ExecuteScriptException {
         public ReturnException(Object value) {
-            super("return", value, null);
+            super("return", value);
         }
     }
 
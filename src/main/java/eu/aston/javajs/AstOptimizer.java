@@ -0,0 +1,556 @@
+package eu.aston.javajs;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+import eu.aston.javajs.AstNodes.ASTNode;
+import eu.aston.javajs.AstNodes.ArrayLiteralNode;
+import eu.aston.javajs.AstNodes.AssignmentExpressionNode;
+import eu.aston.javajs.AstNodes.BinaryExpressionNode;
+import eu.aston.javajs.AstNodes.BlockNode;
+import eu.aston.javajs.AstNodes.CallExpressionNode;
+import eu.aston.javajs.AstNodes.CatchClauseNode;
+import eu.aston.javajs.AstNodes.ConditionalExpressionNode;
+import eu.aston.javajs.AstNodes.ConstantNode;
+import eu.aston.javajs.AstNodes.DestructuringArrayNode;
+import eu.aston.javajs.AstNodes.DestructuringObjectNode;
+import eu.aston.javajs.AstNodes.DoWhileStatementNode;
+import eu.aston.javajs.AstNodes.EmptyStatementNode;
+import eu.aston.javajs.AstNodes.ForInStatementNode;
+import eu.aston.javajs.AstNodes.ForOfStatementNode;
+import eu.aston.javajs.AstNodes.ForStatementNode;
+import eu.aston.javajs.AstNodes.FunctionDeclarationNode;
+import eu.aston.javajs.AstNodes.IdentifierNode;
+import eu.aston.javajs.AstNodes.IfStatementNode;
+import eu.aston.javajs.AstNodes.MemberExpressionNode;
+import eu.aston.javajs.AstNodes.ObjectLiteralNode;
+import eu.aston.javajs.AstNodes.OptionalNode;
+import eu.aston.javajs.AstNodes.ProgramNode;
+import eu.aston.javajs.AstNodes.PropertyNode;
+import eu.aston.javajs.AstNodes.ReturnStatementNode;
+import eu.aston.javajs.AstNodes.StringConcatExpressionNode;
+import eu.aston.javajs.AstNodes.SwitchCaseNode;
+import eu.aston.javajs.AstNodes.SwitchDefaultNode;
+import eu.aston.javajs.AstNodes.SwitchStatementNode;
+import eu.aston.javajs.AstNodes.ThrowStatementNode;
+import eu.aston.javajs.AstNodes.TryStatementNode;
+import eu.aston.javajs.AstNodes.UnaryExpressionNode;
+import eu.aston.javajs.AstNodes.VariableDeclarationNode;
+import eu.aston.javajs.AstNodes.VariableStatementNode;
+import eu.aston.javajs.AstNodes.WhileStatementNode;
+import eu.aston.javajs.types.JsOps;
+import eu.aston.javajs.types.JsTypes;
+import eu.aston.javajs.types.Undefined;
+
+/**
+ * Optimization pass over the linked AST. Constant expressions are folded with the JsOps semantics, const
+ * variables initialized with a constant are propagated, unreachable branches and switch cases are pruned and
+ * nested blocks are collapsed. Nodes are immutable, so a changed subtree is rebuilt and the others are shared.
+ * <p>
+ * Branches are only replaced by a subtree without optional chaining, because the replaced node converted an
+ * optional not found into undefined for its branch.
+ */
+public class AstOptimizer {
+
+    private static final Object NOT_CONSTANT = new Object();
+
+    private final Report report = new Report();
+    private final Map<VariableDeclarationNode, Object> constValues = new IdentityHashMap<>();
+
+    // counts of applied optimizations for one script
+    public static class Report {
+        public int foldedExpressions;
+        public int propagatedConstants;
+        public int prunedBranches;
+        public int prunedCases;
+        public int collapsedBlocks;
+
+        public int total() {
+            return foldedExpressions + propagatedConstants + prunedBranches + prunedCases + collapsedBlocks;
+        }
+
+        // adds the counts of other multiplied by sign, -1 removes a report added before
+        void add(Report other, int sign) {
+            foldedExpressions += sign * other.foldedExpressions;
+            propagatedConstants += sign * other.propagatedConstants;
+            prunedBranches += sign * other.prunedBranches;
+            prunedCases += sign * other.prunedCases;
+            collapsedBlocks += sign * other.collapsedBlocks;
+        }
+
+        @Override
+        public String toString() {
+            return "folded=" + foldedExpressions + ", constants=" + propagatedConstants + ", branches=" +
+                    prunedBranches + ", cases=" + prunedCases + ", blocks=" + collapsedBlocks;
+        }
+    }
+
+    public Report report() {
+        return report;
+    }
+
+    public ASTNode optimize(ASTNode node) {
+        return switch (node) {
+            case null -> null;
+            case ProgramNode n -> {
+                BlockNode block = block(n.blockNode);
+                yield block == n.blockNode ? n : new ProgramNode(block, n.scopeDef, n.segmentLines);
+            }
+            case BlockNode n -> block(n);
+            case VariableStatementNode n -> variableStatement(n);
+            case VariableDeclarationNode n -> variableDeclaration(n);
+            case DestructuringArrayNode n -> {
+                ASTNode right = optimize(n.right);
+                yield right == n.right ? n : new DestructuringArrayNode(n.variables, n.restVariable, right);
+            }
+            case DestructuringObjectNode n -> {
+                ASTNode right = optimize(n.right);
+                yield right == n.right ? n : new DestructuringObjectNode(n.variables, n.restVariable, right);
+            }
+            case IfStatementNode n -> ifStatement(n);
+            case WhileStatementNode n -> whileStatement(n);
+            case DoWhileStatementNode n -> {
+                ASTNode condition = optimize(n.condition);
+                ASTNode body = optimize(n.body);
+                yield condition == n.condition && body == n.body ? n : new DoWhileStatementNode(condition, body);
+            }
+            case ForStatementNode n -> forStatement(n);
+            case ForInStatementNode n -> {
+                ASTNode expression = optimize(n.expression);
+                ASTNode body = optimize(n.body);
+                yield expression == n.expression && body == n.body ? n
+                                                                  : new ForInStatementNode(n.variableName,
+                                                                                           expression, body);
+            }
+            case ForOfStatementNode n -> {
+                ASTNode expression = optimize(n.expression);
+                ASTNode body = optimize(n.body);
+                yield expression == n.expression && body == n.body ? n
+                                                                  : new ForOfStatementNode(n.variableName,
+                                                                                           expression, body);
+            }
+            case ReturnStatementNode n -> {
+                ASTNode expression = optimize(n.expression);
+                yield expression == n.expression ? n : new ReturnStatementNode(expression);
+            }
+            case SwitchStatementNode n -> switchStatement(n);
+            case ThrowStatementNode n -> {
+                ASTNode expression = optimize(n.expression);
+                yield expression == n.expression ? n : new ThrowStatementNode(expression, n.tokenPos);
+            }
+            case TryStatementNode n -> tryStatement(n);
+            case BinaryExpressionNode n -> binaryExpression(n);
+            case StringConcatExpressionNode n -> stringConcat(n);
+            case AssignmentExpressionNode n -> {
+                // the left side is a target, const propagation must not replace it
+                ASTNode right = optimize(n.right);
+                yield right == n.right ? n : new AssignmentExpressionNode(n.left, n.operator, right, n.statement);
+            }
+            case ConditionalExpressionNode n -> conditionalExpression(n);
+            case UnaryExpressionNode n -> unaryExpression(n);
+            case IdentifierNode n -> identifier(n);
+            case ArrayLiteralNode n -> {
+                List<ASTNode> elements = optimizeAll(n.elements);
+                yield elements == n.elements ? n : new ArrayLiteralNode(elements);
+            }
+            case ObjectLiteralNode n -> objectLiteral(n);
+            case OptionalNode n -> {
+                ASTNode object = optimize(n.object);
+                yield object == n.object ? n : new OptionalNode(object);
+            }
+            case MemberExpressionNode n -> memberExpression(n);
+            case FunctionDeclarationNode n -> functionDeclaration(n);
+            case CallExpressionNode n -> {
+                ASTNode callee = optimize(n.callee);
+                List<ASTNode> arguments = optimizeAll(n.arguments);
+                yield callee == n.callee && arguments == n.arguments ? n
+                                                                      : new CallExpressionNode(callee, arguments,
+                                                                                               n.tokenPos);
+            }
+            default -> node;
+        };
+    }
+
+    // returns the same list when no item has changed
+    private List<ASTNode> optimizeAll(List<ASTNode> nodes) {
+        List<ASTNode> result = null;
+        for (int i = 0; i < nodes.size(); i++) {
+            ASTNode node = nodes.get(i);
+            ASTNode optimized = optimize(node);
+            if (optimized != node && result == null) {
+                result = new ArrayList<>(nodes.subList(0, i));
+            }
+            if (result != null) {
+                result.add(optimized);
+            }
+        }
+        return result != null ? result : nodes;
+    }
+
+    private BlockNode block(BlockNode n) {
+        List<ASTNode> statements = new ArrayList<>(n.statements.size());
+        List<FunctionDeclarationNode> functions = new ArrayList<>(n.functions.size());
+        boolean changed = false;
+        for (FunctionDeclarationNode function : n.functions) {
+            FunctionDeclarationNode optimized = functionDeclaration(function);
+            changed |= optimized != function;
+            functions.add(optimized);
+        }
+        for (ASTNode statement : n.statements) {
+            ASTNode optimized = optimize(statement);
+            changed |= optimized != statement;
+            if (optimized instanceof BlockNode inner && !(inner instanceof ProgramNode) && inner.functions.isEmpty()) {
+                // block does not create a scope at runtime, its statements run in the enclosing block
+                statements.addAll(inner.statements);
+                report.collapsedBlocks++;
+                changed = true;
+            } else if (optimized instanceof EmptyStatementNode) {
+                changed = true;
+            } else {
+                statements.add(optimized);
+            }
+        }
+        if (!changed) {
+            return n;
+        }
+        BlockNode block = new BlockNode();
+        block.functions.addAll(functions);
+        block.statements.addAll(statements);
+        return block;
+    }
+
+    private ASTNode variableStatement(VariableStatementNode n) {
+        List<VariableDeclarationNode> declarations = new ArrayList<>(n.declarations.size());
+        boolean changed = false;
+        for (VariableDeclarationNode declaration : n.declarations) {
+            VariableDeclarationNode optimized = variableDeclaration(declaration);
+            changed |= optimized != declaration;
+            declarations.add(optimized);
+        }
+        if (!changed) {
+            return n;
+        }
+        VariableStatementNode statement = new VariableStatementNode();
+        declarations.forEach(statement::addDeclaration);
+        return statement;
+    }
+
+    private VariableDeclarationNode variableDeclaration(VariableDeclarationNode n) {
+        ASTNode initializer = optimize(n.initializer);
+        if (initializer == n.initializer) {
+            return n;
+        }
+        VariableDeclarationNode declaration = new VariableDeclarationNode(n.access, n.identifier, initializer,
+                                                                          n.tokenPos);
+        declaration.scopeGetSet = n.scopeGetSet;
+        return declaration;
+    }
+
+    private ASTNode ifStatement(IfStatementNode n) {
+        ASTNode condition = optimize(n.condition);
+        ASTNode thenStatement = optimize(n.thenStatement);
+        ASTNode elseStatement = optimize(n.elseStatement);
+        if (condition instanceof ConstantNode c) {
+            ASTNode branch = JsTypes.toBoolean(c.value) ? thenStatement : elseStatement;
+            if (branch == null) {
+                report.prunedBranches++;
+                return new EmptyStatementNode();
+            }
+            if (!hasOptional(branch)) {
+                report.prunedBranches++;
+                return branch;
+            }
+        }
+        if (condition == n.condition && thenStatement == n.thenStatement && elseStatement == n.elseStatement) {
+            return n;
+        }
+        return new IfStatementNode(condition, thenStatement, elseStatement);
+    }
+
+    private ASTNode whileStatement(WhileStatementNode n) {
+        ASTNode condition = optimize(n.condition);
+        if (condition instanceof ConstantNode c && !JsTypes.toBoolean(c.value)) {
+            report.prunedBranches++;
+            return new EmptyStatementNode();
+        }
+        ASTNode body = optimize(n.body);
+        return condition == n.condition && body == n.body ? n : new WhileStatementNode(condition, body);
+    }
+
+    private ASTNode forStatement(ForStatementNode n) {
+        ASTNode initialization = optimize(n.initialization);
+        ASTNode condition = optimize(n.condition);
+        if (initialization == null && condition instanceof ConstantNode c && !JsTypes.toBoolean(c.value)) {
+            report.prunedBranches++;
+            return new EmptyStatementNode();
+        }
+        ASTNode update = optimize(n.update);
+        ASTNode body = optimize(n.body);
+        if (initialization == n.initialization && condition == n.condition && update == n.update &&
+                body == n.body) {
+            return n;
+        }
+        return new ForStatementNode(initialization, condition, update, body);
+    }
+
+    private ASTNode switchStatement(SwitchStatementNode n) {
+        ASTNode discriminant = optimize(n.discriminant);
+        boolean changed = discriminant != n.discriminant;
+        List<SwitchCaseNode> cases = new ArrayList<>(n.cases.size());
+        // cases before the first match are skipped when the discriminant and their tests are constant
+        boolean skipping = discriminant instanceof ConstantNode;
+        for (SwitchCaseNode caseNode : n.cases) {
+            ASTNode test = optimize(caseNode.test);
+            if (skipping && test instanceof ConstantNode t) {
+                if (!JsOps.strictEqual(((ConstantNode) discriminant).value, t.value)) {
+                    report.prunedCases++;
+                    changed = true;
+                    continue;
+                }
+            }
+            skipping = false;
+            List<ASTNode> consequent = optimizeAll(caseNode.consequent);
+            if (test != caseNode.test || consequent != caseNode.consequent) {
+                caseNode = new SwitchCaseNode(test, consequent);
+                changed = true;
+            }
+            cases.add(caseNode);
+        }
+        ASTNode defaultCase = n.defaultCase;
+        if (defaultCase instanceof SwitchDefaultNode defaultNode) {
+            List<ASTNode> consequent = optimizeAll(defaultNode.consequent);
+            if (consequent != defaultNode.consequent) {
+                defaultCase = new SwitchDefaultNode(consequent);
+                changed = true;
+            }
+        }
+        if (!changed) {
+            return n;
+        }
+        if (cases.isEmpty() && defaultCase == null && !hasOptional(discriminant)) {
+            return new EmptyStatementNode();
+        }
+        SwitchStatementNode switchNode = new SwitchStatementNode(discriminant);
+        cases.forEach(switchNode::addCase);
+        switchNode.setDefaultCase(defaultCase);
+        return switchNode;
+    }
+
+    private ASTNode tryStatement(TryStatementNode n) {
+        ASTNode block = optimize(n.block);
+        CatchClauseNode catchClause = n.catchClause;
+        if (catchClause != null) {
+            ASTNode body = optimize(catchClause.body);
+            if (body != catchClause.body) {
+                catchClause = new CatchClauseNode(catchClause.param, body);
+            }
+        }
+        ASTNode finallyBlock = optimize(n.finallyBlock);
+        if (block == n.block && catchClause == n.catchClause && finallyBlock == n.finallyBlock) {
+            return n;
+        }
+        return new TryStatementNode(block, catchClause, finallyBlock);
+    }
+
+    private ASTNode binaryExpression(BinaryExpressionNode n) {
+        ASTNode left = optimize(n.left);
+        ASTNode right = optimize(n.right);
+        if (left instanceof ConstantNode l) {
+            switch (n.operator) {
+                case "||", "&&", "??" -> {
+                    boolean takeLeft = switch (n.operator) {
+                        case "||" -> JsTypes.toBoolean(l.value);
+                        case "&&" -> !JsTypes.toBoolean(l.value);
+                        default -> l.value != null && l.value != Undefined.INSTANCE;
+                    };
+                    ASTNode result = takeLeft ? left : right;
+                    if (result instanceof ConstantNode) {
+                        report.foldedExpressions++;
+                        return result;
+                    }
+                }
+                default -> {
+                    if (right instanceof ConstantNode r) {
+                        Object value = fold(JsOps.operation(n.operator), l.value, r.value);
+                        if (value != NOT_CONSTANT) {
+                            report.foldedExpressions++;
+                            return new ConstantNode(value);
+                        }
+                    }
+                }
+            }
+        }
+        if (left == n.left && right == n.right) {
+            return n;
+        }
+        return new BinaryExpressionNode(left, n.operator, right);
+    }
+
+    private static Object fold(BiFunction<Object, Object, Object> operation, Object left, Object right) {
+        if (operation == null) {
+            return NOT_CONSTANT;
+        }
+        try {
+            Object value = operation.apply(left, right);
+            return isConstant(value) ? value : NOT_CONSTANT;
+        } catch (RuntimeException e) {
+            // left for the runtime, which reports the error at its position
+            return NOT_CONSTANT;
+        }
+    }
+
+    private ASTNode stringConcat(StringConcatExpressionNode n) {
+        List<ASTNode> items = optimizeAll(n.items);
+        List<ASTNode> merged = new ArrayList<>(items.size());
+        StringBuilder constant = null;
+        for (ASTNode item : items) {
+            if (item instanceof ConstantNode c && isConstant(c.value)) {
+                if (constant == null) {
+                    constant = new StringBuilder();
+                }
+                constant.append(JsTypes.toString(c.value));
+            } else {
+                if (constant != null) {
+                    merged.add(new ConstantNode(constant.toString()));
+                    constant = null;
+                }
+                merged.add(item);
+            }
+        }
+        if (constant != null) {
+            merged.add(new ConstantNode(constant.toString()));
+        }
+        if (merged.size() == 1 && merged.getFirst() instanceof ConstantNode) {
+            report.foldedExpressions++;
+            return merged.getFirst();
+        }
+        if (merged.size() < items.size()) {
+            report.foldedExpressions++;
+            return new StringConcatExpressionNode(merged);
+        }
+        return items == n.items ? n : new StringConcatExpressionNode(items);
+    }
+
+    private ASTNode conditionalExpression(ConditionalExpressionNode n) {
+        ASTNode condition = optimize(n.condition);
+        ASTNode trueExpression = optimize(n.trueExpression);
+        ASTNode falseExpression = optimize(n.falseExpression);
+        if (condition instanceof ConstantNode c) {
+            ASTNode branch = JsTypes.toBoolean(c.value) ? trueExpression : falseExpression;
+            if (!hasOptional(branch)) {
+                report.prunedBranches++;
+                return branch;
+            }
+        }
+        if (condition == n.condition && trueExpression == n.trueExpression && falseExpression == n.falseExpression) {
+            return n;
+        }
+        return new ConditionalExpressionNode(condition, trueExpression, falseExpression);
+    }
+
+    private ASTNode unaryExpression(UnaryExpressionNode n) {
+        if (n.operator.endsWith("var") || n.operator.startsWith("var")) {
+            // ++ and -- change their operand
+            return n;
+        }
+        ASTNode operand = optimize(n.operand);
+        if (operand instanceof ConstantNode c) {
+            Object value = switch (n.operator) {
+                case "+" -> JsTypes.toNumber(c.value);
+                case "-" -> JsTypes.unaryMinus(c.value);
+                case "!" -> !JsTypes.toBoolean(c.value);
+                case "typeof" -> JsTypes.typeof(c.value);
+                default -> NOT_CONSTANT;
+            };
+            if (isConstant(value)) {
+                report.foldedExpressions++;
+                return new ConstantNode(value);
+            }
+        }
+        return operand == n.operand ? n : new UnaryExpressionNode(n.operator, operand);
+    }
+
+    private ASTNode identifier(IdentifierNode n) {
+        if (n.constDeclaration == null || n.wasAssigned) {
+            return n;
+        }
+        Object value = constValues.get(n.constDeclaration);
+        if (value == null) {
+            VariableDeclarationNode declaration = n.constDeclaration;
+            ASTNode initializer = declaration.initializer != null ? optimize(declaration.initializer) : null;
+            value = initializer instanceof ConstantNode c && isConstant(c.value) ? new ConstantNode(c.value)
+                                                                                : NOT_CONSTANT;
+            constValues.put(declaration, value);
+        }
+        if (value instanceof ConstantNode constant) {
+            report.propagatedConstants++;
+            return constant;
+        }
+        return n;
+    }
+
+    private ASTNode objectLiteral(ObjectLiteralNode n) {
+        List<PropertyNode> properties = new ArrayList<>(n.properties.size());
+        boolean changed = false;
+        for (PropertyNode property : n.properties) {
+            ASTNode value = optimize(property.value);
+            if (value != property.value) {
+                property = new PropertyNode(property.key, value);
+                changed = true;
+            }
+            properties.add(property);
+        }
+        return changed ? new ObjectLiteralNode(properties) : n;
+    }
+
+    private ASTNode memberExpression(MemberExpressionNode n) {
+        ASTNode object = optimize(n.object);
+        ASTNode dynamicProperty = optimize(n.dynamicProperty);
+        if (object == n.object && dynamicProperty == n.dynamicProperty) {
+            return n;
+        }
+        if (n.staticProperty != null) {
+            return new MemberExpressionNode(object, n.staticProperty, n.tokenPos);
+        }
+        return new MemberExpressionNode(object, dynamicProperty, n.tokenPos);
+    }
+
+    private FunctionDeclarationNode functionDeclaration(FunctionDeclarationNode n) {
+        ASTNode body = optimize(n.body);
+        if (body == n.body) {
+            return n;
+        }
+        FunctionDeclarationNode function = new FunctionDeclarationNode(n.name, n.tokenPos, n.params, body,
+                                                                       n.scopeDef, n.inlineThis);
+        function.scopeGetSet = n.scopeGetSet;
+        return function;
+    }
+
+    private static boolean isConstant(Object value) {
+        return value == null || value == Undefined.INSTANCE || value instanceof String || value instanceof Number ||
+                value instanceof Boolean;
+    }
+
+    // optional chaining throws through the parent nodes until a node converts it to undefined
+    private static boolean hasOptional(ASTNode node) {
+        return switch (node) {
+            case null -> false;
+            case ConstantNode ignored -> false;
+            case IdentifierNode ignored -> false;
+            case OptionalNode ignored -> true;
+            case FunctionDeclarationNode ignored -> false;
+            case BinaryExpressionNode n -> hasOptional(n.left) || hasOptional(n.right);
+            case UnaryExpressionNode n -> hasOptional(n.operand);
+            case MemberExpressionNode n -> hasOptional(n.object) || hasOptional(n.dynamicProperty);
+            case CallExpressionNode n -> hasOptional(n.callee);
+            case StringConcatExpressionNode n -> n.items.stream().anyMatch(AstOptimizer::hasOptional);
+            case ArrayLiteralNode ignored -> false;
+            case ObjectLiteralNode ignored -> false;
+            case BlockNode ignored -> false;
+            default -> true;
+        };
+    }
+}
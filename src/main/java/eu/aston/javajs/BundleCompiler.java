@@ -0,0 +1,96 @@
+package eu.aston.javajs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import eu.aston.javajs.AstNodes.ASTNode;
+
+/**
+ * Compiles a bundle of independent scripts concurrently. Every script gets its own lexer, parser and
+ * VariablesAnalyzer, so scripts are compiled on a bounded pool without shared state. An error in one script is
+ * reported in its result and does not stop the others.
+ */
+public class BundleCompiler {
+
+    private final int threads;
+
+    public BundleCompiler() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public BundleCompiler(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive " + threads);
+        }
+        this.threads = threads;
+    }
+
+    // result of one script, program and report are null when the compilation failed
+    public record Result(String name, ASTNode program, AstOptimizer.Report report, RuntimeException error,
+                         long nanos) {
+        public boolean ok() {
+            return error == null;
+        }
+
+        public double millis() {
+            return nanos / 1_000_000.0;
+        }
+    }
+
+    /**
+     * Compiles all sources by name, results are returned in the iteration order of the map.
+     */
+    public List<Result> compile(Map<String, String> sources) {
+        if (sources.size() <= 1 || threads == 1) {
+            List<Result> results = new ArrayList<>(sources.size());
+            sources.forEach((name, script) -> results.add(compile(name, script)));
+            return results;
+        }
+        List<Future<Result>> futures = new ArrayList<>(sources.size());
+        try (ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, sources.size()),
+                                                                     threadFactory())) {
+            sources.forEach((name, script) -> futures.add(executor.submit(() -> compile(name, script))));
+            List<Result> results = new ArrayList<>(futures.size());
+            for (Future<Result> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("bundle compilation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("bundle compilation failed", e.getCause());
+        }
+    }
+
+    public static Result compile(String name, String script) {
+        long start = System.nanoTime();
+        try {
+            JsParser parser = new JsParser(new JsLexer(script));
+            ASTNode program = parser.parse();
+            return new Result(name, program, parser.optimizeReport(), null, System.nanoTime() - start);
+        } catch (RuntimeException e) {
+            return new Result(name, null, null, e, System.nanoTime() - start);
+        } catch (StackOverflowError e) {
+            // the parser nesting limit normally stops first, a deep optimizer pass may still overflow
+            return new Result(name, null, null, new JsParser.SyntaxError("SyntaxError: script is nested too deep"),
+                              System.nanoTime() - start);
+        }
+    }
+
+    private static ThreadFactory threadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "js-compile-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
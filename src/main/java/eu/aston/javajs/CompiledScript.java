@@ -0,0 +1,395 @@
+package eu.aston.javajs;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import eu.aston.javajs.AstNodes.ASTNode;
+import eu.aston.javajs.AstNodes.BlockNode;
+import eu.aston.javajs.AstNodes.ProgramNode;
+
+/**
+ * Compiled script which can be updated by a text edit. The script is kept as a list of top level statements,
+ * an edit re-lexes and re-parses only the statements touched by the edit and reuses the parsed subtrees of the
+ * others. Node positions count lines from their statement, so a statement moved to other lines is reused too.
+ * <p>
+ * The top level names are kept between edits, a parsed statement is linked into them and only the reused statements
+ * using a changed name are checked. A reused statement whose variables would be linked differently is parsed again
+ * from the new text. Every statement is optimized once when it is parsed, the program joins the optimized ones.
+ * <p>
+ * Reused subtrees are shared with the previous script and never changed, both scripts stay valid. The top level
+ * names belong to the latest script, an edit of an older script compiles the new text again.
+ */
+public class CompiledScript {
+
+    private final char[] text;
+    // text as a String, built when it is read
+    private volatile String source;
+    private final ProgramNode program;
+    private final List<Segment> segments;
+    private final int parsedStatements;
+    private final AstOptimizer.Report optimizeReport;
+    private final VariablesAnalyzer.TopLevel topLevel;
+    // first lines of the statements in this script, built when a node position is resolved
+    private volatile Map<Object, Integer> firstLines;
+
+    private CompiledScript(char[] text, String source, List<Segment> segments, BlockNode blockNode,
+                           int parsedStatements, AstOptimizer.Report optimizeReport,
+                           VariablesAnalyzer.TopLevel topLevel) {
+        this.text = text;
+        this.source = source;
+        this.segments = segments;
+        this.parsedStatements = parsedStatements;
+        this.optimizeReport = optimizeReport;
+        this.topLevel = topLevel;
+        this.program = new ProgramNode(blockNode, topLevel.scopeDef(), this::firstLine);
+        topLevel.owner = this;
+    }
+
+    public static CompiledScript compile(String source) {
+        char[] chars = source.toCharArray();
+        VariablesAnalyzer.TopLevel topLevel = new VariablesAnalyzer.TopLevel();
+        List<Segment> segments = new ArrayList<>();
+        VariablesAnalyzer analyzer = new VariablesAnalyzer(topLevel, key -> firstLine(segments, key));
+        JsParser parser = new JsParser(new JsLexer(chars, 0, chars.length, 1, 1, new JsLexer.NameTable(256)), analyzer);
+        int prevEnd = 0;
+        while (parser.currentToken().getKind() != TokenKind.EOF) {
+            Segment segment = parseSegment(parser, analyzer, chars, prevEnd);
+            segments.add(segment);
+            prevEnd += segment.skip + segment.length;
+        }
+        topLevel.order(keys(segments));
+        int parsed = segments.size() + link(chars, analyzer, segments, new ArrayList<>());
+        AstOptimizer.Report report = new AstOptimizer.Report();
+        optimize(segments, 0, report);
+        topLevel.commit();
+        return new CompiledScript(chars, source, segments, join(segments, 0, segments.size()), parsed, report,
+                                  topLevel);
+    }
+
+    /**
+     * Returns the script with source range [start, end) replaced by the replacement text.
+     */
+    public CompiledScript edit(int start, int end, String replacement) {
+        if (start < 0 || end < start || end > text.length) {
+            throw new IllegalArgumentException("Invalid edit range " + start + ".." + end);
+        }
+        int delta = replacement.length() - (end - start);
+        char[] chars = new char[text.length + delta];
+        System.arraycopy(text, 0, chars, 0, start);
+        replacement.getChars(0, replacement.length(), chars, start);
+        System.arraycopy(text, end, chars, start + replacement.length(), text.length - end);
+        synchronized (topLevel) {
+            if (topLevel.owner != this) {
+                return compile(new String(chars));
+            }
+            return edit(chars, start, end, delta);
+        }
+    }
+
+    // reparses the statements around the edit, the names of topLevel are linked by this script
+    private CompiledScript edit(char[] chars, int start, int end, int delta) {
+        // statements are kept when the edit starts after the tokens read to parse them, the parser looked at the
+        // tokens following a statement to end it, parsing restarts at the end of the last kept one
+        int first = 0;
+        int from = 0;
+        int line = 1;
+        // program nodes of the kept statements
+        int functions = 0;
+        int statements = 0;
+        while (first < segments.size()) {
+            Segment segment = segments.get(first);
+            if (from + segment.skip + segment.length + segment.lookahead >= start) {
+                break;
+            }
+            from += segment.skip + segment.length;
+            line += segment.skipLines + segment.lines;
+            functions += segment.optimized.functions.size();
+            statements += segment.optimized.statements.size();
+            first++;
+        }
+        int column = 1;
+        while (column <= from && text[from - column] != '\n') {
+            column++;
+        }
+
+        // statements starting on a line after the edit can be reused, once the parser reaches one of them
+        int reuse = first;
+        int reuseStart = from;
+        int newLine = end;
+        while (newLine < text.length && text[newLine] != '\n') {
+            newLine++;
+        }
+        while (reuse < segments.size()) {
+            reuseStart += segments.get(reuse).skip;
+            if (reuseStart > newLine) {
+                break;
+            }
+            reuseStart += segments.get(reuse).length;
+            reuse++;
+        }
+
+        List<Segment> result = new ArrayList<>(segments.size() + 1);
+        VariablesAnalyzer analyzer = new VariablesAnalyzer(topLevel, key -> firstLine(result, key));
+        result.addAll(segments.subList(0, first));
+        try {
+            JsParser parser = new JsParser(
+                    new JsLexer(chars, from, chars.length, line, column, new JsLexer.NameTable(64)), analyzer);
+            int prevEnd = from;
+            while (parser.currentToken().getKind() != TokenKind.EOF) {
+                int offset = parser.currentToken().getOffset();
+                while (reuse < segments.size() && reuseStart + delta < offset) {
+                    reuseStart += segments.get(reuse).length;
+                    reuse++;
+                    if (reuse < segments.size()) {
+                        reuseStart += segments.get(reuse).skip;
+                    }
+                }
+                if (reuse < segments.size() && reuseStart + delta == offset) {
+                    break;
+                }
+                Segment segment = parseSegment(parser, analyzer, chars, prevEnd);
+                result.add(segment);
+                prevEnd += segment.skip + segment.length;
+            }
+            int parsed = result.size() - first;
+            int next = parser.currentToken().getKind() != TokenKind.EOF ? reuse : segments.size();
+            List<Segment> removed = new ArrayList<>(segments.subList(first, next));
+            for (Segment segment : removed) {
+                analyzer.remove(segment.key);
+            }
+            if (next < segments.size()) {
+                // the first reused statement follows the parsed ones, the others keep their offsets
+                int skip = reuseStart + delta - prevEnd;
+                result.add(segments.get(next).follow(skip, countLines(chars, prevEnd, prevEnd + skip)));
+                result.addAll(segments.subList(next + 1, segments.size()));
+            }
+            // parsed statements are ordered between their neighbours, all are ordered again when there is no space
+            long low = first > 0 ? result.get(first - 1).key.order : 0;
+            long step = ((next < segments.size() ? segments.get(next).key.order
+                                                  : low + (parsed + 1) * VariablesAnalyzer.ORDER_GAP) - low) /
+                    (parsed + 1);
+            if (step > 0) {
+                for (int i = 1; i <= parsed; i++) {
+                    result.get(first + i - 1).key.order = low + i * step;
+                }
+            } else {
+                topLevel.order(keys(result));
+            }
+            int relinked = link(chars, analyzer, result, removed);
+
+            AstOptimizer.Report report = new AstOptimizer.Report();
+            report.add(optimizeReport, 1);
+            for (Segment segment : removed) {
+                report.add(segment.report, -1);
+            }
+            optimize(result, relinked == 0 ? first : 0, report);
+            BlockNode blockNode;
+            if (relinked == 0) {
+                // the reused statements after the parsed ones keep their program nodes, they are copied from this
+                // program
+                BlockNode parsedNodes = join(result, first, first + parsed);
+                BlockNode removedNodes = join(removed, 0, removed.size());
+                blockNode = new BlockNode();
+                splice(blockNode.functions, program.blockNode.functions, functions, parsedNodes.functions,
+                       removedNodes.functions.size());
+                splice(blockNode.statements, program.blockNode.statements, statements, parsedNodes.statements,
+                       removedNodes.statements.size());
+            } else {
+                blockNode = join(result, 0, result.size());
+            }
+            CompiledScript script = new CompiledScript(chars, null, result, blockNode, parsed + relinked, report,
+                                                       topLevel);
+            topLevel.commit();
+            return script;
+        } catch (RuntimeException e) {
+            topLevel.rollback();
+            throw e;
+        }
+    }
+
+    private static Segment parseSegment(JsParser parser, VariablesAnalyzer analyzer, char[] chars, int prevEnd) {
+        Token token = parser.currentToken();
+        VariablesAnalyzer.Statement key = analyzer.startStatement(token.getLine());
+        parser.segment(key, token.getLine());
+        ASTNode statement = parser.parseTopLevelStatement();
+        int start = token.getOffset();
+        int end = parser.lastTokenEnd();
+        return new Segment(start - prevEnd, end - start, parser.readEnd() - end, countLines(chars, prevEnd, start),
+                           countLines(chars, start, end), token.getColumn(), key, statement, null, null);
+    }
+
+    // links the parsed statements, reused ones linked differently are parsed again until none is left
+    private static int link(char[] chars, VariablesAnalyzer analyzer, List<Segment> segments, List<Segment> removed) {
+        int parsed = 0;
+        for (Set<VariablesAnalyzer.Statement> changed = analyzer.link(); !changed.isEmpty();
+             changed = analyzer.link()) {
+            for (VariablesAnalyzer.Statement key : changed) {
+                int index = indexOf(segments, key);
+                int prevEnd = 0;
+                int line = 1;
+                for (Segment segment : segments.subList(0, index)) {
+                    prevEnd += segment.skip + segment.length;
+                    line += segment.skipLines + segment.lines;
+                }
+                Segment segment = segments.get(index);
+                analyzer.remove(key);
+                if (segment.optimized != null) {
+                    removed.add(segment);
+                }
+                JsParser parser = new JsParser(
+                        new JsLexer(chars, prevEnd + segment.skip, chars.length, line + segment.skipLines,
+                                    segment.column, new JsLexer.NameTable(64)), analyzer);
+                Segment parsedSegment = parseSegment(parser, analyzer, chars, prevEnd);
+                parsedSegment.key.order = key.order;
+                segments.set(index, parsedSegment);
+                parsed++;
+            }
+        }
+        return parsed;
+    }
+
+    // optimizes the parsed statements, the optimizer rebuilds changed subtrees and keeps the parsed ones
+    private static void optimize(List<Segment> segments, int from, AstOptimizer.Report report) {
+        for (int i = from; i < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            if (segment.optimized == null) {
+                BlockNode blockNode = new BlockNode();
+                blockNode.addStatement(segment.statement);
+                AstOptimizer optimizer = new AstOptimizer();
+                segment = segment.optimized((BlockNode) optimizer.optimize(blockNode), optimizer.report());
+                report.add(segment.report, 1);
+                segments.set(i, segment);
+            }
+        }
+    }
+
+    // statements are sorted by their order
+    private static int indexOf(List<Segment> segments, VariablesAnalyzer.Statement key) {
+        int low = 0;
+        int high = segments.size() - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (segments.get(mid).key.order < key.order) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static List<VariablesAnalyzer.Statement> keys(List<Segment> segments) {
+        return new AbstractList<>() {
+            @Override
+            public VariablesAnalyzer.Statement get(int index) {
+                return segments.get(index).key;
+            }
+
+            @Override
+            public int size() {
+                return segments.size();
+            }
+        };
+    }
+
+    // first line of a statement in the segments, a statement parsed now has the line it was parsed on
+    private static int firstLine(List<Segment> segments, Object key) {
+        int line = 1;
+        for (Segment segment : segments) {
+            line += segment.skipLines;
+            if (segment.key == key) {
+                return line;
+            }
+            line += segment.lines;
+        }
+        return ((VariablesAnalyzer.Statement) key).line;
+    }
+
+    private static BlockNode join(List<Segment> segments, int from, int to) {
+        BlockNode blockNode = new BlockNode();
+        for (Segment segment : segments.subList(from, to)) {
+            blockNode.functions.addAll(segment.optimized.functions);
+            blockNode.statements.addAll(segment.optimized.statements);
+        }
+        return blockNode;
+    }
+
+    // previous nodes with count nodes from index replaced by the parsed ones
+    private static <T> void splice(List<T> target, List<T> previous, int index, List<T> parsed, int count) {
+        target.addAll(previous.subList(0, index));
+        target.addAll(parsed);
+        target.addAll(previous.subList(index + count, previous.size()));
+    }
+
+    private int firstLine(Object statement) {
+        Map<Object, Integer> lines = firstLines;
+        if (lines == null) {
+            lines = new IdentityHashMap<>(segments.size());
+            int line = 1;
+            for (Segment segment : segments) {
+                line += segment.skipLines;
+                lines.put(segment.key, line);
+                line += segment.lines;
+            }
+            firstLines = lines;
+        }
+        return lines.getOrDefault(statement, 0);
+    }
+
+    private static int countLines(char[] chars, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (chars[i] == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public String source() {
+        String str = source;
+        if (str == null) {
+            str = new String(text);
+            source = str;
+        }
+        return str;
+    }
+
+    public ProgramNode program() {
+        return program;
+    }
+
+    public int statements() {
+        return segments.size();
+    }
+
+    // number of top level statements parsed by the last compile or edit, the others were reused
+    public int parsedStatements() {
+        return parsedStatements;
+    }
+
+    // optimizations applied to the whole program of this script
+    public AstOptimizer.Report optimizeReport() {
+        return optimizeReport;
+    }
+
+    // top level statement with its text after the end of the previous one, skip and skipLines are the chars and
+    // lines between them, so statements after an edit keep their segments; lookahead counts the chars after the
+    // statement read by the parser
+    private record Segment(int skip, int length, int lookahead, int skipLines, int lines, int column,
+                           VariablesAnalyzer.Statement key, ASTNode statement, BlockNode optimized,
+                           AstOptimizer.Report report) {
+
+        Segment follow(int skip, int skipLines) {
+            return new Segment(skip, length, lookahead, skipLines, lines, column, key, statement, optimized, report);
+        }
+
+        Segment optimized(BlockNode optimized, AstOptimizer.Report report) {
+            return new Segment(skip, length, lookahead, skipLines, lines, column, key, statement, optimized, report);
+        }
+    }
+}
@@ -2,10 +2,17 @@ package eu.aston.javajs;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Consumer;
 
 import eu.aston.javajs.AstNodes.NotFoundException;
+import eu.aston.javajs.types.JsArrayBuffer;
 import eu.aston.javajs.types.JsFunction;
+import eu.aston.javajs.types.JsIterator;
+import eu.aston.javajs.types.JsMap;
+import eu.aston.javajs.types.JsRegExp;
+import eu.aston.javajs.types.JsSet;
+import eu.aston.javajs.types.JsTypedArray;
 import eu.aston.javajs.types.JsTypes;
 import eu.aston.javajs.types.Undefined;
 
@@ -14,12 +21,21 @@ public record GetSet(Object value, Consumer<Object> setter) {
 
     public static final String LENGTH = "length";
 
+    // array functions changing the length, a typed array has a fixed length and does not have them
+    private static final Set<String> LENGTH_CHANGING = Set.of("pop", "push", "shift", "splice", "unshift");
+
     public static GetSet createGetSet(Object parent, Object property, Scope scope, TokenPos tokenPos) {
         Object value = switch (parent) {
             case Map map -> mapGet(map, property, scope);
+            case JsTypedArray array -> typedArrayGet(array, property, scope, tokenPos);
             case List list -> listGet(list, property, scope, tokenPos);
-            case String str -> stringGet(str, property, scope, tokenPos);
+            case CharSequence str -> stringGet(str, property, scope, tokenPos);
             case JsFunction fn -> functionGet(fn, property, scope, tokenPos);
+            case JsRegExp regExp -> regExpGet(regExp, property, scope, tokenPos);
+            case JsArrayBuffer buffer -> arrayBufferGet(buffer, property, scope, tokenPos);
+            case JsSet set -> collectionGet("Set", set.size(), set, property, scope, tokenPos);
+            case JsMap map -> collectionGet("Map", map.size(), map, property, scope, tokenPos);
+            case JsIterator iterator -> iteratorGet(iterator, property, scope, tokenPos);
             case null, default ->
                     throw new NotFoundException("Cannot read property '" + property + "' of " + JsTypes.typeof(parent),
                                                 tokenPos);
@@ -30,6 +46,7 @@ public record GetSet(Object value, Consumer<Object> setter) {
     public static void execSet(Object parent, Object property, Object value, TokenPos tokenPos) {
         switch (parent) {
             case Map map -> mapPut(map, property, value, tokenPos);
+            case JsTypedArray array -> typedArraySet(array, property, value, tokenPos);
             case List list -> listSet(list, property, value, tokenPos);
             case null, default ->
                     throw new NotFoundException("Cannot set property '" + property + "' on " + JsTypes.typeof(parent),
@@ -37,7 +54,7 @@ public record GetSet(Object value, Consumer<Object> setter) {
         }
     }
 
-    public static Object stringGet(String str, Object property, Scope scope, TokenPos tokenPos) {
+    public static Object stringGet(CharSequence str, Object property, Scope scope, TokenPos tokenPos) {
         if (LENGTH.equals(property)) {
             return str.length();
         }
@@ -48,7 +65,7 @@ public record GetSet(Object value, Consumer<Object> setter) {
         if (property instanceof String) {
             JsFunction function = scope.getFunction("String." + property);
             if (function != null) {
-                return function.setParent(str);
+                return function.setParent(str.toString());
             }
         }
         throw new NotFoundException("String function '" + property + "' is not defined", tokenPos);
@@ -114,6 +131,81 @@ public record GetSet(Object value, Consumer<Object> setter) {
         throw new NotFoundException("Cannot set property '" + property + "' of array", tokenPos);
     }
 
+    public static Object typedArrayGet(JsTypedArray array, Object property, Scope scope, TokenPos tokenPos) {
+        if ("buffer".equals(property)) {
+            return array.buffer();
+        }
+        if ("byteLength".equals(property)) {
+            return array.byteLength();
+        }
+        if ("byteOffset".equals(property)) {
+            return array.byteOffset();
+        }
+        if ("BYTES_PER_ELEMENT".equals(property)) {
+            return array.kind().bytes;
+        }
+        if (property instanceof String) {
+            JsFunction function = scope.getFunction("TypedArray." + property);
+            if (function != null) {
+                return function.setParent(array);
+            }
+            if (LENGTH_CHANGING.contains(property)) {
+                throw new NotFoundException(array.kind().typeName + " function '" + property + "' is not defined",
+                                            tokenPos);
+            }
+        }
+        return listGet(array, property, scope, tokenPos);
+    }
+
+    public static void typedArraySet(JsTypedArray array, Object property, Object value, TokenPos tokenPos) {
+        Integer index = parseIndex(property);
+        if (index == null) {
+            throw new NotFoundException("Cannot set property '" + property + "' of " + array.kind().typeName,
+                                        tokenPos);
+        }
+        // a write out of the fixed length is ignored
+        if (index >= 0 && index < array.size()) {
+            array.set(index, value);
+        }
+    }
+
+    private static Object arrayBufferGet(JsArrayBuffer buffer, Object property, Scope scope, TokenPos tokenPos) {
+        if ("byteLength".equals(property)) {
+            return buffer.byteLength();
+        }
+        if (property instanceof String) {
+            JsFunction function = scope.getFunction("ArrayBuffer." + property);
+            if (function != null) {
+                return function.setParent(buffer);
+            }
+        }
+        throw new NotFoundException("ArrayBuffer function '" + property + "' is not defined", tokenPos);
+    }
+
+    private static Object collectionGet(String type, int size, Object collection, Object property, Scope scope,
+                                        TokenPos tokenPos) {
+        if ("size".equals(property)) {
+            return size;
+        }
+        if (property instanceof String) {
+            JsFunction function = scope.getFunction(type + "." + property);
+            if (function != null) {
+                return function.setParent(collection);
+            }
+        }
+        throw new NotFoundException(type + " function '" + property + "' is not defined", tokenPos);
+    }
+
+    private static Object iteratorGet(JsIterator iterator, Object property, Scope scope, TokenPos tokenPos) {
+        if (property instanceof String) {
+            JsFunction function = scope.getFunction("Iterator." + property);
+            if (function != null) {
+                return function.setParent(iterator);
+            }
+        }
+        throw new NotFoundException("Iterator function '" + property + "' is not defined", tokenPos);
+    }
+
     public static Integer parseIndex(Object property) {
         Integer index = null;
         if (property instanceof Number num) {
@@ -137,5 +229,23 @@ public record GetSet(Object value, Consumer<Object> setter) {
         }
         throw new NotFoundException("Function type function '" + property + "' is not defined", tokenPos);
     }
-}
 
+    private static Object regExpGet(JsRegExp regExp, Object property, Scope scope, TokenPos tokenPos) {
+        if ("source".equals(property)) {
+            return regExp.source();
+        }
+        if ("flags".equals(property)) {
+            return regExp.flags();
+        }
+        if ("global".equals(property)) {
+            return regExp.global();
+        }
+        if (property instanceof String) {
+            JsFunction function = scope.getFunction("RegExp." + property);
+            if (function != null) {
+                return function.setParent(regExp);
+            }
+        }
+        throw new NotFoundException("RegExp function '" + property + "' is not defined", tokenPos);
+    }
+}
@@ -1,87 +1,86 @@
 package eu.aston.javajs;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 public class JsLexer {
 
-    // All ECMAScript 3.1 keywords
-    private static final Map<String, TokenType> RESERVED_WORDS = new HashMap<>();
+    // All ECMAScript 3.1 keywords and literal names, looked up directly from the source chars
+    private static final NameTable RESERVED_WORDS = new NameTable(64);
 
     static {
-        String[] keywords = {"break", "case", "catch", "continue", "const", "default", "do", "else", "finally", "for", "function", "if", "in", "let", "of", "return", "switch", "this", "throw", "try", "typeof", "while"};
-
-        for (String keyword : keywords) {
-            RESERVED_WORDS.put(keyword, TokenType.KEYWORD);
+        for (TokenKind kind : TokenKind.values()) {
+            if (kind.text() != null && !kind.text().isEmpty() && Character.isLetter(kind.text().charAt(0))) {
+                RESERVED_WORDS.add(kind.text(), kind);
+            }
         }
-        RESERVED_WORDS.put("true", TokenType.BOOLEAN);
-        RESERVED_WORDS.put("false", TokenType.BOOLEAN);
-        RESERVED_WORDS.put("null", TokenType.NULL);
-        RESERVED_WORDS.put("undefined", TokenType.UNDEFINED);
-        RESERVED_WORDS.put("NaN", TokenType.NUMBER);
-        RESERVED_WORDS.put("Infinity", TokenType.NUMBER);
     }
 
-    private final String input;
+    private final char[] input;
+    private final int end;
+    private final NameTable names;
     private int position;
     private int line;
     private int column;
+    private TokenKind lastKind;
 
     public JsLexer(String input) {
-        this.input = input;
-        this.position = 0;
-        this.line = 1;
-        this.column = 1;
+        this(input, 1, 1);
     }
 
     public JsLexer(String input, int line, int column) {
+        this(input.toCharArray(), 0, input.length(), line, column, new NameTable(256));
+    }
+
+    // lexer over a range of an already loaded source, names are shared with the parent lexer
+    JsLexer(char[] input, int start, int end, int line, int column, NameTable names) {
         this.input = input;
-        this.position = 0;
+        this.end = end;
+        this.names = names;
+        this.position = start;
         this.line = line;
         this.column = column;
     }
 
+    // lexer for the expression part of a template string token, scanned in place from the '{'
+    JsLexer templateExpression(Token token) {
+        return new JsLexer(input, token.getOffset() + 1, token.getOffset() + token.getLength(), token.getLine(),
+                           token.getColumn(), names);
+    }
+
     // Main method to tokenize the input and build a token tree
     public List<Token> tokenize() {
         // Root token to hold all top-level tokens
         List<Token> tokens = new ArrayList<>();
 
-        while (position < input.length()) {
-            Token token = getNextToken();
-            if (token.getType() != TokenType.WHITESPACE && token.getType() != TokenType.COMMENT) {
-                tokens.add(token);
+        while (true) {
+            Token token = next();
+            if (token.getKind() == TokenKind.EOF) {
+                break;
             }
+            tokens.add(token);
         }
 
         return tokens;
     }
 
-    private Token getNextToken() {
-        if (position >= input.length()) {
-            return new Token(TokenType.EOF, "", line, column);
-        }
-
-        char ch = input.charAt(position);
-
-        // Whitespace
-        if (isWhitespace(ch)) {
-            return scanWhitespace();
+    // Pulls the next significant token, whitespace and comments are skipped without creating tokens.
+    // At the end of input an EOF token is returned on every call.
+    public Token next() {
+        skipTrivia();
+        if (position >= end) {
+            return new Token(TokenKind.EOF, input, end, 0, line, column, null);
         }
+        Token token = scanToken();
+        lastKind = token.getKind();
+        return token;
+    }
 
-        // Comments
-        if (ch == '/' && position + 1 < input.length()) {
-            char nextCh = input.charAt(position + 1);
-            if (nextCh == '/') {
-                return scanLineComment();
-            } else if (nextCh == '*') {
-                return scanBlockComment();
-            }
-        }
+    private Token scanToken() {
+        char ch = input[position];
 
         // Number
-        if (isDigit(ch) || (ch == '.' && position + 1 < input.length() && isDigit(input.charAt(position + 1)))) {
+        if (isDigit(ch) || (ch == '.' && position + 1 < end && isDigit(input[position + 1]))) {
             return scanNumber();
         }
 
@@ -100,6 +99,11 @@ public class JsLexer {
             return scanIdentifier();
         }
 
+        // Regex literal
+        if (ch == '/' && isRegexAllowed()) {
+            return scanRegex();
+        }
+
         // Operators and punctuation
         return scanOperatorOrPunctuation();
     }
@@ -124,309 +128,299 @@ public class JsLexer {
         return isIdentifierStart(ch) || isDigit(ch);
     }
 
-    private Token scanWhitespace() {
-        int startLine = line;
-        int startColumn = column;
-        StringBuilder sb = new StringBuilder();
+    // slash starts a regex literal only where an expression can start, otherwise it is a division
+    private boolean isRegexAllowed() {
+        if (lastKind == null) {
+            return true;
+        }
+        return switch (lastKind) {
+            case THIS, RPAREN, RBRACKET, RBRACE, INC, DEC -> false;
+            default -> switch (lastKind.type()) {
+                case IDENTIFIER, REST_IDENTIFIER, NUMBER, STRING, STRING_TEMPLATE, REGEX, BOOLEAN, NULL, UNDEFINED ->
+                        false;
+                default -> true;
+            };
+        };
+    }
 
-        while (position < input.length() && isWhitespace(input.charAt(position))) {
-            char ch = input.charAt(position);
-            sb.append(ch);
+    private void skipTrivia() {
+        while (position < end) {
+            char ch = input[position];
+            if (isWhitespace(ch)) {
+                skipWhitespace();
+            } else if (ch == '/' && position + 1 < end && input[position + 1] == '/') {
+                skipLineComment();
+            } else if (ch == '/' && position + 1 < end && input[position + 1] == '*') {
+                skipBlockComment();
+            } else {
+                return;
+            }
+        }
+    }
 
-            if (ch == '\n') {
+    private void skipWhitespace() {
+        while (position < end && isWhitespace(input[position])) {
+            if (input[position] == '\n') {
                 line++;
                 column = 1;
             } else {
                 column++;
             }
-
             position++;
         }
-
-        return new Token(TokenType.WHITESPACE, sb.toString(), startLine, startColumn);
     }
 
-    private Token scanLineComment() {
-        int startLine = line;
-        int startColumn = column;
-        StringBuilder sb = new StringBuilder();
-
+    private void skipLineComment() {
         // Skip the //
-        sb.append("//");
         position += 2;
         column += 2;
 
-        while (position < input.length() && input.charAt(position) != '\n') {
-            sb.append(input.charAt(position));
+        while (position < end && input[position] != '\n') {
             position++;
             column++;
         }
-
-        return new Token(TokenType.COMMENT, sb.toString(), startLine, startColumn);
     }
 
-    private Token scanBlockComment() {
-        int startLine = line;
-        int startColumn = column;
-        StringBuilder sb = new StringBuilder();
-
+    private void skipBlockComment() {
         // Skip the /*
-        sb.append("/*");
         position += 2;
         column += 2;
 
-        boolean foundEnd = false;
-        while (position < input.length() && !foundEnd) {
-            char ch = input.charAt(position);
-            sb.append(ch);
-
-            if (ch == '*' && position + 1 < input.length() && input.charAt(position + 1) == '/') {
-                sb.append('/');
+        while (position < end) {
+            char ch = input[position];
+            if (ch == '*' && position + 1 < end && input[position + 1] == '/') {
                 position += 2;
                 column += 2;
-                foundEnd = true;
+                return;
+            }
+            if (ch == '\n') {
+                line++;
+                column = 1;
             } else {
-                if (ch == '\n') {
-                    line++;
-                    column = 1;
-                } else {
-                    column++;
-                }
-                position++;
+                column++;
             }
+            position++;
         }
+    }
 
-        return new Token(TokenType.COMMENT, sb.toString(), startLine, startColumn);
+    private Token token(TokenKind kind, int start, int startLine, int startColumn) {
+        return new Token(kind, input, start, position - start, startLine, startColumn, null);
     }
 
     private Token scanNumber() {
         int startLine = line;
         int startColumn = column;
-        StringBuilder sb = new StringBuilder();
+        int start = position;
 
         // Check for hexadecimal
-        if (position + 1 < input.length() && input.charAt(position) == '0' &&
-                (input.charAt(position + 1) == 'x' || input.charAt(position + 1) == 'X')) {
-            sb.append("0");
-            sb.append(input.charAt(position + 1));
-            position += 2;
-            column += 2;
-
-            while (position < input.length() && isHexDigit(input.charAt(position))) {
-                sb.append(input.charAt(position));
-                position++;
-                column++;
+        if (position + 1 < end && input[position] == '0' && (input[position + 1] == 'x' || input[position + 1] == 'X')) {
+            advance(2);
+            while (position < end && isHexDigit(input[position])) {
+                advance(1);
             }
-
-            return new Token(TokenType.NUMBER, sb.toString(), startLine, startColumn);
+            return token(TokenKind.NUMBER, start, startLine, startColumn);
         }
 
         // Check for octal (starts with 0)
-        if (position < input.length() && input.charAt(position) == '0' && position + 1 < input.length() &&
-                isDigit(input.charAt(position + 1))) {
-            sb.append('0');
-            position++;
-            column++;
-
-            while (position < input.length() && isDigit(input.charAt(position))) {
-                sb.append(input.charAt(position));
-                position++;
-                column++;
+        if (input[position] == '0' && position + 1 < end && isDigit(input[position + 1])) {
+            advance(1);
+            while (position < end && isDigit(input[position])) {
+                advance(1);
             }
-
-            return new Token(TokenType.NUMBER, sb.toString(), startLine, startColumn);
+            return token(TokenKind.NUMBER, start, startLine, startColumn);
         }
 
         // Decimal number
         boolean hasDecimalPoint = false;
-        while (position < input.length() &&
-                (isDigit(input.charAt(position)) || (input.charAt(position) == '.' && !hasDecimalPoint))) {
-
-            if (input.charAt(position) == '.') {
+        while (position < end && (isDigit(input[position]) || (input[position] == '.' && !hasDecimalPoint))) {
+            if (input[position] == '.') {
                 hasDecimalPoint = true;
             }
-
-            sb.append(input.charAt(position));
-            position++;
-            column++;
+            advance(1);
         }
 
         // Check for exponent
-        if (position < input.length() && (input.charAt(position) == 'e' || input.charAt(position) == 'E')) {
-            sb.append(input.charAt(position));
-            position++;
-            column++;
+        if (position < end && (input[position] == 'e' || input[position] == 'E')) {
+            advance(1);
 
             // Check for sign
-            if (position < input.length() && (input.charAt(position) == '+' || input.charAt(position) == '-')) {
-                sb.append(input.charAt(position));
-                position++;
-                column++;
+            if (position < end && (input[position] == '+' || input[position] == '-')) {
+                advance(1);
             }
 
             // Exponent digits
-            while (position < input.length() && isDigit(input.charAt(position))) {
-                sb.append(input.charAt(position));
-                position++;
-                column++;
+            while (position < end && isDigit(input[position])) {
+                advance(1);
             }
         }
 
-        return new Token(TokenType.NUMBER, sb.toString(), startLine, startColumn);
+        return token(TokenKind.NUMBER, start, startLine, startColumn);
     }
 
+    private void advance(int count) {
+        position += count;
+        column += count;
+    }
+
+    // the token value is the raw literal with quotes, escapes are only validated here
     private Token scanString() {
         int startLine = line;
         int startColumn = column;
-        StringBuilder sb = new StringBuilder();
+        int start = position;
 
-        char quote = input.charAt(position);
-        sb.append(quote);
-        position++;
-        column++;
+        skipString();
+        return token(TokenKind.STRING, start, startLine, startColumn);
+    }
+
+    private void skipString() {
+        char quote = input[position];
+        advance(1);
 
-        while (position < input.length()) {
-            char ch = input.charAt(position);
+        while (position < end) {
+            char ch = input[position];
             if (ch == '\\') {
-                handleEscapeSequence(sb);
+                skipEscapeSequence();
             } else if (ch == quote) {
-                sb.append(ch);
-                position++;
-                column++;
+                advance(1);
                 break;
             } else if (ch == '\n') {
                 throw new RuntimeException("String literal contains newline at line " + line + ", column " + column);
             } else {
-                sb.append(ch);
-                position++;
-                column++;
+                advance(1);
             }
         }
-
-        return new Token(TokenType.STRING, sb.toString(), startLine, startColumn);
     }
 
     private Token scanIdentifier() {
         int startLine = line;
         int startColumn = column;
-        StringBuilder sb = new StringBuilder();
+        int start = position;
 
-        while (position < input.length() && isIdentifierPart(input.charAt(position))) {
-            sb.append(input.charAt(position));
-            position++;
-            column++;
+        while (position < end && isIdentifierPart(input[position])) {
+            advance(1);
         }
 
-        String identifier = sb.toString();
-        TokenType type = RESERVED_WORDS.getOrDefault(identifier, TokenType.IDENTIFIER);
+        TokenKind kind = RESERVED_WORDS.kind(input, start, position - start);
+        if (kind != null) {
+            return token(kind, start, startLine, startColumn);
+        }
+        String identifier = names.intern(input, start, position - start);
+        return new Token(TokenKind.IDENTIFIER, input, start, position - start, startLine, startColumn, identifier);
+    }
 
-        return new Token(type, identifier, startLine, startColumn);
+    private Token scanRegex() {
+        int startLine = line;
+        int startColumn = column;
+        int start = position;
+
+        advance(1);
+        boolean inClass = false;
+        while (true) {
+            if (position >= end || input[position] == '\n') {
+                throw new RuntimeException(
+                        "Unterminated regular expression at line " + startLine + ", column " + startColumn);
+            }
+            char ch = input[position];
+            if (ch == '\\' && position + 1 < end && input[position + 1] != '\n') {
+                advance(2);
+                continue;
+            }
+            advance(1);
+            if (ch == '[') {
+                inClass = true;
+            } else if (ch == ']') {
+                inClass = false;
+            } else if (ch == '/' && !inClass) {
+                break;
+            }
+        }
+        // Flags
+        while (position < end && isIdentifierPart(input[position])) {
+            advance(1);
+        }
+
+        return token(TokenKind.REGEX, start, startLine, startColumn);
+    }
+
+    private char peek(int offset) {
+        return position + offset < end ? input[position + offset] : '\0';
     }
 
     private Token scanOperatorOrPunctuation() {
         int startLine = line;
         int startColumn = column;
-        char ch = input.charAt(position);
-
-        // Handle multi-character operators
-        if (position + 1 < input.length()) {
-            String twoChars = input.substring(position, position + 2);
-
-            if (position + 2 < input.length()) {
-                String threeChars = input.substring(position, position + 3);
-
-                // Three-character operators
-                switch (threeChars) {
-                    case "===":
-                    case "!==":
-                        position += 3;
-                        column += 3;
-                        return new Token(TokenType.OPERATOR, threeChars, startLine, startColumn);
-                    case "...":
-                        // Check if this is a rest operator followed by an identifier
-                        if (position + 3 < input.length() && isIdentifierStart(input.charAt(position + 3))) {
-                            position += 3;
-                            column += 3;
-                            StringBuilder sb = new StringBuilder("...");
-
-                            // Collect the identifier following the rest operator
-                            while (position < input.length() && isIdentifierPart(input.charAt(position))) {
-                                sb.append(input.charAt(position));
-                                position++;
-                                column++;
-                            }
-
-                            return new Token(TokenType.REST_IDENTIFIER, sb.toString(), startLine, startColumn);
-                        }
-                        // If not followed by an identifier, treat as normal operator
-                        position += 3;
-                        column += 3;
-                        return new Token(TokenType.OPERATOR, threeChars, startLine, startColumn);
+        int start = position;
+        char ch = input[position];
+        char ch2 = peek(1);
+        char ch3 = peek(2);
+
+        // Three-character operators
+        if ((ch == '=' || ch == '!') && ch2 == '=' && ch3 == '=') {
+            advance(3);
+            return token(ch == '=' ? TokenKind.STRICT_EQ : TokenKind.STRICT_NE, start, startLine, startColumn);
+        }
+        if (ch == '.' && ch2 == '.' && ch3 == '.') {
+            advance(3);
+            // Check if this is a rest operator followed by an identifier
+            if (position < end && isIdentifierStart(input[position])) {
+                // Collect the identifier following the rest operator
+                while (position < end && isIdentifierPart(input[position])) {
+                    advance(1);
                 }
+                return token(TokenKind.REST_IDENTIFIER, start, startLine, startColumn);
             }
-
-            // Two-character operators
-            switch (twoChars) {
-                case "==":
-                case "!=":
-                case "<=":
-                case ">=":
-                case "++":
-                case "--":
-                case "+=":
-                case "-=":
-                case "*=":
-                case "/=":
-                case "%=":
-                case "&&":
-                case "||":
-                case "=>":
-                case "??":
-                case "?.":
-                case "**":
-                    position += 2;
-                    column += 2;
-                    return new Token(TokenType.OPERATOR, twoChars, startLine, startColumn);
-            }
+            // If not followed by an identifier, treat as normal operator
+            return token(TokenKind.SPREAD, start, startLine, startColumn);
         }
 
-        // Single character operators
-        switch (ch) {
-            case '+':
-            case '-':
-            case '*':
-            case '/':
-            case '%':
-            case '!':
-            case '<':
-            case '>':
-            case '=':
-                position++;
-                column++;
-                return new Token(TokenType.OPERATOR, String.valueOf(ch), startLine, startColumn);
-
-            // Punctuation
-            case ';':
-            case ',':
-            case '.':
-            case ':':
-            case '(':
-            case ')':
-            case '[':
-            case ']':
-            case '{':
-            case '}':
-            case '?':
-                position++;
-                column++;
-                return new Token(TokenType.PUNCTUATION, String.valueOf(ch), startLine, startColumn);
-
-            default:
-                // Unrecognized character
-                position++;
-                column++;
-                return new Token(TokenType.OPERATOR, String.valueOf(ch), startLine, startColumn);
+        // Two-character operators
+        TokenKind kind = switch (ch) {
+            case '=' -> ch2 == '=' ? TokenKind.EQ : ch2 == '>' ? TokenKind.ARROW : null;
+            case '!' -> ch2 == '=' ? TokenKind.NE : null;
+            case '<' -> ch2 == '=' ? TokenKind.LE : null;
+            case '>' -> ch2 == '=' ? TokenKind.GE : null;
+            case '+' -> ch2 == '+' ? TokenKind.INC : ch2 == '=' ? TokenKind.PLUS_ASSIGN : null;
+            case '-' -> ch2 == '-' ? TokenKind.DEC : ch2 == '=' ? TokenKind.MINUS_ASSIGN : null;
+            case '*' -> ch2 == '=' ? TokenKind.MUL_ASSIGN : ch2 == '*' ? TokenKind.POW : null;
+            case '/' -> ch2 == '=' ? TokenKind.DIV_ASSIGN : null;
+            case '%' -> ch2 == '=' ? TokenKind.MOD_ASSIGN : null;
+            case '&' -> ch2 == '&' ? TokenKind.AND : null;
+            case '|' -> ch2 == '|' ? TokenKind.OR : null;
+            case '?' -> ch2 == '?' ? TokenKind.NULLISH : ch2 == '.' ? TokenKind.OPTIONAL_CHAIN : null;
+            default -> null;
+        };
+        if (kind != null) {
+            advance(2);
+            return token(kind, start, startLine, startColumn);
         }
+
+        // Single character operators and punctuation
+        kind = switch (ch) {
+            case '+' -> TokenKind.PLUS;
+            case '-' -> TokenKind.MINUS;
+            case '*' -> TokenKind.MUL;
+            case '/' -> TokenKind.DIV;
+            case '%' -> TokenKind.MOD;
+            case '!' -> TokenKind.NOT;
+            case '<' -> TokenKind.LT;
+            case '>' -> TokenKind.GT;
+            case '=' -> TokenKind.ASSIGN;
+            case ';' -> TokenKind.SEMICOLON;
+            case ',' -> TokenKind.COMMA;
+            case '.' -> TokenKind.DOT;
+            case ':' -> TokenKind.COLON;
+            case '(' -> TokenKind.LPAREN;
+            case ')' -> TokenKind.RPAREN;
+            case '[' -> TokenKind.LBRACKET;
+            case ']' -> TokenKind.RBRACKET;
+            case '{' -> TokenKind.LBRACE;
+            case '}' -> TokenKind.RBRACE;
+            case '?' -> TokenKind.QUESTION;
+            // Unrecognized character
+            default -> TokenKind.UNKNOWN;
+        };
+        advance(1);
+        return token(kind, start, startLine, startColumn);
     }
 
     /**
@@ -436,65 +430,49 @@ public class JsLexer {
     private Token scanTemplateString() {
         int startLine = line;
         int startColumn = column;
-        StringBuilder sb = new StringBuilder();
+        int start = position;
         List<Token> subtokens = new ArrayList<>();
         int lastDelimiterPos = position + 1;
         int lastDelimiterLine = line;
         int lastDelimiterColumn = column + 1;
 
-        // Add opening backtick
-        sb.append('`');
-        position++;
-        column++;
+        // Skip opening backtick
+        advance(1);
 
-        while (position < input.length()) {
-            char ch = input.charAt(position);
+        while (position < end) {
+            char ch = input[position];
 
             if (ch == '\\') {
-                handleEscapeSequence(sb);
+                skipEscapeSequence();
             } else if (ch == '`') {
                 // End of template string
-                sb.append(ch);
-                position++;
-                column++;
+                advance(1);
                 break;
-            } else if (ch == '$' && position + 1 < input.length() && input.charAt(position + 1) == '{') {
-                // Handle interpolation start
-                subtokens.add(
-                        new Token(TokenType.STRING, input.substring(lastDelimiterPos, position), lastDelimiterLine,
-                                  lastDelimiterColumn));
+            } else if (ch == '$' && position + 1 < end && input[position + 1] == '{') {
+                // Handle interpolation start, constant parts are STRING and ${...} parts STRING_TEMPLATE subtokens
+                subtokens.add(new Token(TokenKind.STRING, input, lastDelimiterPos, position - lastDelimiterPos,
+                                        lastDelimiterLine, lastDelimiterColumn, null));
                 lastDelimiterPos = position;
                 lastDelimiterLine = line;
                 lastDelimiterColumn = column;
-                sb.append("${");
-                position += 2;
-                column += 2;
-
+                advance(2);
 
                 // Track nested curly braces to correctly handle complex expressions
                 int nestedBraces = 1;
-                while (position < input.length() && nestedBraces > 0) {
-                    ch = input.charAt(position);
+                while (position < end && nestedBraces > 0) {
+                    ch = input[position];
 
                     if (ch == '{') {
                         nestedBraces++;
-                        sb.append(ch);
-                        position++;
-                        column++;
+                        advance(1);
                     } else if (ch == '}') {
                         nestedBraces--;
-                        sb.append(ch);
-                        position++;
-                        column++;
-                        // If this is the closing brace of the interpolation, stop here
-                        if (nestedBraces == 0) {
-                            break;
-                        }
+                        advance(1);
                     } else if (ch == '\n') {
                         line++;
                         column = 1;
                         position++;
-                    } else if (ch == '\r' && position + 1 < input.length() && input.charAt(position + 1) == '\n') {
+                    } else if (ch == '\r' && position + 1 < end && input[position + 1] == '\n') {
                         line++;
                         column = 1;
                         position++;
@@ -503,105 +481,156 @@ public class JsLexer {
                                 "Template string expression contains escape at line " + line + ", column " + column);
                     } else if (ch == '"' || ch == '\'' || ch == '`') {
                         // Handle quoted strings in interpolation to prevent closing on a brace within a string
-                        sb.append(scanString().getValue());
+                        skipString();
                     } else {
-                        sb.append(ch);
-                        position++;
-                        column++;
+                        advance(1);
                     }
                 }
-                subtokens.add(
-                        new Token(TokenType.STRING, input.substring(lastDelimiterPos, position), lastDelimiterLine,
-                                  lastDelimiterColumn));
+                subtokens.add(new Token(TokenKind.STRING_TEMPLATE, input, lastDelimiterPos, position - lastDelimiterPos,
+                                        lastDelimiterLine, lastDelimiterColumn, null));
                 lastDelimiterPos = position;
                 lastDelimiterLine = line;
                 lastDelimiterColumn = column;
             } else if (ch == '\n') {
                 // Handle line breaks in template strings (allowed in ES6+)
-                sb.append('\n');
                 line++;
                 column = 1;
                 position++;
             } else {
-                sb.append(ch);
-                column++;
-                position++;
+                advance(1);
             }
         }
-        subtokens.add(new Token(TokenType.STRING, input.substring(lastDelimiterPos, position - 1), lastDelimiterLine,
-                                lastDelimiterColumn));
-        return new Token(TokenType.STRING_TEMPLATE, sb.toString(), startLine, startColumn, subtokens);
+        subtokens.add(new Token(TokenKind.STRING, input, lastDelimiterPos, position - 1 - lastDelimiterPos,
+                                lastDelimiterLine, lastDelimiterColumn, null));
+        return new Token(TokenKind.STRING_TEMPLATE, input, start, position - start, startLine, startColumn, null,
+                         subtokens);
     }
 
     /**
-     * Handles an escape sequence in strings and template strings.
-     * Returns true if the character should be appended to the string.
-     *
-     * @param sb The string builder to append characters to
+     * Validates an escape sequence in strings and template strings, the value is decoded later by the parser.
      */
-    private void handleEscapeSequence(StringBuilder sb) {
-        if (position + 1 >= input.length()) {
+    private void skipEscapeSequence() {
+        if (position + 1 >= end) {
             throw new RuntimeException("last character in file is \\");
         }
         position++;
-        char ch = input.charAt(position);
+        char ch = input[position];
         switch (ch) {
-            case 'n':
-                sb.append('\n');
-                break;
-            case 'r':
-                sb.append('\r');
-                break;
-            case 't':
-                sb.append('\t');
-                break;
-            case 'b':
-                sb.append('\b');
-                break;
-            case 'f':
-                sb.append('\f');
-                break;
-            case '\\':
-                sb.append('\\');
-                break;
-            case '\'':
-                sb.append('\'');
-                break;
-            case '"':
-                sb.append('"');
-                break;
-            case '`':
-                sb.append('`');
+            case 'n', 'r', 't', 'b', 'f', '\\', '\'', '"', '`':
                 break;
             case 'x':
-                //convert to \xXX to character
-                // Convert \xXX hex escape sequence to character
-                if (position + 2 < input.length() && isHexDigit(input.charAt(position + 1)) &&
-                        isHexDigit(input.charAt(position + 2))) {
-                    String hexStr = input.substring(position + 1, position + 3);
-                    sb.append((char) Integer.parseInt(hexStr, 16));
+                // \xXX hex escape sequence
+                if (position + 2 < end && isHexDigit(input[position + 1]) && isHexDigit(input[position + 2])) {
                     position += 2;
                     break;
                 }
                 throw new RuntimeException(
-                        "Invalid escape sequence: \\x" + input.substring(position + 1, position + 3) + " at line " +
-                                line + ", column " + column);
+                        "Invalid escape sequence: \\x" + slice(position + 1, position + 3) + " at line " + line +
+                                ", column " + column);
             case 'u':
-                // Unicode escape sequence \\uXXXX to character
-                if (position + 4 < input.length() && isHexDigit(input.charAt(position + 1)) &&
-                        isHexDigit(input.charAt(position + 2)) && isHexDigit(input.charAt(position + 3)) &&
-                        isHexDigit(input.charAt(position + 4))) {
-                    sb.append((char) Integer.parseInt(input.substring(position + 1, position + 5), 16));
+                // Unicode escape sequence \\uXXXX
+                if (position + 4 < end && isHexDigit(input[position + 1]) && isHexDigit(input[position + 2]) &&
+                        isHexDigit(input[position + 3]) && isHexDigit(input[position + 4])) {
                     position += 4;
                     break;
                 }
                 throw new RuntimeException(
-                        "Invalid escape sequence: \\u" + input.substring(position + 1, position + 5) + " at line " +
-                                line + ", column " + column);
+                        "Invalid escape sequence: \\u" + slice(position + 1, position + 5) + " at line " + line +
+                                ", column " + column);
             default:
                 throw new RuntimeException("Invalid escape sequence at line " + line + ", column " + column);
         }
         position++;
     }
 
-}
\ No newline at end of file
+    private String slice(int from, int to) {
+        return new String(input, from, Math.min(to, end) - from);
+    }
+
+    /**
+     * Open addressing table of names, keywords are mapped to their kind and identifiers are interned,
+     * so every occurrence of a name shares one String and lookups do not allocate.
+     */
+    static class NameTable {
+        private String[] names;
+        private TokenKind[] kinds;
+        private int size;
+
+        NameTable(int capacity) {
+            this.names = new String[capacity];
+            this.kinds = new TokenKind[capacity];
+        }
+
+        private static int hash(char[] chars, int offset, int length) {
+            int h = 0;
+            for (int i = offset; i < offset + length; i++) {
+                h = 31 * h + chars[i];
+            }
+            // spread similar names like a1, a2, a3 over the table, linear probing would cluster them
+            h *= 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+        private int slot(char[] chars, int offset, int length) {
+            int mask = names.length - 1;
+            int i = hash(chars, offset, length) & mask;
+            while (names[i] != null && !sameName(names[i], chars, offset, length)) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        private static boolean sameName(String name, char[] chars, int offset, int length) {
+            if (name.length() != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (name.charAt(i) != chars[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void add(String name, TokenKind kind) {
+            int i = slot(name.toCharArray(), 0, name.length());
+            if (names[i] == null) {
+                names[i] = name;
+                size++;
+            }
+            kinds[i] = kind;
+        }
+
+        TokenKind kind(char[] chars, int offset, int length) {
+            int i = slot(chars, offset, length);
+            return names[i] != null ? kinds[i] : null;
+        }
+
+        String intern(char[] chars, int offset, int length) {
+            int i = slot(chars, offset, length);
+            if (names[i] == null) {
+                if ((size + 1) * 2 > names.length) {
+                    rehash();
+                    i = slot(chars, offset, length);
+                }
+                names[i] = new String(chars, offset, length);
+                size++;
+            }
+            return names[i];
+        }
+
+        private void rehash() {
+            String[] oldNames = names;
+            TokenKind[] oldKinds = kinds;
+            names = new String[oldNames.length * 2];
+            kinds = new TokenKind[oldNames.length * 2];
+            for (int j = 0; j < oldNames.length; j++) {
+                if (oldNames[j] != null) {
+                    int i = slot(oldNames[j].toCharArray(), 0, oldNames[j].length());
+                    names[i] = oldNames[j];
+                    kinds[i] = oldKinds[j];
+                }
+            }
+        }
+    }
+}
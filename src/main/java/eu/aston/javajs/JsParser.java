@@ -1,7 +1,10 @@
 package eu.aston.javajs;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Supplier;
+import java.util.regex.PatternSyntaxException;
 
 import eu.aston.javajs.AstNodes.ASTNode;
 import eu.aston.javajs.AstNodes.ArrayLiteralNode;
@@ -41,25 +44,46 @@ import eu.aston.javajs.AstNodes.UnaryExpressionNode;
 import eu.aston.javajs.AstNodes.VariableDeclarationNode;
 import eu.aston.javajs.AstNodes.VariableStatementNode;
 import eu.aston.javajs.AstNodes.WhileStatementNode;
+import eu.aston.javajs.types.JsRegExp;
 import eu.aston.javajs.types.JsTypes;
 import eu.aston.javajs.types.Undefined;
 
 public class JsParser {
     private Token currentToken;
-    private int tokenPosition;
-    private final List<Token> tokens;
+    // tokens read ahead of currentToken, filled only when the grammar needs to look further
+    private final ArrayList<Token> lookahead = new ArrayList<>();
+    private int lookaheadStart;
+    private final Supplier<Token> source;
+    private final JsLexer lexer;
     private final VariablesAnalyzer variablesAnalyzer;
+    private final AstOptimizer optimizer = new AstOptimizer();
+    private int lastTokenEnd;
+    public static int MAX_NESTING = 256;
+    // open statements and unary expressions, a deeper script is a syntax error instead of a stack overflow
+    private int nesting;
+    // top level statement of a CompiledScript parsed now, its nodes count lines from its first line
+    private Object segment;
+    private int segmentLine;
+
+    public JsParser(JsLexer lexer) {
+        this(lexer, new VariablesAnalyzer());
+    }
 
-    public JsParser(List<Token> tokens) {
-        this.tokens = tokens;
-        this.tokenPosition = 0;
-        this.variablesAnalyzer = new VariablesAnalyzer();
+    public JsParser(JsLexer lexer, VariablesAnalyzer variablesAnalyzer) {
+        this.source = lexer::next;
+        this.lexer = lexer;
+        this.variablesAnalyzer = variablesAnalyzer;
         advance();
     }
 
+    public JsParser(List<Token> tokens) {
+        this(tokens, new VariablesAnalyzer());
+    }
+
     public JsParser(List<Token> tokens, VariablesAnalyzer variablesAnalyzer) {
-        this.tokens = tokens;
-        this.tokenPosition = 0;
+        Iterator<Token> iterator = tokens.iterator();
+        this.source = () -> iterator.hasNext() ? iterator.next() : new Token(TokenKind.EOF, "", 0, 0);
+        this.lexer = null;
         this.variablesAnalyzer = variablesAnalyzer;
         advance();
     }
@@ -70,36 +94,73 @@ public class JsParser {
     }
 
     private void advance() {
-        if (tokenPosition < tokens.size()) {
-            currentToken = tokens.get(tokenPosition++);
+        if (currentToken != null) {
+            lastTokenEnd = currentToken.getOffset() + currentToken.getLength();
+        }
+        if (lookaheadStart < lookahead.size()) {
+            currentToken = lookahead.get(lookaheadStart++);
+            if (lookaheadStart == lookahead.size()) {
+                lookahead.clear();
+                lookaheadStart = 0;
+            }
         } else {
-            currentToken = new Token(TokenType.EOF, "", 0, 0);
+            currentToken = source.get();
         }
     }
 
-    private boolean matchAdvance(TokenType type, String value) {
-        if (currentToken.getType() == type && currentToken.getValue().equals(value)) {
+    Token currentToken() {
+        return currentToken;
+    }
+
+    // statement of a CompiledScript parsed next, positions of its nodes are relative to segmentLine
+    void segment(Object segment, int segmentLine) {
+        this.segment = segment;
+        this.segmentLine = segmentLine;
+    }
+
+    private TokenPos tokenPos() {
+        return segment == null ? currentToken.tokenPos()
+                               : new TokenPos(currentToken.getLine() - segmentLine, currentToken.getColumn(), segment);
+    }
+
+    // source offset just after the last consumed token
+    int lastTokenEnd() {
+        return lastTokenEnd;
+    }
+
+    // source offset just after the last token read by the parser, including the tokens it looked ahead at
+    int readEnd() {
+        Token last = lookaheadStart < lookahead.size() ? lookahead.getLast() : currentToken;
+        return last.getOffset() + last.getLength();
+    }
+
+    // token at distance pos after currentToken, peek(0) is the next token
+    private Token peek(int pos) {
+        while (lookahead.size() - lookaheadStart <= pos) {
+            lookahead.add(source.get());
+        }
+        return lookahead.get(lookaheadStart + pos);
+    }
+
+    private boolean matchAdvance(TokenKind kind) {
+        if (currentToken.getKind() == kind) {
             advance();
             return true;
         }
         return false;
     }
 
-    private boolean match(TokenType type, String value) {
-        return currentToken.getType() == type && currentToken.getValue().equals(value);
+    private boolean match(TokenKind kind) {
+        return currentToken.getKind() == kind;
     }
 
-    private boolean matchPos(int pos, TokenType type, String value) {
-        if (pos >= tokens.size()) {
-            return false;
-        }
-        Token token2 = tokens.get(pos);
-        return token2.getType() == type && token2.getValue().equals(value);
+    private boolean matchPos(int pos, TokenKind kind) {
+        return peek(pos).getKind() == kind;
     }
 
-    private void expect(TokenType type, String value) {
-        if (currentToken.getType() != type || !currentToken.getValue().equals(value)) {
-            throw new SyntaxError("Expected " + type + " with value '" + value + "' but got " + currentToken.getType() +
+    private void expect(TokenKind kind) {
+        if (currentToken.getKind() != kind) {
+            throw new SyntaxError("Expected " + kind.type() + " with value '" + kind.text() + "' but got " + currentToken.getType() +
                                           " with value '" + currentToken.getValue() + "'" + " at line " +
                                           currentToken.getLine() + ", column " + currentToken.getColumn());
         }
@@ -107,8 +168,8 @@ public class JsParser {
     }
 
     private void expectEndStatement() {
-        if (!(matchAdvance(TokenType.PUNCTUATION, ";") || match(TokenType.PUNCTUATION, "}") ||
-                tokenPosition >= tokens.size() || currentToken.getLine() < tokens.get(tokenPosition).getLine())) {
+        if (!(matchAdvance(TokenKind.SEMICOLON) || match(TokenKind.RBRACE) ||
+                matchPos(0, TokenKind.EOF) || currentToken.getLine() < peek(0).getLine())) {
             throw new SyntaxError("Expected end statement but got " + currentToken.getType() + " with value '" +
                                           currentToken.getValue() + "'" + " at line " + currentToken.getLine() +
                                           ", column " + currentToken.getColumn());
@@ -118,18 +179,28 @@ public class JsParser {
     // Program = Statement*
     private ASTNode parseProgram() {
         BlockNode blockNode = new BlockNode();
+        while (currentToken.getKind() != TokenKind.EOF) {
+            blockNode.addStatement(parseTopLevelStatement());
+        }
+        variablesAnalyzer.pairAll();
+        return optimizer.optimize(new ProgramNode(blockNode, variablesAnalyzer.stackDef()));
+    }
+
+    // optimizations applied to the parsed program
+    public AstOptimizer.Report optimizeReport() {
+        return optimizer.report();
+    }
+
+    // top level statement, lexer errors are reported as syntax errors at the current token
+    ASTNode parseTopLevelStatement() {
         try {
-            while (currentToken.getType() != TokenType.EOF) {
-                blockNode.addStatement(parseStatement());
-            }
+            return parseStatement();
         } catch (SyntaxError e) {
             throw e;
         } catch (Exception e) {
             throw new SyntaxError(e.getMessage() + " " + " at line " + currentToken.getLine() + ", column " +
                                           currentToken.getColumn());
         }
-        variablesAnalyzer.pairAll();
-        return new ProgramNode(blockNode, variablesAnalyzer.stackDef());
     }
 
     // Statement = Block | VariableStatement | EmptyStatement | ExpressionStatement
@@ -137,53 +208,67 @@ public class JsParser {
     //           | ReturnStatement | LabelledStatement | SwitchStatement
     //           | ThrowStatement | TryStatement | FunctionDeclaration
     private ASTNode parseStatement() {
-        switch (currentToken.getType()) {
-            case PUNCTUATION:
-                if (currentToken.getValue().equals("{")) {
-                    return parseBlock();
-                } else if (currentToken.getValue().equals(";")) {
-                    advance(); // Skip semicolon
-                    return new EmptyStatementNode();
-                } else if (currentToken.getValue().equals("[")) {
-                    ASTNode node = parseDestructingArray(null);
-                    expectEndStatement();
-                    return node;
-                } else if (currentToken.getValue().equals("(") && matchPos(tokenPosition, TokenType.PUNCTUATION, "{")) {
-                    matchAdvance(TokenType.PUNCTUATION, "(");
+        enterNesting();
+        try {
+            return parseStatementKind();
+        } finally {
+            nesting--;
+        }
+    }
+
+    // every nesting level of a script passes here or through parseUnaryExpression, a level costs up to 3 kB of
+    // stack, so the limit fits the default 1 MB thread stack
+    private void enterNesting() {
+        if (++nesting > MAX_NESTING) {
+            throw new SyntaxError("SyntaxError: script is nested deeper than " + MAX_NESTING + " levels at line " +
+                                          currentToken.getLine() + ", column " + currentToken.getColumn());
+        }
+    }
+
+    private ASTNode parseStatementKind() {
+        switch (currentToken.getKind()) {
+            case LBRACE:
+                return parseBlock();
+            case SEMICOLON:
+                advance(); // Skip semicolon
+                return new EmptyStatementNode();
+            case LBRACKET: {
+                ASTNode node = parseDestructingArray(null);
+                expectEndStatement();
+                return node;
+            }
+            case LPAREN:
+                if (matchPos(0, TokenKind.LBRACE)) {
+                    matchAdvance(TokenKind.LPAREN);
                     ASTNode node = parseDestructingObject(null);
-                    matchAdvance(TokenType.PUNCTUATION, ")");
+                    matchAdvance(TokenKind.RPAREN);
                     expectEndStatement();
                     return node;
                 }
                 break;
-
-            case KEYWORD:
-                switch (currentToken.getValue()) {
-                    case "let":
-                    case "const":
-                        return parseVariableStatement();
-                    case "if":
-                        return parseIfStatement();
-                    case "do":
-                    case "while":
-                    case "for":
-                        return parseIterationStatement();
-                    case "continue":
-                        return parseContinueStatement();
-                    case "break":
-                        return parseBreakStatement();
-                    case "return":
-                        return parseReturnStatement();
-                    case "switch":
-                        return parseSwitchStatement();
-                    case "throw":
-                        return parseThrowStatement();
-                    case "try":
-                        return parseTryStatement();
-                    case "function":
-                        return parseFunctionDeclaration();
-                }
-                break;
+            case LET:
+            case CONST:
+                return parseVariableStatement();
+            case IF:
+                return parseIfStatement();
+            case DO:
+            case WHILE:
+            case FOR:
+                return parseIterationStatement();
+            case CONTINUE:
+                return parseContinueStatement();
+            case BREAK:
+                return parseBreakStatement();
+            case RETURN:
+                return parseReturnStatement();
+            case SWITCH:
+                return parseSwitchStatement();
+            case THROW:
+                return parseThrowStatement();
+            case TRY:
+                return parseTryStatement();
+            case FUNCTION:
+                return parseFunctionDeclaration();
         }
 
         // If no specific statement was recognized, default to expression statement
@@ -193,19 +278,18 @@ public class JsParser {
     // Block = "{" Statement* "}"
     public BlockNode parseBlock() {
         BlockNode block = new BlockNode();
-        expect(TokenType.PUNCTUATION, "{");
+        expect(TokenKind.LBRACE);
         variablesAnalyzer.startBlock();
-        while (!match(TokenType.PUNCTUATION, "}")) {
+        while (!match(TokenKind.RBRACE)) {
             block.addStatement(parseStatement());
         }
-        expect(TokenType.PUNCTUATION, "}");
+        expect(TokenKind.RBRACE);
         variablesAnalyzer.endBlock();
         return block;
     }
 
     private boolean variableAccess() {
-        return currentToken.getType() == TokenType.KEYWORD &&
-                (currentToken.getValue().equals("let") || currentToken.getValue().equals("const"));
+        return currentToken.getKind() == TokenKind.LET || currentToken.getKind() == TokenKind.CONST;
     }
 
     // VariableStatement = ("let"|"const") VariableDeclarationList ";"
@@ -218,11 +302,11 @@ public class JsParser {
         VariableStatementNode node = new VariableStatementNode();
         advance();
 
-        if (match(TokenType.PUNCTUATION, "[")) {
+        if (match(TokenKind.LBRACKET)) {
             //destructing array
             return parseDestructingArray(access);
         }
-        if (match(TokenType.PUNCTUATION, "{")) {
+        if (match(TokenKind.LBRACE)) {
             //destructing object
             return parseDestructingObject(access);
         }
@@ -231,7 +315,7 @@ public class JsParser {
         node.addDeclaration(parseVariableDeclaration(access));
 
         // Parse additional variable declarations separated by commas
-        while (matchAdvance(TokenType.PUNCTUATION, ",")) {
+        while (matchAdvance(TokenKind.COMMA)) {
             node.addDeclaration(parseVariableDeclaration(access));
         }
 
@@ -254,7 +338,7 @@ public class JsParser {
         advance();
 
         ASTNode initializer = null;
-        if (matchAdvance(TokenType.OPERATOR, "=")) {
+        if (matchAdvance(TokenKind.ASSIGN)) {
             initializer = parseAssignmentExpression();
         } else if (access.equals("const")) {
             throw new SyntaxError(
@@ -263,23 +347,23 @@ public class JsParser {
         }
 
         return variablesAnalyzer.var(
-                new VariableDeclarationNode(access, identifier, initializer, currentToken.tokenPos()));
+                new VariableDeclarationNode(access, identifier, initializer, tokenPos()));
     }
 
     private ASTNode parseDestructingArray(String access) {
         List<VariableDeclarationNode> variables = new ArrayList<>();
         VariableDeclarationNode restVariable = null;
 
-        expect(TokenType.PUNCTUATION, "[");
+        expect(TokenKind.LBRACKET);
         while (true) {
             if (currentToken.getType() == TokenType.IDENTIFIER) {
                 variables.add(variablesAnalyzer.var(
-                        new VariableDeclarationNode(access, currentToken.getValue(), currentToken.tokenPos())));
+                        new VariableDeclarationNode(access, currentToken.getValue(), tokenPos())));
                 advance();
-                if (matchAdvance(TokenType.PUNCTUATION, ",")) {
+                if (matchAdvance(TokenKind.COMMA)) {
                     continue;
                 }
-                if (matchAdvance(TokenType.PUNCTUATION, "]")) {
+                if (matchAdvance(TokenKind.RBRACKET)) {
                     break;
                 }
                 throw new SyntaxError(
@@ -289,12 +373,12 @@ public class JsParser {
             if (currentToken.getType() == TokenType.REST_IDENTIFIER) {
                 String identifier = currentToken.getValue().substring(3);
                 restVariable = variablesAnalyzer.var(
-                        new VariableDeclarationNode(access, identifier, currentToken.tokenPos()));
+                        new VariableDeclarationNode(access, identifier, tokenPos()));
                 advance();
-                expect(TokenType.PUNCTUATION, "]");
+                expect(TokenKind.RBRACKET);
                 break;
             }
-            if (matchAdvance(TokenType.PUNCTUATION, ",")) {
+            if (matchAdvance(TokenKind.COMMA)) {
                 variables.add(null);
                 continue;
             }
@@ -302,7 +386,7 @@ public class JsParser {
                     "Expected ] but got " + currentToken.getType() + " with value '" + currentToken.getValue() + "'" +
                             " at line " + currentToken.getLine() + ", column " + currentToken.getColumn());
         }
-        expect(TokenType.OPERATOR, "=");
+        expect(TokenKind.ASSIGN);
         ASTNode right = parseAssignmentExpression();
         return new DestructuringArrayNode(variables, restVariable, right);
     }
@@ -311,16 +395,16 @@ public class JsParser {
         List<VariableDeclarationNode> variables = new ArrayList<>();
         VariableDeclarationNode restVariable = null;
 
-        expect(TokenType.PUNCTUATION, "{");
+        expect(TokenKind.LBRACE);
         while (true) {
             if (currentToken.getType() == TokenType.IDENTIFIER) {
                 variables.add(variablesAnalyzer.var(
-                        new VariableDeclarationNode(access, currentToken.getValue(), currentToken.tokenPos())));
+                        new VariableDeclarationNode(access, currentToken.getValue(), tokenPos())));
                 advance();
-                if (matchAdvance(TokenType.PUNCTUATION, ",")) {
+                if (matchAdvance(TokenKind.COMMA)) {
                     continue;
                 }
-                if (matchAdvance(TokenType.PUNCTUATION, "}")) {
+                if (matchAdvance(TokenKind.RBRACE)) {
                     break;
                 }
                 throw new SyntaxError(
@@ -330,16 +414,16 @@ public class JsParser {
             if (currentToken.getType() == TokenType.REST_IDENTIFIER) {
                 String identifier = currentToken.getValue().substring(3);
                 restVariable = variablesAnalyzer.var(
-                        new VariableDeclarationNode(access, identifier, currentToken.tokenPos()));
+                        new VariableDeclarationNode(access, identifier, tokenPos()));
                 advance();
-                expect(TokenType.PUNCTUATION, "}");
+                expect(TokenKind.RBRACE);
                 break;
             }
             throw new SyntaxError(
                     "Expected } but got " + currentToken.getType() + " with value '" + currentToken.getValue() + "'" +
                             " at line " + currentToken.getLine() + ", column " + currentToken.getColumn());
         }
-        expect(TokenType.OPERATOR, "=");
+        expect(TokenKind.ASSIGN);
         ASTNode right = parseAssignmentExpression();
         return new DestructuringObjectNode(variables, restVariable, right);
     }
@@ -347,6 +431,9 @@ public class JsParser {
     // ExpressionStatement = Expression ";"
     private ASTNode parseExpressionStatement() {
         ASTNode expression = parseExpression();
+        if (expression instanceof AssignmentExpressionNode assignment) {
+            expression = new AssignmentExpressionNode(assignment.left, assignment.operator, assignment.right, true);
+        }
 
         expectEndStatement();
         return expression;
@@ -354,10 +441,10 @@ public class JsParser {
 
     // IfStatement = "if" "(" Expression ")" Statement ("else" Statement)|("else" "if" "(" Expression ")" Statement)
     private ASTNode parseIfStatement() {
-        expect(TokenType.KEYWORD, "if");
-        expect(TokenType.PUNCTUATION, "(");
+        expect(TokenKind.IF);
+        expect(TokenKind.LPAREN);
         ASTNode condition = parseExpression();
-        expect(TokenType.PUNCTUATION, ")");
+        expect(TokenKind.RPAREN);
 
         ASTNode thenStatement = parseStatement();
         if (thenStatement instanceof VariableDeclarationNode || thenStatement instanceof VariableStatementNode) {
@@ -366,10 +453,10 @@ public class JsParser {
         }
 
         ASTNode elseStatement = null;
-        if (currentToken.getType() == TokenType.KEYWORD && currentToken.getValue().equals("else")) {
+        if (match(TokenKind.ELSE)) {
             advance();
             // Check if this is an else-if
-            if (currentToken.getType() == TokenType.KEYWORD && currentToken.getValue().equals("if")) {
+            if (match(TokenKind.IF)) {
                 // Recursively parse the else-if as a new if statement
                 elseStatement = parseIfStatement();
             } else {
@@ -388,11 +475,11 @@ public class JsParser {
     // IterationStatement = DoWhileStatement | WhileStatement | ForStatement
     private ASTNode parseIterationStatement() {
         if (currentToken.getType() == TokenType.KEYWORD) {
-            if (currentToken.getValue().equals("do")) {
+            if (match(TokenKind.DO)) {
                 return parseDoWhileStatement();
-            } else if (currentToken.getValue().equals("while")) {
+            } else if (match(TokenKind.WHILE)) {
                 return parseWhileStatement();
-            } else if (currentToken.getValue().equals("for")) {
+            } else if (match(TokenKind.FOR)) {
                 return parseForStatement();
             }
         }
@@ -402,12 +489,12 @@ public class JsParser {
 
     // DoWhileStatement = "do" Statement "while" "(" Expression ")" ";"
     private ASTNode parseDoWhileStatement() {
-        expect(TokenType.KEYWORD, "do");
+        expect(TokenKind.DO);
         ASTNode body = parseStatement();
-        expect(TokenType.KEYWORD, "while");
-        expect(TokenType.PUNCTUATION, "(");
+        expect(TokenKind.WHILE);
+        expect(TokenKind.LPAREN);
         ASTNode condition = parseExpression();
-        expect(TokenType.PUNCTUATION, ")");
+        expect(TokenKind.RPAREN);
 
         expectEndStatement();
 
@@ -416,10 +503,10 @@ public class JsParser {
 
     // WhileStatement = "while" "(" Expression ")" Statement
     private ASTNode parseWhileStatement() {
-        expect(TokenType.KEYWORD, "while");
-        expect(TokenType.PUNCTUATION, "(");
+        expect(TokenKind.WHILE);
+        expect(TokenKind.LPAREN);
         ASTNode condition = parseExpression();
-        expect(TokenType.PUNCTUATION, ")");
+        expect(TokenKind.RPAREN);
         ASTNode body = parseStatement();
 
         return new WhileStatementNode(condition, body);
@@ -428,11 +515,10 @@ public class JsParser {
     // ForStatement = "for" "(" (ExpressionNoIn? | "let|const" VariableDeclarationListNoIn) ";" Expression? ";" Expression? ")" Statement
     //              | "for" "(" (LeftHandSideExpression | "let|const" VariableDeclarationNoIn) "in" Expression ")" Statement
     private ASTNode parseForStatement() {
-        expect(TokenType.KEYWORD, "for");
-        expect(TokenType.PUNCTUATION, "(");
+        expect(TokenKind.FOR);
+        expect(TokenKind.LPAREN);
 
-        if (variableAccess() && tokens.get(tokenPosition).getType() == TokenType.IDENTIFIER &&
-                matchPos(tokenPosition + 1, TokenType.KEYWORD, "in")) {
+        if (variableAccess() && matchPos(0, TokenKind.IDENTIFIER) && matchPos(1, TokenKind.IN)) {
             // Handle for-in loop
             variablesAnalyzer.startBlock();
             String access = currentToken.getValue();
@@ -440,16 +526,15 @@ public class JsParser {
             String identifier = currentToken.getValue();
             advance();
             VariableDeclarationNode forVar = variablesAnalyzer.var(
-                    new VariableDeclarationNode(access, identifier, currentToken.tokenPos()));
-            expect(TokenType.KEYWORD, "in");
+                    new VariableDeclarationNode(access, identifier, tokenPos()));
+            expect(TokenKind.IN);
             ASTNode iterable = parseExpression();
-            expect(TokenType.PUNCTUATION, ")");
+            expect(TokenKind.RPAREN);
             ASTNode body = parseStatement();
             variablesAnalyzer.endBlock();
             return new ForInStatementNode(forVar, iterable, body);
         }
-        if (variableAccess() && tokens.get(tokenPosition).getType() == TokenType.IDENTIFIER &&
-                matchPos(tokenPosition + 1, TokenType.KEYWORD, "of")) {
+        if (variableAccess() && matchPos(0, TokenKind.IDENTIFIER) && matchPos(1, TokenKind.OF)) {
             // Handle for-of loop
             variablesAnalyzer.startBlock();
             String access = currentToken.getValue();
@@ -457,10 +542,10 @@ public class JsParser {
             String identifier = currentToken.getValue();
             advance();
             VariableDeclarationNode forVar = variablesAnalyzer.var(
-                    new VariableDeclarationNode(access, identifier, currentToken.tokenPos()));
-            expect(TokenType.KEYWORD, "of");
+                    new VariableDeclarationNode(access, identifier, tokenPos()));
+            expect(TokenKind.OF);
             ASTNode iterable = parseExpression();
-            expect(TokenType.PUNCTUATION, ")");
+            expect(TokenKind.RPAREN);
             ASTNode body = parseStatement();
             variablesAnalyzer.endBlock();
             return new ForOfStatementNode(forVar, iterable, body);
@@ -476,31 +561,31 @@ public class JsParser {
             String access = currentToken.getValue();
             advance();
             init = parseVariableDeclaration(access);
-            expect(TokenType.PUNCTUATION, ";");
-        } else if (match(TokenType.PUNCTUATION, ";")) {
+            expect(TokenKind.SEMICOLON);
+        } else if (match(TokenKind.SEMICOLON)) {
             // Check for semicolon (empty initialization)
             // No initialization
             advance();
         } else {
             // Otherwise it's an expression
             init = parseExpression();
-            expect(TokenType.PUNCTUATION, ";");
+            expect(TokenKind.SEMICOLON);
         }
 
 
         // Parse condition (optional)
-        if (!match(TokenType.PUNCTUATION, ";")) {
+        if (!match(TokenKind.SEMICOLON)) {
             condition = parseExpression();
         }
 
-        expect(TokenType.PUNCTUATION, ";");
+        expect(TokenKind.SEMICOLON);
 
         // Parse update (optional)
-        if (!match(TokenType.PUNCTUATION, ")")) {
+        if (!match(TokenKind.RPAREN)) {
             update = parseExpression();
         }
 
-        expect(TokenType.PUNCTUATION, ")");
+        expect(TokenKind.RPAREN);
         ASTNode body = parseStatement();
         variablesAnalyzer.endBlock();
         return new ForStatementNode(init, condition, update, body);
@@ -508,7 +593,7 @@ public class JsParser {
 
     // ContinueStatement = "continue" Identifier? ";"
     private ASTNode parseContinueStatement() {
-        expect(TokenType.KEYWORD, "continue");
+        expect(TokenKind.CONTINUE);
 
         expectEndStatement();
         return new ContinueStatementNode();
@@ -516,7 +601,7 @@ public class JsParser {
 
     // BreakStatement = "break" Identifier? ";"
     private ASTNode parseBreakStatement() {
-        expect(TokenType.KEYWORD, "break");
+        expect(TokenKind.BREAK);
 
         expectEndStatement();
         return new BreakStatementNode();
@@ -524,11 +609,10 @@ public class JsParser {
 
     // ReturnStatement = "return" Expression? ";"
     private ASTNode parseReturnStatement() {
-        expect(TokenType.KEYWORD, "return");
+        expect(TokenKind.RETURN);
 
         ASTNode expression = null;
-        if (!(currentToken.getType() == TokenType.PUNCTUATION &&
-                (currentToken.getValue().equals(";") || currentToken.getValue().equals("}")))) {
+        if (!(match(TokenKind.SEMICOLON) || match(TokenKind.RBRACE))) {
             expression = parseExpression();
         }
 
@@ -545,10 +629,9 @@ public class JsParser {
     private ASTNode parseAssignmentExpression() {
         ASTNode left = parseConditionalExpression();
 
-        if (currentToken.getType() == TokenType.OPERATOR) {
-            String operator = currentToken.getValue();
-            if (operator.equals("=") || operator.equals("+=") || operator.equals("-=") || operator.equals("*=") ||
-                    operator.equals("/=") || operator.equals("%=")) {
+        switch (currentToken.getKind()) {
+            case ASSIGN, PLUS_ASSIGN, MINUS_ASSIGN, MUL_ASSIGN, DIV_ASSIGN, MOD_ASSIGN -> {
+                String operator = currentToken.getValue();
                 advance();
                 ASTNode right = parseAssignmentExpression();
                 if (left instanceof IdentifierNode in) {
@@ -564,14 +647,14 @@ public class JsParser {
     private ASTNode parseConditionalExpression() {
         ASTNode condition = parseLogicalORExpression();
 
-        if (matchAdvance(TokenType.OPERATOR, "??")) {
+        if (matchAdvance(TokenKind.NULLISH)) {
             ASTNode right = parseAssignmentExpression();
             return new BinaryExpressionNode(condition, "??", right);
         }
 
-        if (matchAdvance(TokenType.PUNCTUATION, "?")) {
+        if (matchAdvance(TokenKind.QUESTION)) {
             ASTNode trueExpression = parseAssignmentExpression();
-            expect(TokenType.PUNCTUATION, ":");
+            expect(TokenKind.COLON);
             ASTNode falseExpression = parseAssignmentExpression();
             return new ConditionalExpressionNode(condition, trueExpression, falseExpression);
         }
@@ -583,7 +666,7 @@ public class JsParser {
     private ASTNode parseLogicalORExpression() {
         ASTNode left = parseLogicalANDExpression();
 
-        while (matchAdvance(TokenType.OPERATOR, "||")) {
+        while (matchAdvance(TokenKind.OR)) {
             ASTNode right = parseLogicalANDExpression();
             left = new BinaryExpressionNode(left, "||", right);
         }
@@ -595,7 +678,7 @@ public class JsParser {
     private ASTNode parseLogicalANDExpression() {
         ASTNode left = parseEqualityExpression();
 
-        while (matchAdvance(TokenType.OPERATOR, "&&")) {
+        while (matchAdvance(TokenKind.AND)) {
             ASTNode right = parseEqualityExpression();
             left = new BinaryExpressionNode(left, "&&", right);
         }
@@ -607,9 +690,8 @@ public class JsParser {
     private ASTNode parseEqualityExpression() {
         ASTNode left = parseRelationalExpression();
 
-        while (currentToken.getType() == TokenType.OPERATOR &&
-                (currentToken.getValue().equals("==") || currentToken.getValue().equals("!=") ||
-                        currentToken.getValue().equals("===") || currentToken.getValue().equals("!=="))) {
+        while (match(TokenKind.EQ) || match(TokenKind.NE) || match(TokenKind.STRICT_EQ) ||
+                match(TokenKind.STRICT_NE)) {
             String operator = currentToken.getValue();
             advance();
             ASTNode right = parseRelationalExpression();
@@ -623,9 +705,7 @@ public class JsParser {
     private ASTNode parseRelationalExpression() {
         ASTNode left = parseAdditiveExpression();
 
-        while (currentToken.getType() == TokenType.OPERATOR &&
-                (currentToken.getValue().equals("<") || currentToken.getValue().equals(">") ||
-                        currentToken.getValue().equals("<=") || currentToken.getValue().equals(">=")) ||
+        while (match(TokenKind.LT) || match(TokenKind.GT) || match(TokenKind.LE) || match(TokenKind.GE) ||
                 (currentToken.getType() == TokenType.KEYWORD)) {
             String operator = currentToken.getValue();
             advance();
@@ -640,8 +720,7 @@ public class JsParser {
     private ASTNode parseAdditiveExpression() {
         ASTNode left = parseMultiplicativeExpression();
 
-        while (currentToken.getType() == TokenType.OPERATOR &&
-                (currentToken.getValue().equals("+") || currentToken.getValue().equals("-"))) {
+        while (match(TokenKind.PLUS) || match(TokenKind.MINUS)) {
             String operator = currentToken.getValue();
             advance();
             ASTNode right = parseMultiplicativeExpression();
@@ -660,9 +739,7 @@ public class JsParser {
     private ASTNode parseMultiplicativeExpression() {
         ASTNode left = parseUnaryExpression();
 
-        while (currentToken.getType() == TokenType.OPERATOR &&
-                (currentToken.getValue().equals("*") || currentToken.getValue().equals("/") ||
-                        currentToken.getValue().equals("%")) || currentToken.getValue().equals("**")) {
+        while (match(TokenKind.MUL) || match(TokenKind.DIV) || match(TokenKind.MOD) || match(TokenKind.POW)) {
             String operator = currentToken.getValue();
             advance();
             ASTNode right = parseUnaryExpression();
@@ -674,25 +751,32 @@ public class JsParser {
 
     // UnaryExpression = PostfixExpression | (("typeof"|"++"|"--"|"+"|"-"|"!") UnaryExpression)
     private ASTNode parseUnaryExpression() {
-        if (matchAdvance(TokenType.KEYWORD, "typeof")) {
+        enterNesting();
+        try {
+            return parseUnaryOperator();
+        } finally {
+            nesting--;
+        }
+    }
+
+    private ASTNode parseUnaryOperator() {
+        if (matchAdvance(TokenKind.TYPEOF)) {
             ASTNode operand = parseUnaryExpression();
             return new UnaryExpressionNode("typeof", operand);
         }
-        if (matchAdvance(TokenType.OPERATOR, "++")) {
+        if (matchAdvance(TokenKind.INC)) {
             ASTNode operand = parseUnaryExpression();
             return new UnaryExpressionNode("var++", operand);
         }
-        if (matchAdvance(TokenType.OPERATOR, "--")) {
+        if (matchAdvance(TokenKind.DEC)) {
             ASTNode operand = parseUnaryExpression();
             return new UnaryExpressionNode("var--", operand);
         }
-        if (currentToken.getType() == TokenType.OPERATOR) {
+        if (match(TokenKind.PLUS) || match(TokenKind.MINUS) || match(TokenKind.NOT)) {
             String value = currentToken.getValue();
-            if (value.equals("+") || value.equals("-") || value.equals("!")) {
-                advance();
-                ASTNode operand = parseUnaryExpression();
-                return new UnaryExpressionNode(value, operand);
-            }
+            advance();
+            ASTNode operand = parseUnaryExpression();
+            return new UnaryExpressionNode(value, operand);
         }
         return parsePostfixExpression();
     }
@@ -701,10 +785,10 @@ public class JsParser {
     private ASTNode parsePostfixExpression() {
         ASTNode expression = parseCallExpression();
 
-        if (matchAdvance(TokenType.OPERATOR, "++")) {
+        if (matchAdvance(TokenKind.INC)) {
             return new UnaryExpressionNode("++var", expression);
         }
-        if (matchAdvance(TokenType.OPERATOR, "--")) {
+        if (matchAdvance(TokenKind.DEC)) {
             return new UnaryExpressionNode("--var", expression);
         }
 
@@ -718,9 +802,9 @@ public class JsParser {
 
         // Parse any call, property access, or indexed access that follows
         while (true) {
-            if (match(TokenType.PUNCTUATION, "(")) {
+            if (match(TokenKind.LPAREN)) {
                 // Function call
-                TokenPos tokenPos = currentToken.tokenPos();
+                TokenPos tokenPos = tokenPos();
                 List<ASTNode> arguments = parseArguments();
                 expression = new CallExpressionNode(expression, arguments, tokenPos);
                 continue;
@@ -736,27 +820,27 @@ public class JsParser {
     }
 
     private ASTNode parseNextMember(ASTNode parent) {
-        if (matchAdvance(TokenType.OPERATOR, "?.")) {
+        if (matchAdvance(TokenKind.OPTIONAL_CHAIN)) {
             if (currentToken.getType() == TokenType.IDENTIFIER) {
                 String property = currentToken.getValue();
                 advance();
-                return new MemberExpressionNode(new OptionalNode(parent), property, currentToken.tokenPos());
+                return new MemberExpressionNode(new OptionalNode(parent), property, tokenPos());
             }
-            if (matchAdvance(TokenType.PUNCTUATION, "[")) {
+            if (matchAdvance(TokenKind.LBRACKET)) {
                 // Indexed access
                 ASTNode property = parseExpression();
-                expect(TokenType.PUNCTUATION, "]");
-                return new OptionalNode(new MemberExpressionNode(parent, property, currentToken.tokenPos()));
+                expect(TokenKind.RBRACKET);
+                return new OptionalNode(new MemberExpressionNode(parent, property, tokenPos()));
             }
-            if (match(TokenType.PUNCTUATION, "(")) {
+            if (match(TokenKind.LPAREN)) {
                 // Function call
-                TokenPos tokenPos = currentToken.tokenPos();
+                TokenPos tokenPos = tokenPos();
                 List<ASTNode> arguments = parseArguments();
                 return new CallExpressionNode(new OptionalNode(parent), arguments, tokenPos);
             }
             throw new SyntaxError("Expected identifier after '?.' but got " + currentToken.getType() + " at line " +
                                           currentToken.getLine() + ", column " + currentToken.getColumn());
-        } else if (matchAdvance(TokenType.PUNCTUATION, ".")) {
+        } else if (matchAdvance(TokenKind.DOT)) {
             // Property access
             if (currentToken.getType() != TokenType.IDENTIFIER) {
                 throw new SyntaxError("Expected identifier after '.' but got " + currentToken.getType() + " at line " +
@@ -764,12 +848,12 @@ public class JsParser {
             }
             String property = currentToken.getValue();
             advance();
-            return new MemberExpressionNode(parent, property, currentToken.tokenPos());
-        } else if (matchAdvance(TokenType.PUNCTUATION, "[")) {
+            return new MemberExpressionNode(parent, property, tokenPos());
+        } else if (matchAdvance(TokenKind.LBRACKET)) {
             // Indexed access
             ASTNode property = parseExpression();
-            expect(TokenType.PUNCTUATION, "]");
-            return new MemberExpressionNode(parent, property, currentToken.tokenPos());
+            expect(TokenKind.RBRACKET);
+            return new MemberExpressionNode(parent, property, tokenPos());
         }
         return null;
     }
@@ -793,57 +877,57 @@ public class JsParser {
 
     // Arguments = "(" (AssignmentExpression ("," AssignmentExpression)*)? ")"
     private List<ASTNode> parseArguments() {
-        expect(TokenType.PUNCTUATION, "(");
+        expect(TokenKind.LPAREN);
 
         List<ASTNode> arguments = new ArrayList<>();
 
         // Parse arguments if present
-        if (!match(TokenType.PUNCTUATION, ")")) {
+        if (!match(TokenKind.RPAREN)) {
             // Parse first argument
             arguments.add(parseAssignmentExpression());
 
             // Parse additional arguments separated by commas
-            while (matchAdvance(TokenType.PUNCTUATION, ",")) {
+            while (matchAdvance(TokenKind.COMMA)) {
                 arguments.add(parseAssignmentExpression());
             }
         }
 
-        expect(TokenType.PUNCTUATION, ")");
+        expect(TokenKind.RPAREN);
         return arguments;
     }
 
     // PrimaryExpression = arrow | this | Identifier | Literal | ArrayLiteral | ObjectLiteral | "(" Expression ")"
     private ASTNode parsePrimaryExpression() {
 
-        if (match(TokenType.PUNCTUATION, "(")) {
+        if (match(TokenKind.LPAREN)) {
             //possible arrow function
-            int pos = tokenPosition;
+            int pos = 0;
             // check parameters
-            while (tokens.get(pos).getType() == TokenType.IDENTIFIER) {
+            while (matchPos(pos, TokenKind.IDENTIFIER)) {
                 pos++;
-                if (!matchPos(pos, TokenType.PUNCTUATION, ",")) {
+                if (!matchPos(pos, TokenKind.COMMA)) {
                     break;
                 }
                 pos++;
             }
             // check arrow
-            if (matchPos(pos, TokenType.PUNCTUATION, ")") && matchPos(pos + 1, TokenType.OPERATOR, "=>")) {
+            if (matchPos(pos, TokenKind.RPAREN) && matchPos(pos + 1, TokenKind.ARROW)) {
                 // Handle arrow function
                 return parseArrowFunction();
             }
         }
 
-        if (currentToken.getType() == TokenType.IDENTIFIER && matchPos(tokenPosition, TokenType.OPERATOR, "=>")) {
+        if (currentToken.getType() == TokenType.IDENTIFIER && matchPos(0, TokenKind.ARROW)) {
             // Handle single param arrow function
             return parseArrowFunction();
         }
 
         switch (currentToken.getType()) {
             case KEYWORD:
-                if (currentToken.getValue().equals("this")) {
+                if (match(TokenKind.THIS)) {
                     advance();
-                    return variablesAnalyzer.var(new IdentifierNode("this", currentToken.tokenPos()));
-                } else if (currentToken.getValue().equals("function")) {
+                    return variablesAnalyzer.var(new IdentifierNode("this", tokenPos()));
+                } else if (match(TokenKind.FUNCTION)) {
                     // Function expression (anonymous function)
                     return parseFunctionExpression(false);
                 }
@@ -852,7 +936,7 @@ public class JsParser {
             case IDENTIFIER:
                 String identifier = currentToken.getValue();
                 advance();
-                return variablesAnalyzer.var(new IdentifierNode(identifier, currentToken.tokenPos()));
+                return variablesAnalyzer.var(new IdentifierNode(identifier, tokenPos()));
 
             case NUMBER:
             case STRING:
@@ -860,17 +944,18 @@ public class JsParser {
             case NULL:
             case UNDEFINED:
             case STRING_TEMPLATE:
+            case REGEX:
                 return parseLiteral();
 
             case PUNCTUATION:
-                if (currentToken.getValue().equals("[")) {
+                if (match(TokenKind.LBRACKET)) {
                     return parseArrayLiteral();
-                } else if (currentToken.getValue().equals("{")) {
+                } else if (match(TokenKind.LBRACE)) {
                     return parseObjectLiteral();
-                } else if (currentToken.getValue().equals("(")) {
+                } else if (match(TokenKind.LPAREN)) {
                     advance();
                     ASTNode expression = parseExpression();
-                    expect(TokenType.PUNCTUATION, ")");
+                    expect(TokenKind.RPAREN);
                     return expression;
                 }
                 break;
@@ -881,7 +966,21 @@ public class JsParser {
                         currentToken.getColumn());
     }
 
-    // Literal = NullLiteral | BooleanLiteral | NumericLiteral | StringLiteral | StringTemplateLiteral
+    // RegularExpressionLiteral = "/" Body "/" Flags, compiled once at parse time
+    private ASTNode parseRegex() {
+        String literal = currentToken.getValue();
+        int pos = literal.lastIndexOf('/');
+        try {
+            JsRegExp regExp = JsRegExp.of(literal.substring(1, pos), literal.substring(pos + 1));
+            advance();
+            return new ConstantNode(regExp);
+        } catch (PatternSyntaxException e) {
+            throw new SyntaxError("Invalid regular expression " + literal + " at line " + currentToken.getLine() +
+                                          ", column " + currentToken.getColumn());
+        }
+    }
+
+    // Literal = NullLiteral | BooleanLiteral | NumericLiteral | StringLiteral | StringTemplateLiteral | RegExp
     private ASTNode parseLiteral() {
         switch (currentToken.getType()) {
             case NULL:
@@ -889,9 +988,9 @@ public class JsParser {
                 return new ConstantNode(null);
 
             case BOOLEAN:
-                String value = currentToken.getValue();
+                boolean value = match(TokenKind.TRUE);
                 advance();
-                return new ConstantNode(value.equals("true"));
+                return new ConstantNode(value);
 
             case NUMBER:
                 String numStr = currentToken.getValue();
@@ -906,6 +1005,9 @@ public class JsParser {
             case STRING_TEMPLATE:
                 return parseStringTemplate();
 
+            case REGEX:
+                return parseRegex();
+
             case UNDEFINED:
                 advance();
                 return new ConstantNode(Undefined.INSTANCE);
@@ -919,46 +1021,46 @@ public class JsParser {
 
     // SwitchStatement = "switch" "(" Expression ")" CaseBlock
     private ASTNode parseSwitchStatement() {
-        expect(TokenType.KEYWORD, "switch");
-        expect(TokenType.PUNCTUATION, "(");
+        expect(TokenKind.SWITCH);
+        expect(TokenKind.LPAREN);
         ASTNode discriminant = parseExpression();
-        expect(TokenType.PUNCTUATION, ")");
+        expect(TokenKind.RPAREN);
 
         SwitchStatementNode switchNode = new SwitchStatementNode(discriminant);
 
         // CaseBlock = "{" CaseClauses? DefaultClause? CaseClauses? "}"
-        expect(TokenType.PUNCTUATION, "{");
+        expect(TokenKind.LBRACE);
 
         // Parse case clauses until we find default or closing brace
-        while (!match(TokenType.PUNCTUATION, "}") && !match(TokenType.KEYWORD, "default")) {
+        while (!match(TokenKind.RBRACE) && !match(TokenKind.DEFAULT)) {
             switchNode.addCase(parseCaseClause());
         }
 
         // Parse default clause if present
-        if (match(TokenType.KEYWORD, "default")) {
+        if (match(TokenKind.DEFAULT)) {
             switchNode.setDefaultCase(parseDefaultClause());
         }
 
         // Parse any remaining case clauses
-        while (!match(TokenType.PUNCTUATION, "}")) {
+        while (!match(TokenKind.RBRACE)) {
             switchNode.addCase(parseCaseClause());
         }
 
-        expect(TokenType.PUNCTUATION, "}");
+        expect(TokenKind.RBRACE);
         return switchNode;
     }
 
     // CaseClause = "case" Expression ":" StatementList?
     private SwitchCaseNode parseCaseClause() {
-        expect(TokenType.KEYWORD, "case");
+        expect(TokenKind.CASE);
         ASTNode test = parseExpression();
-        expect(TokenType.PUNCTUATION, ":");
+        expect(TokenKind.COLON);
 
         List<ASTNode> consequent = new ArrayList<>();
 
         // Parse statements until next case, default, or end of switch
-        while (!match(TokenType.KEYWORD, "case") && !match(TokenType.KEYWORD, "default") &&
-                !match(TokenType.PUNCTUATION, "}")) {
+        while (!match(TokenKind.CASE) && !match(TokenKind.DEFAULT) &&
+                !match(TokenKind.RBRACE)) {
             consequent.add(parseStatement());
         }
 
@@ -967,14 +1069,13 @@ public class JsParser {
 
     // DefaultClause = "default" ":" StatementList?
     private ASTNode parseDefaultClause() {
-        expect(TokenType.KEYWORD, "default");
-        expect(TokenType.PUNCTUATION, ":");
+        expect(TokenKind.DEFAULT);
+        expect(TokenKind.COLON);
 
         List<ASTNode> consequent = new ArrayList<>();
 
         // Parse statements until next case or end of switch
-        while (!(currentToken.getType() == TokenType.KEYWORD && currentToken.getValue().equals("case")) &&
-                !(currentToken.getType() == TokenType.PUNCTUATION && currentToken.getValue().equals("}"))) {
+        while (!match(TokenKind.CASE) && !match(TokenKind.RBRACE)) {
             consequent.add(parseStatement());
         }
 
@@ -983,8 +1084,8 @@ public class JsParser {
 
     // ThrowStatement = "throw" Expression ";"
     private ASTNode parseThrowStatement() {
-        expect(TokenType.KEYWORD, "throw");
-        TokenPos tokenPos = currentToken.tokenPos();
+        expect(TokenKind.THROW);
+        TokenPos tokenPos = tokenPos();
         ASTNode expression = parseExpression();
 
         expectEndStatement();
@@ -993,7 +1094,7 @@ public class JsParser {
 
     // TryStatement = "try" Block Catch Finally | "try" Block (Catch | Finally)
     private ASTNode parseTryStatement() {
-        expect(TokenType.KEYWORD, "try");
+        expect(TokenKind.TRY);
         ASTNode block = parseBlock();
 
         CatchClauseNode catchBlock = null;
@@ -1001,20 +1102,20 @@ public class JsParser {
 
 
         // Check for catch block
-        if (matchAdvance(TokenType.KEYWORD, "catch")) {
+        if (matchAdvance(TokenKind.CATCH)) {
 
             variablesAnalyzer.startBlock();
             VariableDeclarationNode errVar = null;
-            if (matchAdvance(TokenType.PUNCTUATION, "(")) {
+            if (matchAdvance(TokenKind.LPAREN)) {
 
                 if (currentToken.getType() != TokenType.IDENTIFIER) {
                     throw new SyntaxError("Expected identifier but got " + currentToken.getType() + " at line " +
                                                   currentToken.getLine() + ", column " + currentToken.getColumn());
                 }
                 errVar = variablesAnalyzer.var(
-                        new VariableDeclarationNode("let", currentToken.getValue(), currentToken.tokenPos()));
+                        new VariableDeclarationNode("let", currentToken.getValue(), tokenPos()));
                 advance();
-                expect(TokenType.PUNCTUATION, ")");
+                expect(TokenKind.RPAREN);
             }
             ASTNode catchBody = parseBlock();
             catchBlock = new CatchClauseNode(errVar, catchBody);
@@ -1022,8 +1123,8 @@ public class JsParser {
         }
 
         // Check for finally block
-        if (match(TokenType.KEYWORD, "finally")) {
-            expect(TokenType.KEYWORD, "finally");
+        if (match(TokenKind.FINALLY)) {
+            expect(TokenKind.FINALLY);
             finallyBlock = parseBlock();
         }
 
@@ -1044,24 +1145,24 @@ public class JsParser {
 
     // ArrayLiteral = "[" ElementList? "]"
     private ASTNode parseArrayLiteral() {
-        expect(TokenType.PUNCTUATION, "[");
+        expect(TokenKind.LBRACKET);
 
         List<ASTNode> elements = new ArrayList<>();
 
         // Parse elements if present
-        if (!match(TokenType.PUNCTUATION, "]")) {
+        if (!match(TokenKind.RBRACKET)) {
             // Handle first element (which might be elided)
-            if (match(TokenType.PUNCTUATION, ",")) {
+            if (match(TokenKind.COMMA)) {
                 elements.add(new ConstantNode(Undefined.INSTANCE)); // Elided element
             } else {
                 elements.add(parseAssignmentExpression());
             }
 
             // Parse additional elements separated by commas
-            while (matchAdvance(TokenType.PUNCTUATION, ",")) {
-                if (match(TokenType.PUNCTUATION, "]")) {
+            while (matchAdvance(TokenKind.COMMA)) {
+                if (match(TokenKind.RBRACKET)) {
                     break; // Trailing comma
-                } else if (match(TokenType.PUNCTUATION, ",")) {
+                } else if (match(TokenKind.COMMA)) {
                     elements.add(new ConstantNode(Undefined.INSTANCE)); // Elided element
                 } else {
                     elements.add(parseAssignmentExpression());
@@ -1069,41 +1170,41 @@ public class JsParser {
             }
         }
 
-        expect(TokenType.PUNCTUATION, "]");
+        expect(TokenKind.RBRACKET);
         return new ArrayLiteralNode(elements);
     }
 
     // ObjectLiteral = "{" PropertyNameAndValueList? "}"
     private ASTNode parseObjectLiteral() {
-        expect(TokenType.PUNCTUATION, "{");
+        expect(TokenKind.LBRACE);
 
         List<PropertyNode> properties = new ArrayList<>();
 
         // Parse properties if present
-        if (!match(TokenType.PUNCTUATION, "}")) {
+        if (!match(TokenKind.RBRACE)) {
             // Parse first property
             properties.add(parsePropertyAssignment());
 
             // Parse additional properties separated by commas
-            while (matchAdvance(TokenType.PUNCTUATION, ",")) {
-                if (match(TokenType.PUNCTUATION, "}")) {
+            while (matchAdvance(TokenKind.COMMA)) {
+                if (match(TokenKind.RBRACE)) {
                     break; // Trailing comma
                 }
                 properties.add(parsePropertyAssignment());
             }
         }
 
-        expect(TokenType.PUNCTUATION, "}");
+        expect(TokenKind.RBRACE);
         return new ObjectLiteralNode(properties);
     }
 
     // PropertyAssignment = PropertyName ":" AssignmentExpression
     private PropertyNode parsePropertyAssignment() {
         String key = parsePropertyName();
-        if (match(TokenType.PUNCTUATION, ",") || match(TokenType.PUNCTUATION, "}")) {
-            return new PropertyNode(key, variablesAnalyzer.var(new IdentifierNode(key, currentToken.tokenPos())));
+        if (match(TokenKind.COMMA) || match(TokenKind.RBRACE)) {
+            return new PropertyNode(key, variablesAnalyzer.var(new IdentifierNode(key, tokenPos())));
         }
-        expect(TokenType.PUNCTUATION, ":");
+        expect(TokenKind.COLON);
         ASTNode value = parseAssignmentExpression();
 
         return new PropertyNode(key, value);
@@ -1125,7 +1226,7 @@ public class JsParser {
 
     // FunctionExpression = "function" Identifier? "(" FormalParameterList? ")" Block
     private ASTNode parseFunctionExpression(boolean requiredName) {
-        expect(TokenType.KEYWORD, "function");
+        expect(TokenKind.FUNCTION);
         String name = null;
         if (currentToken.getType() == TokenType.IDENTIFIER) {
             name = currentToken.getValue();
@@ -1136,22 +1237,22 @@ public class JsParser {
                             currentToken.getColumn());
         }
         try {
-            variablesAnalyzer.startFunction(name, currentToken.tokenPos());
-            expect(TokenType.PUNCTUATION, "(");
-            TokenPos tokenPos = currentToken.tokenPos();
+            variablesAnalyzer.startFunction(name, tokenPos());
+            expect(TokenKind.LPAREN);
+            TokenPos tokenPos = tokenPos();
             List<String> params = new ArrayList<>();
             while (currentToken.getType() == TokenType.IDENTIFIER) {
                 String paramName = currentToken.getValue();
                 params.add(paramName);
-                variablesAnalyzer.param(paramName, currentToken.tokenPos());
+                variablesAnalyzer.param(paramName, tokenPos());
                 advance();
-                if (match(TokenType.PUNCTUATION, ",")) {
+                if (match(TokenKind.COMMA)) {
                     advance(); // Skip comma
                 } else {
                     break; // No more parameters
                 }
             }
-            expect(TokenType.PUNCTUATION, ")");
+            expect(TokenKind.RPAREN);
             ASTNode body = parseBlock();
             return variablesAnalyzer.var(
                     new FunctionDeclarationNode(name, tokenPos, params, body, variablesAnalyzer.stackDef(), false));
@@ -1163,39 +1264,39 @@ public class JsParser {
     // Parse arrow expression - (param1, param2, ...) => expression | block
     private ASTNode parseArrowFunction() {
         try {
-            variablesAnalyzer.startFunction(null, currentToken.tokenPos());
+            variablesAnalyzer.startFunction(null, tokenPos());
             List<String> params = new ArrayList<>();
-            TokenPos tokenPos = currentToken.tokenPos();
+            TokenPos tokenPos = tokenPos();
 
             // Check for parameter syntax
-            if (matchAdvance(TokenType.PUNCTUATION, "(")) {
+            if (matchAdvance(TokenKind.LPAREN)) {
 
                 while (currentToken.getType() == TokenType.IDENTIFIER) {
                     params.add(currentToken.getValue());
-                    variablesAnalyzer.param(currentToken.getValue(), currentToken.tokenPos());
+                    variablesAnalyzer.param(currentToken.getValue(), tokenPos());
                     advance();
-                    if (match(TokenType.PUNCTUATION, ",")) {
+                    if (match(TokenKind.COMMA)) {
                         advance(); // Skip comma
                     } else {
                         break; // No more parameters
                     }
                 }
                 // Check for closing parenthesis
-                expect(TokenType.PUNCTUATION, ")");
+                expect(TokenKind.RPAREN);
             } else if (currentToken.getType() == TokenType.IDENTIFIER) {
                 // Single parameter without parentheses: x => ...
                 params.add(currentToken.getValue());
-                variablesAnalyzer.param(currentToken.getValue(), currentToken.tokenPos());
+                variablesAnalyzer.param(currentToken.getValue(), tokenPos());
                 advance();
             } else {
                 throw new SyntaxError(
                         "Expected parameter list for lambda function but got " + currentToken.getType() + " at line " +
                                 currentToken.getLine() + ", column " + currentToken.getColumn());
             }
-            expect(TokenType.OPERATOR, "=>");
+            expect(TokenKind.ARROW);
             ASTNode body;
             // Parse the function body
-            if (match(TokenType.PUNCTUATION, "{")) {
+            if (match(TokenKind.LBRACE)) {
                 // Block body
                 body = parseBlock();
             } else {
@@ -1228,13 +1329,16 @@ public class JsParser {
         List<ASTNode> items = new ArrayList<>();
         if (currentToken.getSubtokens() != null) {
             for (Token subtoken : currentToken.getSubtokens()) {
-                String tokenStr = subtoken.getValue();
-                if (tokenStr.isEmpty()) {
+                if (subtoken.getLength() == 0) {
                     continue;
                 }
-                if (tokenStr.startsWith("${")) {
-                    JsLexer lexer = new JsLexer(tokenStr.substring(1), subtoken.getLine(), subtoken.getColumn());
-                    JsParser parser = new JsParser(lexer.tokenize(), variablesAnalyzer);
+                if (subtoken.getKind() == TokenKind.STRING_TEMPLATE) {
+                    // the expression is lexed in place from the source of the template
+                    JsLexer expressionLexer = lexer != null ? lexer.templateExpression(subtoken) : new JsLexer(
+                            subtoken.getValue().substring(1), subtoken.getLine(), subtoken.getColumn());
+                    JsParser parser = new JsParser(expressionLexer, variablesAnalyzer);
+                    parser.nesting = nesting;
+                    parser.segment(segment, segmentLine);
                     BlockNode block = parser.parseBlock();
                     if (block.statements.size() == 1 && block.statements.getFirst() instanceof ExecuteWithReturn) {
                         items.add(block.statements.getFirst());
@@ -1242,7 +1346,7 @@ public class JsParser {
                         throw new SyntaxError("string template invalid expression " + subtoken);
                     }
                 } else {
-                    items.add(new ConstantNode(tokenStr));
+                    items.add(new ConstantNode(subtoken.getValue()));
                 }
             }
         }
@@ -1,22 +1,36 @@
 package eu.aston.javajs;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
 
 import eu.aston.javajs.types.IJsFunctionExec;
+import eu.aston.javajs.types.JsArray;
 import eu.aston.javajs.types.JsFunction;
+import eu.aston.javajs.types.JsRope;
+import eu.aston.javajs.types.Undefined;
 
 public class Scope {
 
-    private final Map<String, Object> variables;
+    private final GlobalVariables variables;
     private final Object[] localStack;
     private final Ref[] extRefStack;
     private final Scope parentScope;
     private final Scope rootScope;
+    // first lines of the statements of the CompiledScript running in this scope
+    private ToIntFunction<Object> segmentLines;
 
     //root scope
     public Scope() {
-        this.variables = new HashMap<>();
+        this.variables = new GlobalVariables();
         this.variables.put("this", new HashMap<>());
         this.localStack = null;
         this.extRefStack = null;
@@ -30,6 +44,18 @@ public class Scope {
         this.extRefStack = extRefStack;
         this.parentScope = parentScope;
         this.rootScope = parentScope.rootScope != null ? parentScope.rootScope : parentScope;
+        this.segmentLines = parentScope.segmentLines;
+    }
+
+    void segmentLines(ToIntFunction<Object> segmentLines) {
+        if (segmentLines != null) {
+            this.segmentLines = segmentLines;
+        }
+    }
+
+    // absolute position of a node running in this scope
+    public TokenPos resolve(TokenPos tokenPos) {
+        return segmentLines != null ? tokenPos.resolve(segmentLines) : tokenPos;
     }
 
     public Map<String, Object> rootThis() {
@@ -63,6 +89,11 @@ public class Scope {
         }
     }
 
+    // param slots follow this and arguments
+    public void setParam(int index, Object value) {
+        localStack[index + 2] = value;
+    }
+
     public Object getStackValue(int index, String name) {
         Object val = localStack[index];
         return val instanceof Ref ref ? ref.value : val;
@@ -79,29 +110,92 @@ public class Scope {
             return fn.vars.size();
         }
 
-        public Scope createInitScope(Scope scope) {
-            //System.out.println("init scope " + fn.name);
-            if (fn.extRefs.isEmpty()) {
-                return new Scope(scope, fn.vars.size(), null);
+        // new scope of this function, slots of captured vars get their Ref before the declaration runs
+        public Scope createScope(Scope parentScope, Ref[] extRefStack) {
+            Scope scope = new Scope(parentScope, fn.vars.size(), extRefStack);
+            boxCaptured(scope.localStack);
+            return scope;
+        }
+
+        public boolean usesArguments() {
+            return fn.usesArguments;
+        }
+
+        // scope of one call with this set, the caller stores params by position and then calls enterFrame()
+        public Scope createFrame(Scope parentScope, Ref[] extRefStack, Object thisValue) {
+            Scope scope = new Scope(parentScope, fn.vars.size(), extRefStack);
+            scope.localStack[VariablesAnalyzer.THIS_INDEX] = thisValue;
+            return scope;
+        }
+
+        // a function which captures none of its vars leaves nothing in its frame after a call
+        public boolean reusableFrame() {
+            return fn.capturedSlots.length == 0 && !fn.usesArguments;
+        }
+
+        // clears the locals of the previous call before the params of the next one are stored
+        public void resetFrame(Scope frame) {
+            Arrays.fill(frame.localStack, 2, frame.localStack.length, null);
+        }
+
+        // missing params are undefined, captured params are boxed after they were stored
+        public void enterFrame(Scope frame, int argc, int params) {
+            Object[] stack = frame.localStack;
+            for (int i = argc; i < params; i++) {
+                stack[i + 2] = Undefined.INSTANCE;
+            }
+            boxCaptured(stack);
+        }
+
+        public Scope createFrame(Scope parentScope, Ref[] extRefStack, Object thisValue, List<Object> args,
+                                 int params) {
+            Scope scope = createFrame(parentScope, extRefStack, thisValue);
+            if (fn.usesArguments) {
+                scope.localStack[VariablesAnalyzer.ARGUMENTS_INDEX] = args;
+            }
+            int size = Math.min(params, args.size());
+            for (int i = 0; i < size; i++) {
+                scope.localStack[i + 2] = args.get(i);
             }
-            Scope[] parents = new Scope[fn.deepLevel + 1];
-            Scope s = scope;
-            for (int i = 0; i < parents.length; i++) {
-                parents[i] = s;
-                s = s.parentScope;
+            enterFrame(scope, size, params);
+            return scope;
+        }
+
+        public Scope createFrame(Scope parentScope, Ref[] extRefStack, Object thisValue, Object[] args,
+                                 int params) {
+            Scope scope = createFrame(parentScope, extRefStack, thisValue);
+            if (fn.usesArguments) {
+                // the argument list is created only for functions which read it
+                scope.localStack[VariablesAnalyzer.ARGUMENTS_INDEX] = new JsArray(Arrays.asList(args));
             }
-            Ref[] refs = new Ref[fn.extRefs.size()];
-            for (VariablesAnalyzer.ExtRef extRef : fn.extRefs) {
-                Object val = parents[extRef.deep].localStack[extRef.varIndex];
-                if (val instanceof Ref ref) {
-                    refs[extRef.index] = ref;
-                } else {
-                    Ref ref = new Ref(val);
-                    parents[extRef.deep].localStack[extRef.varIndex] = ref;
-                    refs[extRef.index] = ref;
+            int size = Math.min(params, args.length);
+            System.arraycopy(args, 0, scope.localStack, 2, size);
+            enterFrame(scope, size, params);
+            return scope;
+        }
+
+        private void boxCaptured(Object[] stack) {
+            for (int index : fn.capturedSlots) {
+                stack[index] = new Ref(stack[index]);
+            }
+        }
+
+        // Refs of the vars captured by a closure created in the scope, null when the function captures nothing
+        public Ref[] captureRefs(Scope scope) {
+            List<VariablesAnalyzer.ExtRef> extRefs = fn.extRefs;
+            if (extRefs.isEmpty()) {
+                return null;
+            }
+            Ref[] refs = new Ref[extRefs.size()];
+            for (int i = 0; i < refs.length; i++) {
+                VariablesAnalyzer.ExtRef extRef = extRefs.get(i);
+                Scope s = scope;
+                for (int deep = extRef.deep; deep > 0; deep--) {
+                    s = s.parentScope;
                 }
+                refs[extRef.index] = (Ref) s.localStack[extRef.varIndex];
             }
-            return new Scope(scope, fn.vars.size(), refs);
+            return refs;
         }
     }
 
@@ -115,6 +209,7 @@ public class Scope {
         }
     }
 
+    // local var which is not captured by an inner function
     public static class LocalGetSet implements IGetSet {
         private final int index;
 
@@ -122,29 +217,64 @@ public class Scope {
             this.index = index;
         }
 
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof LocalGetSet other && index == other.index;
+        }
+
+        @Override
+        public int hashCode() {
+            return index;
+        }
+
+        @Override
+        public Object get(Scope scope) {
+            return scope.localStack[index];
+        }
+
+        @Override
+        public void set(Scope scope, Object value) {
+            scope.localStack[index] = value;
+        }
+    }
+
+    // local var captured by an inner function, its slot always holds a Ref
+    public static class RefGetSet implements IGetSet {
+        private final int index;
+
+        public RefGetSet(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof RefGetSet other && index == other.index;
+        }
+
+        @Override
+        public int hashCode() {
+            return index;
+        }
+
         @Override
         public Object get(Scope scope) {
-            Object val = scope.localStack[index];
-            return val instanceof Ref ref ? ref.value : val;
+            return ((Ref) scope.localStack[index]).value;
         }
 
         @Override
         public void set(Scope scope, Object value) {
-            Object val = scope.localStack[index];
-            if (val instanceof Ref ref) {
-                ref.value = value;
-            } else {
-                scope.localStack[index] = value;
-            }
+            ((Ref) scope.localStack[index]).value = value;
         }
 
         @Override
         public void init(Scope scope, Object value) {
-            Object val = scope.localStack[index];
-            if (val instanceof Ref ref && ref.value == null) {
+            Ref ref = (Ref) scope.localStack[index];
+            if (ref.value == null) {
+                // first declaration, a hoisted function may have captured the Ref already
                 ref.value = value;
             } else {
-                scope.localStack[index] = value;
+                // declaration runs again in a loop, closures of the previous pass keep their binding
+                scope.localStack[index] = new Ref(value);
             }
         }
     }
@@ -156,6 +286,16 @@ public class Scope {
             this.index = index;
         }
 
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ExtGetSet other && index == other.index;
+        }
+
+        @Override
+        public int hashCode() {
+            return index;
+        }
+
         @Override
         public Object get(Scope scope) {
             return scope.extRefStack[index].value;
@@ -167,24 +307,222 @@ public class Scope {
         }
     }
 
+    /**
+     * Variables of the root scope, stored in slots by the index of their name. Every root scope has its own name
+     * table, it lives and is dropped with the scope. A global identifier of a script finds its slot once per root
+     * scope and the host can still read and write variables by name through this map.
+     */
+    public static class GlobalVariables extends AbstractMap<String, Object> {
+        private static final Object UNSET = new Object();
+        private static final AtomicLong ids = new AtomicLong();
+
+        // identifies the table in the slot caches of MapGetSet without holding the scope
+        private final long id = ids.incrementAndGet();
+        // a root scope with the SDK has a few hundred names
+        private final Map<String, Integer> indexes = new HashMap<>(512);
+        private String[] names = new String[0];
+        private Object[] values = new Object[0];
+        private int size;
+
+        // slot index of the name, -1 when the name has no slot
+        public int find(String name) {
+            Integer index = indexes.get(name);
+            return index != null ? index : -1;
+        }
+
+        // slot index of the name, a new name gets the next index
+        public int index(String name) {
+            Integer index = indexes.get(name);
+            if (index != null) {
+                return index;
+            }
+            int next = indexes.size();
+            if (next == names.length) {
+                int capacity = Math.max(256, next * 2);
+                names = Arrays.copyOf(names, capacity);
+                values = Arrays.copyOf(values, capacity);
+                Arrays.fill(values, next, capacity, UNSET);
+            }
+            names[next] = name;
+            indexes.put(name, next);
+            return next;
+        }
+
+        // the host gets a string built by += statements as String
+        private static Object flat(Object value) {
+            return value instanceof JsRope rope ? rope.toString() : value;
+        }
+
+        public Object slot(int index) {
+            return values[index];
+        }
+
+        public boolean isSet(Object value) {
+            return value != UNSET;
+        }
+
+        public Object setSlot(int index, Object value) {
+            Object old = values[index];
+            values[index] = value;
+            if (old == UNSET) {
+                size++;
+                return null;
+            }
+            return old;
+        }
+
+        @Override
+        public Object get(Object key) {
+            int index = key instanceof String name ? find(name) : -1;
+            Object value = index >= 0 ? values[index] : UNSET;
+            return value != UNSET ? flat(value) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            int index = key instanceof String name ? find(name) : -1;
+            return index >= 0 && values[index] != UNSET;
+        }
+
+        @Override
+        public Object put(String key, Object value) {
+            return setSlot(index(key), value);
+        }
+
+        @Override
+        public Object remove(Object key) {
+            int index = key instanceof String name ? find(name) : -1;
+            if (index < 0 || values[index] == UNSET) {
+                return null;
+            }
+            Object old = values[index];
+            values[index] = UNSET;
+            size--;
+            return old;
+        }
+
+        @Override
+        public void clear() {
+            Arrays.fill(values, UNSET);
+            size = 0;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    return new Iterator<>() {
+                        private int next = advance(0);
+                        private int last = -1;
+
+                        private int advance(int from) {
+                            while (from < values.length && values[from] == UNSET) {
+                                from++;
+                            }
+                            return from;
+                        }
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < values.length;
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            if (next >= values.length) {
+                                throw new NoSuchElementException();
+                            }
+                            last = next;
+                            next = advance(next + 1);
+                            int index = last;
+                            return new SimpleEntry<>(names[index], flat(values[index])) {
+                                @Override
+                                public Object setValue(Object value) {
+                                    values[index] = value;
+                                    return super.setValue(value);
+                                }
+                            };
+                        }
+
+                        @Override
+                        public void remove() {
+                            if (last < 0) {
+                                throw new IllegalStateException();
+                            }
+                            values[last] = UNSET;
+                            size--;
+                            last = -1;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+    }
+
     public static class MapGetSet implements IGetSet {
         private final String name;
+        // slot of the name in the root scope which used this identifier last
+        private Slot slot;
+
+        private record Slot(long tableId, int index) {
+        }
 
         public MapGetSet(String name) {
             this.name = name;
         }
 
+        // the slot cache is not part of the identity
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof MapGetSet other && name.equals(other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode();
+        }
+
+        // the slot index is found by name once per root scope, a name unknown to the scope has no slot yet
+        private int index(GlobalVariables variables, boolean create) {
+            Slot cached = slot;
+            if (cached != null && cached.tableId == variables.id) {
+                return cached.index;
+            }
+            int index = create ? variables.index(name) : variables.find(name);
+            if (index >= 0) {
+                slot = new Slot(variables.id, index);
+            }
+            return index;
+        }
+
         @Override
         public Object get(Scope scope) {
-            if (scope.rootScope.variables.containsKey(name)) {
-                return scope.rootScope.variables.get(name);
+            GlobalVariables variables = scope.rootScope.variables;
+            int index = index(variables, false);
+            if (index >= 0) {
+                Object value = variables.slot(index);
+                if (variables.isSet(value)) {
+                    return value;
+                }
             }
             throw new RuntimeException("Variable '" + name + "' not found");
         }
 
         @Override
         public void set(Scope scope, Object value) {
-            scope.rootScope.variables.put(name, value);
+            GlobalVariables variables = scope.rootScope.variables;
+            variables.setSlot(index(variables, true), value);
         }
     }
 
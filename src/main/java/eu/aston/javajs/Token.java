@@ -2,38 +2,67 @@ package eu.aston.javajs;
 
 import java.util.List;
 
-// Token class to represent each token
+// Token class to represent each token, the value is a slice of the source and is created only on demand
 public class Token {
-    private final TokenType type;
-    private final String value;
+    private final TokenKind kind;
+    private final char[] source;
+    private final int offset;
+    private final int length;
     private final int line;
     private final int column;
     private final List<Token> subtokens;
+    private String value;
 
-    public Token(TokenType type, String value, int line, int column) {
-        this.type = type;
-        this.value = value;
+    public Token(TokenKind kind, String value, int line, int column) {
+        this.kind = kind;
+        this.source = null;
+        this.offset = 0;
+        this.length = value.length();
         this.line = line;
         this.column = column;
         this.subtokens = null;
+        this.value = value;
     }
 
-    public Token(TokenType type, String value, int line, int column, List<Token> subtokens) {
-        this.type = type;
-        this.value = value;
+    public Token(TokenKind kind, char[] source, int offset, int length, int line, int column, String value) {
+        this(kind, source, offset, length, line, column, value, null);
+    }
+
+    public Token(TokenKind kind, char[] source, int offset, int length, int line, int column, String value,
+                 List<Token> subtokens) {
+        this.kind = kind;
+        this.source = source;
+        this.offset = offset;
+        this.length = length;
         this.line = line;
         this.column = column;
         this.subtokens = subtokens;
+        this.value = value != null ? value : kind.text();
+    }
+
+    public TokenKind getKind() {
+        return kind;
     }
 
     public TokenType getType() {
-        return type;
+        return kind.type();
     }
 
     public String getValue() {
+        if (value == null) {
+            value = new String(source, offset, length);
+        }
         return value;
     }
 
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
     public int getLine() {
         return line;
     }
@@ -52,6 +81,7 @@ public class Token {
 
     @Override
     public String toString() {
-        return "Token{" + "type=" + type + ", value='" + value + '\'' + ", line=" + line + ", column=" + column + '}';
+        return "Token{" + "type=" + getType() + ", value='" + getValue() + '\'' + ", line=" + line + ", column=" +
+                column + '}';
     }
 }
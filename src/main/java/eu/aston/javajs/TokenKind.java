@@ -0,0 +1,107 @@
+package eu.aston.javajs;
+
+// Exact token kinds, keywords and punctuators have a fixed text
+public enum TokenKind {
+    // names and literals
+    IDENTIFIER(TokenType.IDENTIFIER, null),
+    REST_IDENTIFIER(TokenType.REST_IDENTIFIER, null),
+    NUMBER(TokenType.NUMBER, null),
+    STRING(TokenType.STRING, null),
+    STRING_TEMPLATE(TokenType.STRING_TEMPLATE, null),
+    REGEX(TokenType.REGEX, null),
+    EOF(TokenType.EOF, ""),
+
+    // keywords
+    BREAK(TokenType.KEYWORD, "break"),
+    CASE(TokenType.KEYWORD, "case"),
+    CATCH(TokenType.KEYWORD, "catch"),
+    CONTINUE(TokenType.KEYWORD, "continue"),
+    CONST(TokenType.KEYWORD, "const"),
+    DEFAULT(TokenType.KEYWORD, "default"),
+    DO(TokenType.KEYWORD, "do"),
+    ELSE(TokenType.KEYWORD, "else"),
+    FINALLY(TokenType.KEYWORD, "finally"),
+    FOR(TokenType.KEYWORD, "for"),
+    FUNCTION(TokenType.KEYWORD, "function"),
+    IF(TokenType.KEYWORD, "if"),
+    IN(TokenType.KEYWORD, "in"),
+    LET(TokenType.KEYWORD, "let"),
+    OF(TokenType.KEYWORD, "of"),
+    RETURN(TokenType.KEYWORD, "return"),
+    SWITCH(TokenType.KEYWORD, "switch"),
+    THIS(TokenType.KEYWORD, "this"),
+    THROW(TokenType.KEYWORD, "throw"),
+    TRY(TokenType.KEYWORD, "try"),
+    TYPEOF(TokenType.KEYWORD, "typeof"),
+    WHILE(TokenType.KEYWORD, "while"),
+
+    // literal keywords
+    TRUE(TokenType.BOOLEAN, "true"),
+    FALSE(TokenType.BOOLEAN, "false"),
+    NULL(TokenType.NULL, "null"),
+    UNDEFINED(TokenType.UNDEFINED, "undefined"),
+    NAN(TokenType.NUMBER, "NaN"),
+    INFINITY(TokenType.NUMBER, "Infinity"),
+
+    // operators
+    STRICT_EQ(TokenType.OPERATOR, "==="),
+    STRICT_NE(TokenType.OPERATOR, "!=="),
+    SPREAD(TokenType.OPERATOR, "..."),
+    EQ(TokenType.OPERATOR, "=="),
+    NE(TokenType.OPERATOR, "!="),
+    LE(TokenType.OPERATOR, "<="),
+    GE(TokenType.OPERATOR, ">="),
+    INC(TokenType.OPERATOR, "++"),
+    DEC(TokenType.OPERATOR, "--"),
+    PLUS_ASSIGN(TokenType.OPERATOR, "+="),
+    MINUS_ASSIGN(TokenType.OPERATOR, "-="),
+    MUL_ASSIGN(TokenType.OPERATOR, "*="),
+    DIV_ASSIGN(TokenType.OPERATOR, "/="),
+    MOD_ASSIGN(TokenType.OPERATOR, "%="),
+    AND(TokenType.OPERATOR, "&&"),
+    OR(TokenType.OPERATOR, "||"),
+    ARROW(TokenType.OPERATOR, "=>"),
+    NULLISH(TokenType.OPERATOR, "??"),
+    OPTIONAL_CHAIN(TokenType.OPERATOR, "?."),
+    POW(TokenType.OPERATOR, "**"),
+    PLUS(TokenType.OPERATOR, "+"),
+    MINUS(TokenType.OPERATOR, "-"),
+    MUL(TokenType.OPERATOR, "*"),
+    DIV(TokenType.OPERATOR, "/"),
+    MOD(TokenType.OPERATOR, "%"),
+    NOT(TokenType.OPERATOR, "!"),
+    LT(TokenType.OPERATOR, "<"),
+    GT(TokenType.OPERATOR, ">"),
+    ASSIGN(TokenType.OPERATOR, "="),
+    // unrecognized character, the value is taken from source
+    UNKNOWN(TokenType.OPERATOR, null),
+
+    // punctuation
+    SEMICOLON(TokenType.PUNCTUATION, ";"),
+    COMMA(TokenType.PUNCTUATION, ","),
+    DOT(TokenType.PUNCTUATION, "."),
+    COLON(TokenType.PUNCTUATION, ":"),
+    LPAREN(TokenType.PUNCTUATION, "("),
+    RPAREN(TokenType.PUNCTUATION, ")"),
+    LBRACKET(TokenType.PUNCTUATION, "["),
+    RBRACKET(TokenType.PUNCTUATION, "]"),
+    LBRACE(TokenType.PUNCTUATION, "{"),
+    RBRACE(TokenType.PUNCTUATION, "}"),
+    QUESTION(TokenType.PUNCTUATION, "?");
+
+    private final TokenType type;
+    private final String text;
+
+    TokenKind(TokenType type, String text) {
+        this.type = type;
+        this.text = text;
+    }
+
+    public TokenType type() {
+        return type;
+    }
+
+    public String text() {
+        return text;
+    }
+}
@@ -1,4 +1,18 @@
 package eu.aston.javajs;
 
-public record TokenPos(int line, int column) {
+import java.util.function.ToIntFunction;
+
+// Position of a node in the source. A node of a CompiledScript counts the line from the first line of its top level
+// statement given by segment, so the statement moves to other lines without a reparse. Every script resolves the
+// line from its own first lines of the segments, an older script sharing the node keeps its lines.
+public record TokenPos(int line, int column, Object segment) {
+
+    public TokenPos(int line, int column) {
+        this(line, column, null);
+    }
+
+    // absolute position, firstLines gives the first line of a segment
+    public TokenPos resolve(ToIntFunction<Object> firstLines) {
+        return segment == null ? this : new TokenPos(firstLines.applyAsInt(segment) + line, column);
+    }
 }
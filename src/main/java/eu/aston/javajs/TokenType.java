@@ -15,5 +15,6 @@ public enum TokenType {
     WHITESPACE,
     COMMENT,
     STRING_TEMPLATE,
+    REGEX,
     EOF
 }
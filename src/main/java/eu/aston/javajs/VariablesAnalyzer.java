@@ -1,10 +1,15 @@
 package eu.aston.javajs;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.function.ToIntFunction;
 
 public class VariablesAnalyzer {
 
@@ -18,6 +23,8 @@ public class VariablesAnalyzer {
         public String access;
         public String name;
         public int index;
+        // read or written by an inner function, the slot holds a Ref
+        public boolean captured;
 
         public Var(String access, String name, int index) {
             this.access = access;
@@ -45,6 +52,10 @@ public class VariablesAnalyzer {
         public int deepLevel;
         public List<Var> vars = new ArrayList<>();
         public List<ExtRef> extRefs = new ArrayList<>();
+        // indexes of captured vars, a new scope allocates their Refs
+        public int[] capturedSlots = new int[0];
+        // body reads the arguments var, a call has to store the argument list
+        public boolean usesArguments;
         public Link varLink;
 
         public Fn(String name, int deepLevel) {
@@ -60,6 +71,9 @@ public class VariablesAnalyzer {
         public Fn parent;
         public AstNodes.ASTNode node;
         public Var var;
+        public TokenPos tokenPos;
+        // top level statement of an incrementally compiled script
+        public Statement statement;
 
         public Link(int pos, String linkId, String name, Fn parent, AstNodes.ASTNode node) {
             this.pos = pos;
@@ -79,27 +93,135 @@ public class VariablesAnalyzer {
         }
     }
 
+    /**
+     * Top level statement of an incrementally compiled script, the segment of its node positions. It keeps the
+     * root vars it declares and its links to top level names, so an edit removes it from the names and checks only
+     * the statements using a name whose declaration changed.
+     */
+    public static final class Statement {
+        // order of the statements in the latest script, an edit inserting statements leaves space between them
+        long order;
+        // first line when the statement was parsed
+        final int line;
+        final List<Link> declarations = new ArrayList<>();
+        final List<Link> topLevelLinks = new ArrayList<>();
+        // ids and links of the statement until link() pairs them
+        private Map<String, Link> varMap = new HashMap<>();
+        private List<Link> links = new ArrayList<>();
+        private List<Link> localLinks = new ArrayList<>();
+
+        Statement(int line) {
+            this.line = line;
+        }
+    }
+
+    /**
+     * Top level names of an incrementally compiled script kept between its edits. A declaration parsed again takes
+     * the free slot of its name, so the statements using the name keep their nodes. Changes made by an edit are
+     * undone by rollback() when the edit fails.
+     */
+    public static final class TopLevel {
+        final Fn root = new Fn(null, 0);
+        // declarations of top level names
+        final Map<String, Link> names = new HashMap<>();
+        // links of the statements which looked up a top level name
+        final Map<String, Set<Link>> uses = new HashMap<>();
+        // root slots of removed statements by var name
+        final Map<String, List<Integer>> freeSlots = new HashMap<>();
+        private final List<Runnable> undo = new ArrayList<>();
+        // latest script, only it can be edited incrementally
+        Object owner;
+
+        void change(Runnable undoAction) {
+            undo.add(undoAction);
+        }
+
+        void commit() {
+            undo.clear();
+        }
+
+        void rollback() {
+            for (int i = undo.size() - 1; i >= 0; i--) {
+                undo.get(i).run();
+            }
+            undo.clear();
+        }
+
+        // orders the statements with space for ORDER_GAP - 1 statements inserted between each two
+        void order(List<Statement> list) {
+            List<Statement> statements = List.copyOf(list);
+            long[] previous = new long[statements.size()];
+            for (int i = 0; i < previous.length; i++) {
+                previous[i] = statements.get(i).order;
+                statements.get(i).order = (i + 1) * ORDER_GAP;
+            }
+            change(() -> {
+                for (int i = 0; i < previous.length; i++) {
+                    statements.get(i).order = previous[i];
+                }
+            });
+        }
+
+        // scope of the current script, slots added or captured by a later edit do not change it
+        Scope.ScopeDef scopeDef() {
+            Fn fn = new Fn(null, 0);
+            fn.vars = new ArrayList<>(root.vars);
+            fn.capturedSlots = root.capturedSlots;
+            return new Scope.ScopeDef(fn);
+        }
+    }
+
+    // slots of every function scope, params follow them
+    public static final int THIS_INDEX = 0;
+    public static final int ARGUMENTS_INDEX = 1;
+    static final long ORDER_GAP = 1 << 20;
+
     int counterBlock = 1;
     int counterVar = 1;
-    final Fn root = new Fn(null, 0);
+    final Fn root;
     Map<String, Link> varMap = new HashMap<>();
     List<Link> links = new ArrayList<>();
-    List<Integer> blockStack = new ArrayList<>();
+    // suffixes of var ids for the open blocks, "/1/4" for block 4 inside block 1
+    List<String> blockStack = new ArrayList<>();
     List<Fn> functionStack = new ArrayList<>();
+    // names of an incrementally compiled script, null when the analyzer links one program by pairAll()
+    private final TopLevel topLevel;
+    // first lines of the statements for messages
+    private final ToIntFunction<Object> firstLines;
+    private Statement statement;
+    private final List<Statement> parsed = new ArrayList<>();
+    // top level names declared or removed by the running edit, link() checks their uses
+    private final Set<String> touched = new HashSet<>();
+    // declarations of root vars captured by the running edit
+    private final List<Link> captured = new ArrayList<>();
+    // assignments to a const found by link(), the first in the source is reported when all statements are linked
+    private final List<Link> constAssignments = new ArrayList<>();
 
     public VariablesAnalyzer() {
+        this(null, null);
+    }
+
+    VariablesAnalyzer(TopLevel topLevel, ToIntFunction<Object> firstLines) {
+        this.topLevel = topLevel;
+        this.firstLines = firstLines;
+        this.root = topLevel != null ? topLevel.root : new Fn(null, 0);
         functionStack.add(root);
     }
 
-    private String varId(List<Integer> blockStack, String name) {
+    private String varId(String name) {
         if (blockStack.isEmpty()) {
             return name;
         }
-        return name + "/" + blockStack.stream().map(Object::toString).collect(Collectors.joining("/"));
+        return name + blockStack.getLast();
+    }
+
+    private void pushBlock() {
+        String parent = blockStack.isEmpty() ? "" : blockStack.getLast();
+        blockStack.add(parent + "/" + counterBlock++);
     }
 
     public void startBlock() {
-        blockStack.add(counterBlock++);
+        pushBlock();
     }
 
     public void endBlock() {
@@ -113,9 +235,9 @@ public class VariablesAnalyzer {
             fn.varLink = addVar("const", name, tokenPos, null);
         }
         functionStack.add(fn);
-        blockStack.add(counterBlock++);
-        param("this", tokenPos);
-        param("arguments", tokenPos);
+        pushBlock();
+        addVar("let", "this", tokenPos, null);
+        addVar("let", "arguments", tokenPos, null);
     }
 
     public void endFunction() {
@@ -145,7 +267,6 @@ public class VariablesAnalyzer {
         Fn akt = functionStack.getLast();
         if (akt.varLink != null) {
             akt.varLink.node = node;
-            node.scopeGetSet = new Scope.LocalGetSet(akt.varLink.var.index);
         }
         return node;
     }
@@ -155,96 +276,391 @@ public class VariablesAnalyzer {
         return node;
     }
 
+    // starts a top level statement of an incrementally compiled script, link() pairs it with the top level names
+    Statement startStatement(int line) {
+        statement = new Statement(line);
+        varMap = statement.varMap;
+        links = statement.links;
+        parsed.add(statement);
+        return statement;
+    }
+
     private Link addVar(String access, String name, TokenPos tokenPos, AstNodes.ASTNode node) {
         if (futuredReservedWords.contains(name)) {
+            TokenPos pos = position(tokenPos);
             throw new JsParser.SyntaxError(
-                    "SyntaxError: Function name '" + name + "' use future reserved word at line " + tokenPos.line() +
-                            " column " + tokenPos.column());
+                    "SyntaxError: Function name '" + name + "' use future reserved word at line " + pos.line() +
+                            " column " + pos.column());
         }
-        String varId = varId(blockStack, name);
+        String varId = varId(name);
         if (varMap.containsKey(varId)) {
-            throw new JsParser.SyntaxError(
-                    "SyntaxError: duplicated param '" + name + "' at line " + tokenPos.line() + " column " +
-                            tokenPos.column());
+            throw duplicated(name, tokenPos);
         }
         Fn parent = functionStack.getLast();
         Var v = new Var(access, name, parent.vars.size());
-        parent.vars.add(v);
-        Link link = new Link(counterVar++, varId(blockStack, name), v, parent, node);
+        Link link = new Link(counterVar++, varId(name), v, parent, node);
+        link.tokenPos = tokenPos;
+        link.statement = statement;
+        if (topLevel != null && parent == root) {
+            // the slot is given by link(), a failed parse does not change the top level
+            statement.declarations.add(link);
+        } else {
+            parent.vars.add(v);
+        }
         varMap.put(varId, link);
-        nodeIndex(node, new Scope.LocalGetSet(v.index));
         return link;
     }
 
+    private JsParser.SyntaxError duplicated(String name, TokenPos tokenPos) {
+        TokenPos pos = position(tokenPos);
+        return new JsParser.SyntaxError(
+                "SyntaxError: duplicated param '" + name + "' at line " + pos.line() + " column " + pos.column());
+    }
+
     private void addLink(String name, TokenPos tokenPos, AstNodes.ASTNode node) {
         if (futuredReservedWords.contains(name)) {
+            TokenPos pos = position(tokenPos);
             throw new JsParser.SyntaxError(
-                    "SyntaxError: variable name '" + name + "' use future reserved word at line " + tokenPos.line() +
-                            " column " + tokenPos.column());
+                    "SyntaxError: variable name '" + name + "' use future reserved word at line " + pos.line() +
+                            " column " + pos.column());
         }
         Fn parent = functionStack.getLast();
-        links.add(new Link(counterVar++, varId(blockStack, name), name, parent, node));
+        Link link = new Link(counterVar++, varId(name), name, parent, node);
+        link.statement = statement;
+        links.add(link);
+    }
+
+    // a node of an incrementally compiled script counts lines from its statement
+    private TokenPos position(TokenPos tokenPos) {
+        return tokenPos.resolve(firstLines);
     }
 
     public void pairAll() {
+        // links resolved to a var of their own function, they get the getter when all captures are known
+        List<Link> localLinks = new ArrayList<>();
+        pairLinks(varMap, links, localLinks);
+        indexVars(varMap.values(), localLinks);
+    }
+
+    private void pairLinks(Map<String, Link> varMap, List<Link> links, List<Link> localLinks) {
         for (Link link : links) {
             String id = link.linkId;
-            Link varLink = varMap.get(id);
             while (true) {
-                varLink = varMap.get(id);
+                Link varLink = lookup(varMap, link, id);
                 if (varLink != null &&
-                        (link.pos > varLink.pos || varLink.node instanceof AstNodes.FunctionDeclarationNode)) {
-                    if ("const".equals(varLink.var.access)) {
-                        checkChangingConst(link.node);
+                        (before(varLink, link) || varLink.node instanceof AstNodes.FunctionDeclarationNode)) {
+                    boolean isConst = "const".equals(varLink.var.access);
+                    if (isConst) {
+                        changingConst(link);
+                    }
+                    constDeclaration(link, isConst && varLink.node instanceof AstNodes.VariableDeclarationNode vn
+                                           ? vn : null);
+                    link.var = varLink.var;
+                    if (varLink.var.index == ARGUMENTS_INDEX && varLink.parent != root && varLink.node == null) {
+                        varLink.parent.usesArguments = true;
                     }
                     if (link.parent == varLink.parent) {
-                        nodeIndex(link.node, new Scope.LocalGetSet(varLink.var.index));
+                        localLinks.add(link);
                     } else {
+                        capture(varLink);
                         ExtRef ref = createExtRef(link.parent, link.name,
                                                   link.parent.deepLevel - varLink.parent.deepLevel - 1,
                                                   varLink.var.index);
-                        nodeIndex(link.node, new Scope.ExtGetSet(ref.index));
+                        nodeIndex(link, new Scope.ExtGetSet(ref.index));
                     }
                     break;
                 }
                 int pos = id.lastIndexOf('/');
                 if (pos < 0) {
-                    nodeIndex(link.node, new Scope.MapGetSet(link.name));
+                    constDeclaration(link, null);
+                    nodeIndex(link, new Scope.MapGetSet(link.name));
                     break;
                 }
                 id = id.substring(0, pos);
             }
         }
-        System.out.println("ok");
     }
 
-    private ExtRef createExtRef(Fn parent, String name, int deep, int varIndex) {
+    // a top level name of an incrementally compiled script is looked up in the names of all statements
+    private Link lookup(Map<String, Link> varMap, Link link, String id) {
+        if (topLevel == null || id.indexOf('/') >= 0) {
+            return varMap.get(id);
+        }
+        Set<Link> uses = topLevel.uses.computeIfAbsent(id, k -> new HashSet<>());
+        uses.add(link);
+        topLevel.change(() -> uses.remove(link));
+        link.statement.topLevelLinks.add(link);
+        return topLevel.names.get(id);
+    }
+
+    // the declaration is before the link in the source
+    private static boolean before(Link varLink, Link link) {
+        if (varLink.statement != link.statement) {
+            return varLink.statement.order < link.statement.order;
+        }
+        return link.pos > varLink.pos;
+    }
+
+    private void capture(Link varLink) {
+        Var var = varLink.var;
+        if (var.captured) {
+            return;
+        }
+        var.captured = true;
+        if (topLevel != null && varLink.parent == root) {
+            // root slots are not indexed again, a statement reading the slot directly has to be parsed again
+            int[] slots = root.capturedSlots;
+            root.capturedSlots = Arrays.copyOf(slots, slots.length + 1);
+            root.capturedSlots[slots.length] = var.index;
+            topLevel.change(() -> {
+                var.captured = false;
+                root.capturedSlots = slots;
+            });
+            captured.add(varLink);
+        }
+    }
+
+    private void indexVars(Collection<Link> varLinks, List<Link> localLinks) {
+        for (Link varLink : varLinks) {
+            if (!rootSlot(varLink)) {
+                varLink.parent.capturedSlots = new int[0];
+            }
+        }
+        for (Link varLink : varLinks) {
+            Var var = varLink.var;
+            nodeIndex(varLink, slotGetSet(var));
+            if (var.captured && !rootSlot(varLink)) {
+                Fn fn = varLink.parent;
+                fn.capturedSlots = Arrays.copyOf(fn.capturedSlots, fn.capturedSlots.length + 1);
+                fn.capturedSlots[fn.capturedSlots.length - 1] = var.index;
+            }
+        }
+        for (Link link : localLinks) {
+            nodeIndex(link, slotGetSet(link.var));
+        }
+    }
+
+    // root slot of an incrementally compiled script, its captures are kept by capture()
+    private boolean rootSlot(Link varLink) {
+        return topLevel != null && varLink.parent == root;
+    }
+
+    /**
+     * Links the statements parsed since the last call into the top level of an incrementally compiled script. Their
+     * root vars take the free slots of their names or new ones, their links are paired like by pairAll(). Returns
+     * the other statements whose nodes would be linked differently now, the caller removes them and parses them
+     * again.
+     */
+    Set<Statement> link() {
+        List<Statement> statements = new ArrayList<>(parsed);
+        parsed.clear();
+        for (Statement s : statements) {
+            for (Link declaration : s.declarations) {
+                declare(declaration);
+            }
+        }
+        for (Statement s : statements) {
+            pairLinks(s.varMap, s.links, s.localLinks);
+        }
+        for (Statement s : statements) {
+            indexVars(s.varMap.values(), s.localLinks);
+            s.varMap = null;
+            s.links = null;
+            s.localLinks = null;
+        }
+        Set<Statement> batch = new HashSet<>(statements);
+        Set<Statement> changed = new LinkedHashSet<>();
+        for (String name : touched) {
+            Set<Link> uses = topLevel.uses.get(name);
+            if (uses != null) {
+                for (Link link : uses) {
+                    if (!batch.contains(link.statement) && !changed.contains(link.statement) && !relink(link)) {
+                        changed.add(link.statement);
+                    }
+                }
+            }
+        }
+        touched.clear();
+        // root vars captured by this edit, the nodes reading their slots directly get the Ref
+        for (Link varLink : captured) {
+            reindex(varLink, batch, changed);
+            Set<Link> uses = topLevel.uses.get(varLink.name);
+            if (uses != null) {
+                for (Link link : uses) {
+                    if (link.var == varLink.var && link.parent == root) {
+                        reindex(link, batch, changed);
+                    }
+                }
+            }
+        }
+        captured.clear();
+        if (changed.isEmpty() && !constAssignments.isEmpty()) {
+            Link first = constAssignments.getFirst();
+            for (Link link : constAssignments) {
+                if (before(link, first)) {
+                    first = link;
+                }
+            }
+            checkChangingConst(first.node);
+        }
+        return changed;
+    }
+
+    // a node of a linked statement is indexed again, a reused statement has to be parsed again
+    private static void reindex(Link link, Set<Statement> linked, Set<Statement> changed) {
+        if (linked.contains(link.statement)) {
+            nodeIndex(link, slotGetSet(link.var));
+        } else {
+            changed.add(link.statement);
+        }
+    }
+
+    // root var of a linked statement gets its slot, a top level name is added to the names
+    private void declare(Link declaration) {
+        Var var = declaration.var;
+        boolean topLevelName = declaration.linkId.equals(var.name);
+        Link other = topLevelName ? topLevel.names.get(var.name) : null;
+        if (other != null) {
+            // the later one in the source is the duplicate
+            throw duplicated(var.name, before(other, declaration) ? declaration.tokenPos : other.tokenPos);
+        }
+        List<Integer> free = topLevel.freeSlots.get(var.name);
+        if (free != null && !free.isEmpty()) {
+            int index = free.removeLast();
+            Var previous = root.vars.get(index);
+            var.index = index;
+            var.captured = previous.captured;
+            root.vars.set(index, var);
+            topLevel.change(() -> {
+                root.vars.set(index, previous);
+                free.add(index);
+            });
+        } else {
+            var.index = root.vars.size();
+            root.vars.add(var);
+            topLevel.change(root.vars::removeLast);
+        }
+        if (topLevelName) {
+            topLevel.names.put(var.name, declaration);
+            topLevel.change(() -> topLevel.names.remove(var.name));
+            touched.add(var.name);
+        }
+    }
+
+    // removes a statement replaced by an edit, its slots are free for the next declarations of the names
+    void remove(Statement s) {
+        constAssignments.removeIf(link -> link.statement == s);
+        for (Link declaration : s.declarations) {
+            Var var = declaration.var;
+            List<Integer> free = topLevel.freeSlots.computeIfAbsent(var.name, k -> new ArrayList<>());
+            free.add(var.index);
+            topLevel.change(free::removeLast);
+            if (topLevel.names.get(var.name) == declaration) {
+                topLevel.names.remove(var.name);
+                topLevel.change(() -> topLevel.names.put(var.name, declaration));
+                touched.add(var.name);
+            }
+        }
+        for (Link link : s.topLevelLinks) {
+            Set<Link> uses = topLevel.uses.get(link.name);
+            uses.remove(link);
+            topLevel.change(() -> uses.add(link));
+        }
+    }
+
+    // a link of an unchanged statement resolved by the current names, its node is kept when it gets the same getter
+    private boolean relink(Link link) {
+        Link varLink = topLevel.names.get(link.name);
+        Scope.IGetSet scopeGetSet;
+        AstNodes.VariableDeclarationNode declaration = null;
+        if (varLink != null &&
+                (before(varLink, link) || varLink.node instanceof AstNodes.FunctionDeclarationNode)) {
+            Var var = varLink.var;
+            if ("const".equals(var.access)) {
+                changingConst(link);
+                declaration = varLink.node instanceof AstNodes.VariableDeclarationNode vn ? vn : null;
+            }
+            if (link.parent == root) {
+                scopeGetSet = slotGetSet(var);
+            } else {
+                capture(varLink);
+                ExtRef ref = findExtRef(link.parent, link.name);
+                if (ref == null || ref.deep != link.parent.deepLevel - 1 || ref.varIndex != var.index) {
+                    return false;
+                }
+                scopeGetSet = new Scope.ExtGetSet(ref.index);
+            }
+        } else {
+            scopeGetSet = new Scope.MapGetSet(link.name);
+        }
+        Scope.IGetSet current = switch (link.node) {
+            case AstNodes.VariableDeclarationNode vn -> vn.scopeGetSet;
+            case AstNodes.IdentifierNode in -> in.scopeGetSet;
+            case null, default -> null;
+        };
+        if (!scopeGetSet.equals(current) ||
+                (link.node instanceof AstNodes.IdentifierNode in && in.constDeclaration != declaration)) {
+            return false;
+        }
+        Var previous = link.var;
+        link.var = varLink != null ? varLink.var : null;
+        topLevel.change(() -> link.var = previous);
+        return true;
+    }
+
+    private static Scope.IGetSet slotGetSet(Var var) {
+        return var.captured ? new Scope.RefGetSet(var.index) : new Scope.LocalGetSet(var.index);
+    }
+
+    private static ExtRef findExtRef(Fn parent, String name) {
         for (ExtRef ref : parent.extRefs) {
             if (ref.name.equals(name)) {
                 return ref;
             }
         }
-        ExtRef ref = new ExtRef(name, parent.extRefs.size(), deep, varIndex);
-        parent.extRefs.add(ref);
+        return null;
+    }
+
+    private ExtRef createExtRef(Fn parent, String name, int deep, int varIndex) {
+        ExtRef ref = findExtRef(parent, name);
+        if (ref == null) {
+            ref = new ExtRef(name, parent.extRefs.size(), deep, varIndex);
+            parent.extRefs.add(ref);
+        }
         return ref;
     }
 
+    private void changingConst(Link link) {
+        if (topLevel == null) {
+            checkChangingConst(link.node);
+        } else if (link.node instanceof AstNodes.IdentifierNode in && in.wasAssigned) {
+            constAssignments.add(link);
+        }
+    }
+
     public void checkChangingConst(AstNodes.ASTNode node) {
         if (node instanceof AstNodes.IdentifierNode in && in.wasAssigned) {
+            TokenPos pos = position(in.tokenPos);
             throw new JsParser.SyntaxError(
-                    "TypeError: Assignment to constant variable '" + in.name + "' in line " + in.tokenPos.line() +
-                            " column " + in.tokenPos.column());
+                    "TypeError: Assignment to constant variable '" + in.name + "' in line " + pos.line() +
+                            " column " + pos.column());
         }
     }
 
-    private void nodeIndex(AstNodes.ASTNode node, Scope.IGetSet scopeGetSet) {
-        if (node instanceof AstNodes.VariableDeclarationNode vn) {
+    private static void nodeIndex(Link link, Scope.IGetSet scopeGetSet) {
+        if (link.node instanceof AstNodes.VariableDeclarationNode vn) {
             vn.scopeGetSet = scopeGetSet;
-        } else if (node instanceof AstNodes.FunctionDeclarationNode fn) {
+        } else if (link.node instanceof AstNodes.FunctionDeclarationNode fn) {
             fn.scopeGetSet = scopeGetSet;
-        } else if (node instanceof AstNodes.IdentifierNode in) {
+        } else if (link.node instanceof AstNodes.IdentifierNode in) {
             in.scopeGetSet = scopeGetSet;
         }
     }
 
+    private static void constDeclaration(Link link, AstNodes.VariableDeclarationNode declaration) {
+        if (link.node instanceof AstNodes.IdentifierNode in) {
+            in.constDeclaration = declaration;
+        }
+    }
+
 }
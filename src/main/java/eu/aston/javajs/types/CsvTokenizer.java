@@ -0,0 +1,224 @@
+package eu.aston.javajs.types;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import eu.aston.javajs.AstNodes;
+
+/**
+ * Reads RFC 4180 delimited text row by row from a reader, only the current row is held in memory. Quoted fields may
+ * contain delimiters, line breaks and doubled quotes, rows end with CRLF, LF or CR and empty lines are skipped. All
+ * fields are strings. With a header the first row gives the keys and every next row is an object.
+ */
+public class CsvTokenizer {
+    private final Reader reader;
+    private final char delimiter;
+    private final boolean header;
+    private final char[] buffer = new char[8192];
+    private final StringBuilder field = new StringBuilder();
+    private int position;
+    private int limit;
+    private int line = 1;
+    private List<Object> keys;
+
+    public CsvTokenizer(Reader reader, char delimiter, boolean header) {
+        this.reader = reader;
+        this.delimiter = delimiter;
+        this.header = header;
+    }
+
+    /**
+     * The next row as an array, or an object with a header, null at the end of the text.
+     */
+    public Object next() {
+        try {
+            if (header && keys == null) {
+                keys = nextRow();
+                if (keys == null) {
+                    return null;
+                }
+            }
+            List<Object> row = nextRow();
+            if (row == null || !header) {
+                return row;
+            }
+            Map<String, Object> object = new LinkedHashMap<>();
+            for (int i = 0; i < keys.size() && i < row.size(); i++) {
+                object.put((String) keys.get(i), row.get(i));
+            }
+            return object;
+        } catch (IOException e) {
+            throw new AstNodes.ExecuteScriptException("parse csv error: " + e.getMessage(), null);
+        }
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = Math.max(0, reader.read(buffer, 0, buffer.length));
+            position = 0;
+            if (limit == 0) {
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+
+    private boolean isEnd(int c) {
+        return c < 0 || c == delimiter || c == '\n' || c == '\r';
+    }
+
+    private List<Object> nextRow() throws IOException {
+        int c = read();
+        while (c == '\n' || c == '\r') {
+            if (c == '\n') {
+                line++;
+            }
+            c = read();
+        }
+        if (c < 0) {
+            return null;
+        }
+        List<Object> row = new JsArray();
+        while (true) {
+            if (c == '"') {
+                row.add(quoted());
+                c = read();
+                if (!isEnd(c)) {
+                    throw new AstNodes.ExecuteScriptException(
+                            "parse csv error: unexpected character after a quoted field at line " + line, null);
+                }
+            } else if (isEnd(c)) {
+                row.add("");
+            } else {
+                row.add(unquoted());
+                c = read();
+            }
+            if (c != delimiter) {
+                break;
+            }
+            c = read();
+        }
+        if (c == '\n') {
+            line++;
+        } else if (c == '\r' && read() >= 0 && buffer[position - 1] != '\n') {
+            position--;
+        }
+        return row;
+    }
+
+    // the first character is read, the field ends before the delimiter or line break which is left unread
+    private String unquoted() throws IOException {
+        int start = position - 1;
+        for (int i = position; i < limit; i++) {
+            if (isEnd(buffer[i])) {
+                position = i;
+                return new String(buffer, start, i - start);
+            }
+        }
+        // the field continues in the next block of the reader
+        field.setLength(0);
+        field.append(buffer, start, limit - start);
+        position = limit;
+        for (int c = read(); c >= 0; c = read()) {
+            if (isEnd(c)) {
+                position--;
+                break;
+            }
+            field.append((char) c);
+        }
+        return field.toString();
+    }
+
+    // the opening quote is read, a doubled quote is one quote character
+    private String quoted() throws IOException {
+        int startLine = line;
+        field.setLength(0);
+        while (true) {
+            int c = read();
+            if (c < 0) {
+                throw new AstNodes.ExecuteScriptException(
+                        "parse csv error: unterminated quoted field at line " + startLine, null);
+            }
+            if (c == '"') {
+                if (read() != '"') {
+                    if (limit > 0) {
+                        position--;
+                    }
+                    return field.toString();
+                }
+            } else if (c == '\n') {
+                line++;
+            }
+            field.append((char) c);
+        }
+    }
+
+    /**
+     * Writes rows of arrays, or rows of objects under a header of the keys of the first object. Fields with the
+     * delimiter, a quote or a line break are quoted, null and undefined are empty fields.
+     */
+    public static String stringify(List<?> rows, char delimiter, String newline) {
+        StringBuilder sb = new StringBuilder(rows.size() * 32);
+        List<Object> keys = null;
+        if (!rows.isEmpty() && rows.getFirst() instanceof Map<?, ?> first) {
+            keys = new ArrayList<>(first.keySet());
+            appendRow(sb, keys, delimiter, newline);
+        }
+        for (Object row : rows) {
+            if (keys != null && row instanceof Map<?, ?> object) {
+                for (int i = 0; i < keys.size(); i++) {
+                    if (i > 0) {
+                        sb.append(delimiter);
+                    }
+                    appendField(sb, object.get(keys.get(i)), delimiter);
+                }
+                sb.append(newline);
+            } else if (row instanceof List<?> fields) {
+                appendRow(sb, fields, delimiter, newline);
+            } else {
+                appendField(sb, row, delimiter);
+                sb.append(newline);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void appendRow(StringBuilder sb, List<?> fields, char delimiter, String newline) {
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) {
+                sb.append(delimiter);
+            }
+            appendField(sb, fields.get(i), delimiter);
+        }
+        sb.append(newline);
+    }
+
+    private static void appendField(StringBuilder sb, Object value, char delimiter) {
+        if (value == null || value == Undefined.INSTANCE) {
+            return;
+        }
+        String str = value instanceof String s ? s : JsTypes.toString(value);
+        boolean quote = false;
+        for (int i = 0; i < str.length() && !quote; i++) {
+            char c = str.charAt(i);
+            quote = c == delimiter || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            sb.append(str);
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c == '"') {
+                sb.append('"');
+            }
+            sb.append(c);
+        }
+        sb.append('"');
+    }
+}
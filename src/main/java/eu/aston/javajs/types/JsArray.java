@@ -0,0 +1,465 @@
+package eu.aston.javajs.types;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Array created by scripts. The elements live in a circular buffer, so adding and removing at both ends is O(1) and an
+ * insert or remove in the middle moves the shorter side only. Host lists are used as they are.
+ * <p>
+ * While all elements are {@code Integer}, {@code Long} or {@code Double} of one type they are stored in an
+ * {@code int[]}, {@code long[]} or {@code double[]}. The first element of another type moves the array to
+ * {@code Object[]} for good, the type of every element read is the type written.
+ */
+public final class JsArray extends AbstractList<Object> implements RandomAccess {
+    private static final byte OBJECTS = 0;
+    private static final byte INTS = 1;
+    private static final byte LONGS = 2;
+    private static final byte DOUBLES = 3;
+    private static final int INDEX_MIN_SIZE = 32;
+    private static final int INDEX_AFTER_SEARCHES = 8;
+    private static final int[] NOT_FOUND = {-1, -1};
+
+    // only the array of the kind is used, its length is 0 or a power of two
+    private byte kind;
+    private Object[] elements;
+    private int[] ints;
+    private long[] longs;
+    private double[] doubles;
+    private int capacity;
+    private int head;
+    private int size;
+    // hash of the first and last index of every value, built when a long unchanged array is searched repeatedly
+    private HashMap<Object, int[]> searchIndex;
+    private int searches;
+
+    public JsArray() {
+        this(0);
+    }
+
+    public JsArray(int capacity) {
+        this.kind = INTS;
+        this.capacity = capacity > 0 ? capacityFor(capacity) : 0;
+        this.ints = new int[this.capacity];
+    }
+
+    public JsArray(Collection<?> values) {
+        if (values instanceof JsArray other) {
+            this.kind = other.kind;
+            this.capacity = other.size > 0 ? capacityFor(other.size) : 0;
+            Object data = newData(kind, capacity);
+            other.copyTo(data);
+            setData(data);
+            this.size = other.size;
+            return;
+        }
+        this.kind = INTS;
+        this.capacity = values.isEmpty() ? 0 : capacityFor(values.size());
+        this.ints = new int[capacity];
+        for (Object value : values) {
+            store(size, value);
+            size++;
+        }
+    }
+
+    private static int capacityFor(int size) {
+        return Math.max(8, Integer.highestOneBit(size - 1) << 1);
+    }
+
+    private static byte kindOf(Object value) {
+        return switch (value) {
+            case Integer ignore -> INTS;
+            case Long ignore -> LONGS;
+            case Double ignore -> DOUBLES;
+            case null, default -> OBJECTS;
+        };
+    }
+
+    private static Object newData(byte kind, int capacity) {
+        return switch (kind) {
+            case INTS -> new int[capacity];
+            case LONGS -> new long[capacity];
+            case DOUBLES -> new double[capacity];
+            default -> new Object[capacity];
+        };
+    }
+
+    private Object data() {
+        return switch (kind) {
+            case INTS -> ints;
+            case LONGS -> longs;
+            case DOUBLES -> doubles;
+            default -> elements;
+        };
+    }
+
+    private void setData(Object data) {
+        elements = null;
+        ints = null;
+        longs = null;
+        doubles = null;
+        switch (kind) {
+            case INTS -> ints = (int[]) data;
+            case LONGS -> longs = (long[]) data;
+            case DOUBLES -> doubles = (double[]) data;
+            default -> elements = (Object[]) data;
+        }
+    }
+
+    // copies the elements in order to the start of an array of the same kind
+    private void copyTo(Object data) {
+        int first = Math.min(size, capacity - head);
+        System.arraycopy(data(), head, data, 0, first);
+        System.arraycopy(data(), 0, data, first, size - first);
+    }
+
+    private int slot(int index) {
+        return (head + index) & (capacity - 1);
+    }
+
+    private Object load(int slot) {
+        return switch (kind) {
+            case INTS -> ints[slot];
+            case LONGS -> longs[slot];
+            case DOUBLES -> doubles[slot];
+            default -> elements[slot];
+        };
+    }
+
+    private void store(int slot, Object value) {
+        changed();
+        fit(value);
+        switch (kind) {
+            case INTS -> ints[slot] = (Integer) value;
+            case LONGS -> longs[slot] = (Long) value;
+            case DOUBLES -> doubles[slot] = (Double) value;
+            default -> elements[slot] = value;
+        }
+    }
+
+    // an empty array takes the kind of the value, other arrays change to objects when the value does not fit
+    private void fit(Object value) {
+        boolean fits = switch (kind) {
+            case INTS -> value instanceof Integer;
+            case LONGS -> value instanceof Long;
+            case DOUBLES -> value instanceof Double;
+            default -> true;
+        };
+        if (!fits) {
+            changeKind(size == 0 ? kindOf(value) : OBJECTS);
+        }
+    }
+
+    private void changeKind(byte next) {
+        Object data = newData(next, capacity);
+        if (next == OBJECTS) {
+            Object[] boxed = (Object[]) data;
+            for (int i = 0; i < size; i++) {
+                int s = slot(i);
+                boxed[s] = load(s);
+            }
+        }
+        kind = next;
+        setData(data);
+    }
+
+    // moves one element between slots, used by inserts and removes in the middle
+    private void move(int from, int to) {
+        switch (kind) {
+            case INTS -> ints[to] = ints[from];
+            case LONGS -> longs[to] = longs[from];
+            case DOUBLES -> doubles[to] = doubles[from];
+            default -> elements[to] = elements[from];
+        }
+    }
+
+    private void changed() {
+        searchIndex = null;
+        searches = 0;
+    }
+
+    private void release(int slot) {
+        if (kind == OBJECTS) {
+            elements[slot] = null;
+        }
+    }
+
+    private void checkIndex(int index, int limit) {
+        if (index < 0 || index >= limit) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+    }
+
+    private void grow() {
+        if (size < capacity) {
+            return;
+        }
+        int next = capacity == 0 ? 8 : capacity << 1;
+        Object data = newData(kind, next);
+        copyTo(data);
+        capacity = next;
+        head = 0;
+        setData(data);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Object get(int index) {
+        checkIndex(index, size);
+        return load(slot(index));
+    }
+
+    @Override
+    public Object set(int index, Object value) {
+        checkIndex(index, size);
+        int s = slot(index);
+        Object old = load(s);
+        store(s, value);
+        return old;
+    }
+
+    @Override
+    public boolean add(Object value) {
+        addLast(value);
+        return true;
+    }
+
+    @Override
+    public void addLast(Object value) {
+        grow();
+        store(slot(size), value);
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public void addFirst(Object value) {
+        grow();
+        int first = (head - 1) & (capacity - 1);
+        store(first, value);
+        head = first;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public void add(int index, Object value) {
+        checkIndex(index, size + 1);
+        if (index == size) {
+            addLast(value);
+            return;
+        }
+        if (index == 0) {
+            addFirst(value);
+            return;
+        }
+        grow();
+        fit(value);
+        if (index < size / 2) {
+            head = (head - 1) & (capacity - 1);
+            for (int i = 0; i < index; i++) {
+                move(slot(i + 1), slot(i));
+            }
+        } else {
+            for (int i = size; i > index; i--) {
+                move(slot(i - 1), slot(i));
+            }
+        }
+        store(slot(index), value);
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public Object removeFirst() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return remove(0);
+    }
+
+    @Override
+    public Object removeLast() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return remove(size - 1);
+    }
+
+    @Override
+    public Object remove(int index) {
+        checkIndex(index, size);
+        Object old = load(slot(index));
+        if (index < size / 2) {
+            for (int i = index; i > 0; i--) {
+                move(slot(i - 1), slot(i));
+            }
+            release(head);
+            head = (head + 1) & (capacity - 1);
+        } else {
+            for (int i = index; i < size - 1; i++) {
+                move(slot(i + 1), slot(i));
+            }
+            release(slot(size - 1));
+        }
+        size--;
+        modCount++;
+        changed();
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        if (kind == OBJECTS) {
+            Arrays.fill(elements, null);
+        }
+        head = 0;
+        size = 0;
+        modCount++;
+        changed();
+    }
+
+    @Override
+    public Object[] toArray() {
+        Object[] result = new Object[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = load(slot(i));
+        }
+        return result;
+    }
+
+    @Override
+    public void sort(Comparator<? super Object> c) {
+        Object[] sorted = toArray();
+        Arrays.sort(sorted, c);
+        head = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            store(i, sorted[i]);
+        }
+        modCount++;
+    }
+
+    /**
+     * Index of the first element equal to the value from an index, numbers are compared on the primitive storage.
+     */
+    public int indexOf(Object value, int fromIndex) {
+        int[] found = indexed(value);
+        if (found != null && (found[0] < 0 || found[0] >= fromIndex)) {
+            return found[0];
+        }
+        for (int i = Math.max(0, fromIndex); i < size; i++) {
+            if (equalsAt(slot(i), value)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Index of the last element equal to the value up to an index.
+     */
+    public int lastIndexOf(Object value, int fromIndex) {
+        int[] found = indexed(value);
+        if (found != null && found[1] <= fromIndex) {
+            return found[1];
+        }
+        for (int i = Math.min(size - 1, fromIndex); i >= 0; i--) {
+            if (equalsAt(slot(i), value)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // first and last index of the value from the search index, null when the array is not indexed
+    private int[] indexed(Object value) {
+        if (searchIndex == null) {
+            if (size < INDEX_MIN_SIZE || ++searches < INDEX_AFTER_SEARCHES || !buildSearchIndex()) {
+                return null;
+            }
+        }
+        int[] found = searchIndex.get(value);
+        return found != null ? found : NOT_FOUND;
+    }
+
+    // elements which may change while in the array are compared by a scan
+    private boolean buildSearchIndex() {
+        HashMap<Object, int[]> index = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            Object value = load(slot(i));
+            if (!(value == null || value instanceof String || value instanceof Number || value instanceof Boolean ||
+                    value instanceof Undefined)) {
+                searches = Integer.MIN_VALUE;
+                return false;
+            }
+            int[] found = index.get(value);
+            if (found == null) {
+                index.put(value, new int[]{i, i});
+            } else {
+                found[1] = i;
+            }
+        }
+        searchIndex = index;
+        return true;
+    }
+
+    private boolean equalsAt(int slot, Object value) {
+        return switch (kind) {
+            case INTS -> value instanceof Integer i && ints[slot] == i;
+            case LONGS -> value instanceof Long l && longs[slot] == l;
+            case DOUBLES -> value instanceof Double d &&
+                    Double.doubleToLongBits(doubles[slot]) == Double.doubleToLongBits(d);
+            default -> Objects.equals(elements[slot], value);
+        };
+    }
+
+    /**
+     * Maps the elements by the callback like {@code map}, elements are read from the storage without the checks of
+     * {@code get} and the result is allocated for all of them.
+     */
+    public JsArray map(JsCallback callback) {
+        JsArray result = new JsArray(size);
+        for (int i = 0; i < size; i++) {
+            result.addLast(callback.call(load(slot(i)), i, this));
+        }
+        return result;
+    }
+
+    /**
+     * Folds the elements from an index like {@code reduce}, elements are read from the storage.
+     */
+    public Object reduce(JsCallback callback, Object accumulator, int startIndex) {
+        for (int i = startIndex; i < size; i++) {
+            accumulator = callback.call(accumulator, load(slot(i)), i, this);
+        }
+        return accumulator;
+    }
+
+    /**
+     * Appends the elements like {@code join}, numbers are appended from the primitive storage.
+     */
+    public void join(StringBuilder sb, String separator) {
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(separator);
+            }
+            int s = slot(i);
+            switch (kind) {
+                case INTS -> sb.append(ints[s]);
+                case LONGS -> sb.append(longs[s]);
+                case DOUBLES -> sb.append(doubles[s]);
+                default -> JsTypes.appendString(sb, elements[s]);
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package eu.aston.javajs.types;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Fixed length block of bytes read and written through typed array views. Buffers from {@code DIRECT_THRESHOLD} bytes
+ * are allocated outside the Java heap, a host can also wrap its own ByteBuffer without a copy.
+ */
+public final class JsArrayBuffer implements IJsType {
+    public static final int DIRECT_THRESHOLD = 1 << 20;
+
+    private final ByteBuffer buffer;
+
+    /**
+     * Wraps the bytes between the position and the limit of the buffer, script writes go to the same memory.
+     */
+    public JsArrayBuffer(ByteBuffer buffer) {
+        this.buffer = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public static JsArrayBuffer allocate(int byteLength) {
+        if (byteLength < 0) {
+            throw new IllegalArgumentException("Invalid array buffer length " + byteLength);
+        }
+        return new JsArrayBuffer(byteLength >= DIRECT_THRESHOLD ? ByteBuffer.allocateDirect(byteLength)
+                                                                : ByteBuffer.allocate(byteLength));
+    }
+
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    public int byteLength() {
+        return buffer.capacity();
+    }
+
+    public boolean isDirect() {
+        return buffer.isDirect();
+    }
+
+    @Override
+    public boolean toBoolean() {
+        return true;
+    }
+
+    @Override
+    public String typeOf() {
+        return "object";
+    }
+
+    @Override
+    public String toString() {
+        return "[object ArrayBuffer]";
+    }
+}
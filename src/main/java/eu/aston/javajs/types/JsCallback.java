@@ -0,0 +1,83 @@
+package eu.aston.javajs.types;
+
+import java.util.Arrays;
+
+import eu.aston.javajs.Scope;
+
+/**
+ * Calls a function many times from a native loop, like the callback of an array function. Only the params the
+ * function declares are passed, so x => x * 2 gets no index. A script function which captures none of its vars runs
+ * every call in one reused frame, other functions get a frame per call.
+ */
+public final class JsCallback {
+    private final JsFunction function;
+    private final Scope scope;
+    private final int params;
+    // native functions and functions which read arguments get all arguments
+    private final boolean allArguments;
+    private final Scope frame;
+
+    public JsCallback(JsFunction function, Scope scope) {
+        this.function = function;
+        this.scope = scope;
+        this.params = function.params.size();
+        this.allArguments = function.scopeDef == null || function.scopeDef.usesArguments();
+        this.frame = function.scopeDef != null && function.scopeDef.reusableFrame() ? function.positionalFrame(scope)
+                                                                                   : null;
+    }
+
+    public Object call(Object a, Object b) {
+        return run(2, a, b, null, null);
+    }
+
+    /**
+     * Call with the (value, counter) arguments of an iterator helper callback.
+     */
+    public Object call(Object value, int counter) {
+        return run(2, value, params > 1 || allArguments ? counter : null, null, null);
+    }
+
+    public Object call(Object a, Object b, Object c) {
+        return run(3, a, b, c, null);
+    }
+
+    /**
+     * Call with the (value, index, array) arguments of an element callback.
+     */
+    public Object call(Object value, int index, Object array) {
+        return run(3, value, params > 1 || allArguments ? index : null, array, null);
+    }
+
+    /**
+     * Call with the (accumulator, value, index, array) arguments of a reducer.
+     */
+    public Object call(Object accumulator, Object value, int index, Object array) {
+        return run(4, accumulator, value, params > 2 || allArguments ? index : null, array);
+    }
+
+    private Object run(int argc, Object a, Object b, Object c, Object d) {
+        if (allArguments) {
+            return function.exec(scope, Arrays.copyOf(new Object[]{a, b, c, d}, argc));
+        }
+        Scope callFrame = frame;
+        if (callFrame != null) {
+            function.scopeDef.resetFrame(callFrame);
+        } else {
+            callFrame = function.positionalFrame(scope);
+        }
+        int count = Math.min(params, argc);
+        if (count > 0) {
+            callFrame.setParam(0, a);
+        }
+        if (count > 1) {
+            callFrame.setParam(1, b);
+        }
+        if (count > 2) {
+            callFrame.setParam(2, c);
+        }
+        if (count > 3) {
+            callFrame.setParam(3, d);
+        }
+        return function.execFrame(callFrame, count);
+    }
+}
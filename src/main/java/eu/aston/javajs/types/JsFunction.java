@@ -1,9 +1,15 @@
 package eu.aston.javajs.types;
 
+import java.util.Arrays;
 import java.util.List;
 
 import eu.aston.javajs.AstNodes.ASTNode;
+import eu.aston.javajs.AstNodes.BinaryExpressionNode;
+import eu.aston.javajs.AstNodes.BlockNode;
+import eu.aston.javajs.AstNodes.ExecuteScriptException;
+import eu.aston.javajs.AstNodes.IdentifierNode;
 import eu.aston.javajs.AstNodes.ReturnException;
+import eu.aston.javajs.AstNodes.ReturnStatementNode;
 import eu.aston.javajs.Scope;
 
 public class JsFunction implements IJsType {
@@ -14,7 +20,9 @@ public class JsFunction implements IJsType {
     final Scope.ScopeDef scopeDef;
     final boolean inlineThis;
     final private Object parent;
-    final private Scope instanceScope;
+    // closure of a local function, lexical parent scope and the Refs of captured vars
+    final private Scope closureScope;
+    final private Scope.Ref[] closureRefs;
 
     public JsFunction(String name, List<String> params, IJsFunctionExec exec, boolean inlineThis,
                       Scope.ScopeDef scopeDef) {
@@ -24,7 +32,8 @@ public class JsFunction implements IJsType {
         this.scopeDef = scopeDef;
         this.inlineThis = inlineThis;
         this.parent = null;
-        this.instanceScope = null;
+        this.closureScope = null;
+        this.closureRefs = null;
     }
 
     public JsFunction(JsFunction fn, Object parent) {
@@ -34,17 +43,19 @@ public class JsFunction implements IJsType {
         this.scopeDef = fn.scopeDef;
         this.inlineThis = fn.inlineThis;
         this.parent = parent;
-        this.instanceScope = fn.instanceScope;
+        this.closureScope = fn.closureScope;
+        this.closureRefs = fn.closureRefs;
     }
 
-    public JsFunction(JsFunction fn, Scope instanceScope) {
+    public JsFunction(JsFunction fn, Scope closureScope, Scope.Ref[] closureRefs) {
         this.name = fn.name;
         this.params = fn.params;
         this.exec = fn.exec;
         this.scopeDef = fn.scopeDef;
         this.inlineThis = fn.inlineThis;
         this.parent = fn.parent;
-        this.instanceScope = instanceScope;
+        this.closureScope = closureScope;
+        this.closureRefs = closureRefs;
     }
 
     public String name() {
@@ -66,25 +77,83 @@ public class JsFunction implements IJsType {
         if (scopeDef == null) {
             return this;
         }
-        return new JsFunction(this, scopeDef.createInitScope(scope));
+        return new JsFunction(this, scope, scopeDef.captureRefs(scope));
+    }
+
+    private Object thisValue(Scope scope) {
+        return parent != null ? parent : scope.rootThis();
+    }
+
+    private Scope parentScope(Scope scope) {
+        return closureScope != null ? closureScope : scope;
     }
 
     public Object exec(Scope scope, List<Object> args) {
         if (scopeDef != null) {
-            Scope functionScope = instanceScope != null ? instanceScope : new Scope(scope, scopeDef.size(), null);
-            functionScope.setStackValue(0, "this", parent != null ? parent : scope.rootThis());
-            functionScope.setStackValue(1, "arguments", args);
-            for (int i = 0; i < params.size(); i++) {
-                functionScope.setStackValue(i + 2, params.get(i), args.get(i));
-            }
+            // every call gets its own scope, so recursive and reentrant calls do not share locals
+            Scope functionScope = scopeDef.createFrame(parentScope(scope), closureRefs, thisValue(scope), args,
+                                                       params.size());
             return exec.exec(functionScope, args);
         } else {
             Scope functionScope = new Scope(scope, 1, null);
-            functionScope.setStackValue(0, "this", parent != null ? parent : scope.rootThis());
+            functionScope.setStackValue(0, "this", thisValue(scope));
             return exec.exec(functionScope, args);
         }
     }
 
+    public Object exec(Scope scope, Object[] args) {
+        if (scopeDef != null) {
+            Scope functionScope = scopeDef.createFrame(parentScope(scope), closureRefs, thisValue(scope), args,
+                                                       params.size());
+            return exec.exec(functionScope, List.of());
+        } else {
+            // native functions get a fixed size view of the argument vector
+            Scope functionScope = new Scope(scope, 1, null);
+            functionScope.setStackValue(0, "this", thisValue(scope));
+            return exec.exec(functionScope, Arrays.asList(args));
+        }
+    }
+
+    /**
+     * Frame for a call of a script function which takes its params by position, null when the function is native or
+     * reads arguments. The caller stores the params with Scope.setParam() and runs the body by execFrame().
+     */
+    public Scope positionalFrame(Scope scope) {
+        if (scopeDef == null || scopeDef.usesArguments()) {
+            return null;
+        }
+        return scopeDef.createFrame(parentScope(scope), closureRefs, thisValue(scope));
+    }
+
+    public Object execFrame(Scope frame, int argc) {
+        scopeDef.enterFrame(frame, argc, params.size());
+        return exec.exec(frame, List.of());
+    }
+
+    /**
+     * 1 for a compare function (a, b) => a - b, -1 for (a, b) => b - a and 0 for other functions.
+     */
+    public int numericOrder() {
+        if (!(exec instanceof LocalFunctionExec local) || params.size() != 2 || params.get(0).equals(params.get(1))) {
+            return 0;
+        }
+        ASTNode body = local.body;
+        if (body instanceof BlockNode block && block.statements.size() == 1 && block.functions.isEmpty()) {
+            body = block.statements.getFirst();
+        }
+        if (body instanceof ReturnStatementNode ret && ret.expression instanceof BinaryExpressionNode binary &&
+                binary.operator.equals("-") && binary.left instanceof IdentifierNode left &&
+                binary.right instanceof IdentifierNode right) {
+            if (left.name.equals(params.get(0)) && right.name.equals(params.get(1))) {
+                return 1;
+            }
+            if (left.name.equals(params.get(1)) && right.name.equals(params.get(0))) {
+                return -1;
+            }
+        }
+        return 0;
+    }
+
     @Override
     public boolean toBoolean() {
         return true;
@@ -107,12 +176,16 @@ public class JsFunction implements IJsType {
             this.body = body;
         }
 
+        // params are already stored in the scope
         @Override
         public Object exec(Scope scope, List<Object> args) {
             try {
                 body.exec(scope);
             } catch (ReturnException e) {
                 return e.throwValue();
+            } catch (ExecuteScriptException e) {
+                // the scope of the function resolves the line in the script defining it
+                throw e.locate(scope);
             }
             return Undefined.INSTANCE;
         }
@@ -0,0 +1,188 @@
+package eu.aston.javajs.types;
+
+/**
+ * Insertion-ordered open-addressed hash table of {@link JsSet} and {@link JsMap}. Entries are appended to the key and
+ * value arrays, the slot array holds entry index + 1 and is probed linearly. A removed entry stays as a hole until the
+ * next resize, so the order of the rest never changes. Keys are compared with SameValueZero: numbers by value whatever
+ * their Java type, NaN equal to NaN, strings by content and objects by identity.
+ */
+final class JsHashTable {
+    private static final Object REMOVED = new Object();
+    private static final int MIN_CAPACITY = 8;
+
+    private Object[] keys;
+    // null in a table of a set
+    private Object[] values;
+    // twice the capacity, a power of two
+    private int[] slots;
+    // entries used including removed ones
+    private int used;
+    private int size;
+
+    JsHashTable(boolean withValues) {
+        init(withValues);
+    }
+
+    private void init(boolean withValues) {
+        keys = new Object[MIN_CAPACITY];
+        values = withValues ? new Object[MIN_CAPACITY] : null;
+        slots = new int[MIN_CAPACITY * 2];
+        used = 0;
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // entries are at indexes 0 .. limit - 1, removed ones are skipped by isRemoved
+    int limit() {
+        return used;
+    }
+
+    boolean isRemoved(int entry) {
+        return keys[entry] == REMOVED;
+    }
+
+    Object key(int entry) {
+        return keys[entry];
+    }
+
+    Object value(int entry) {
+        return values[entry];
+    }
+
+    int find(Object key) {
+        int mask = slots.length - 1;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            int entry = slots[i] - 1;
+            if (entry < 0) {
+                return -1;
+            }
+            Object k = keys[entry];
+            if (k != REMOVED && sameValueZero(k, key)) {
+                return entry;
+            }
+        }
+    }
+
+    /**
+     * Sets the value of a key, a new key is added at the end of the order.
+     */
+    void put(Object key, Object value) {
+        int entry = find(key);
+        if (entry >= 0) {
+            if (values != null) {
+                values[entry] = value;
+            }
+            return;
+        }
+        if (used == keys.length) {
+            // holes are dropped when they are at least half of the entries
+            resize(size * 2 <= used ? keys.length : keys.length * 2);
+        }
+        entry = used++;
+        // -0 is stored as 0
+        keys[entry] = key instanceof Double d && d == 0 ? (Object) 0.0 : key;
+        if (values != null) {
+            values[entry] = value;
+        }
+        insertSlot(entry);
+        size++;
+    }
+
+    boolean remove(Object key) {
+        int entry = find(key);
+        if (entry < 0) {
+            return false;
+        }
+        keys[entry] = REMOVED;
+        if (values != null) {
+            values[entry] = null;
+        }
+        size--;
+        return true;
+    }
+
+    void clear() {
+        init(values != null);
+    }
+
+    private void insertSlot(int entry) {
+        int mask = slots.length - 1;
+        int i = hash(keys[entry]) & mask;
+        while (slots[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        slots[i] = entry + 1;
+    }
+
+    private void resize(int capacity) {
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        int oldUsed = used;
+        keys = new Object[capacity];
+        values = oldValues != null ? new Object[capacity] : null;
+        slots = new int[capacity * 2];
+        used = 0;
+        for (int i = 0; i < oldUsed; i++) {
+            if (oldKeys[i] != REMOVED) {
+                keys[used] = oldKeys[i];
+                if (values != null) {
+                    values[used] = oldValues[i];
+                }
+                insertSlot(used);
+                used++;
+            }
+        }
+    }
+
+    private static int hash(Object key) {
+        int h = switch (key) {
+            case null -> 0;
+            case Integer i -> Long.hashCode(i);
+            case Long l -> Long.hashCode(l);
+            case Double d -> doubleHash(d);
+            case Number n -> doubleHash(n.doubleValue());
+            case String s -> s.hashCode();
+            case Boolean b -> b.hashCode();
+            default -> System.identityHashCode(key);
+        };
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // an integral double has the hash of the same long value
+    private static int doubleHash(double d) {
+        if (d == 0) {
+            return 0;
+        }
+        long l = (long) d;
+        return l == d ? Long.hashCode(l) : Double.hashCode(d);
+    }
+
+    static boolean sameValueZero(Object a, Object b) {
+        if (a == b) {
+            return true;
+        }
+        if (a instanceof Number x && b instanceof Number y) {
+            if ((x instanceof Integer || x instanceof Long) && (y instanceof Integer || y instanceof Long)) {
+                return x.longValue() == y.longValue();
+            }
+            double dx = x.doubleValue();
+            double dy = y.doubleValue();
+            if (Double.isNaN(dx)) {
+                return Double.isNaN(dy);
+            }
+            if (dx != dy) {
+                return false;
+            }
+            // a long compared to a double must be the exact value
+            return x instanceof Double && y instanceof Double || (long) dx == (x instanceof Double ? y : x).longValue();
+        }
+        if (a instanceof String || a instanceof Boolean) {
+            return a.equals(b);
+        }
+        return false;
+    }
+}
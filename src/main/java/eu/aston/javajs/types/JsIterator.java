@@ -0,0 +1,178 @@
+package eu.aston.javajs.types;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import eu.aston.javajs.AstNodes;
+
+/**
+ * Lazy iterator of the iterator helpers, {@code array.values().filter(f).map(g).take(10)} runs f and g only until ten
+ * values are taken and creates no array between the steps. Every helper returns a new iterator over this one, values
+ * are pulled one by one when the result is iterated by for-of or a terminal function like toArray.
+ */
+public final class JsIterator implements IJsType, Iterator<Object>, Iterable<Object> {
+    private final Iterator<?> source;
+
+    public JsIterator(Iterator<?> source) {
+        this.source = source;
+    }
+
+    /**
+     * Iterator over the current elements of a list, elements added while iterating are visited too.
+     */
+    public static JsIterator of(List<?> list) {
+        return new JsIterator(new Step() {
+            private int index;
+
+            @Override
+            protected Object fetch() {
+                return index < list.size() ? list.get(index++) : END;
+            }
+        });
+    }
+
+    public JsIterator filter(JsCallback predicate) {
+        return new JsIterator(new Step() {
+            private int counter;
+
+            @Override
+            protected Object fetch() {
+                while (source.hasNext()) {
+                    Object value = source.next();
+                    if (JsTypes.toBoolean(predicate.call(value, counter++))) {
+                        return value;
+                    }
+                }
+                return END;
+            }
+        });
+    }
+
+    public JsIterator map(JsCallback mapper) {
+        return new JsIterator(new Step() {
+            private int counter;
+
+            @Override
+            protected Object fetch() {
+                return source.hasNext() ? mapper.call(source.next(), counter++) : END;
+            }
+        });
+    }
+
+    public JsIterator flatMap(JsCallback mapper) {
+        return new JsIterator(new Step() {
+            private int counter;
+            private Iterator<?> inner;
+
+            @Override
+            protected Object fetch() {
+                while (inner == null || !inner.hasNext()) {
+                    if (!source.hasNext()) {
+                        return END;
+                    }
+                    Object result = mapper.call(source.next(), counter++);
+                    inner = switch (result) {
+                        case List<?> list -> list.iterator();
+                        case JsIterator iterator -> iterator;
+                        case JsSet set -> set.values().iterator();
+                        case null, default -> throw new AstNodes.ExecuteScriptException(
+                                "Iterator.flatMap callback returned " + JsTypes.typeof(result) +
+                                        ", not an iterable", null);
+                    };
+                }
+                return inner.next();
+            }
+        });
+    }
+
+    /**
+     * The first values only, the rest of the source is never pulled.
+     */
+    public JsIterator take(int limit) {
+        return new JsIterator(new Step() {
+            private int remaining = limit;
+
+            @Override
+            protected Object fetch() {
+                if (remaining <= 0 || !source.hasNext()) {
+                    return END;
+                }
+                remaining--;
+                return source.next();
+            }
+        });
+    }
+
+    public JsIterator drop(int count) {
+        return new JsIterator(new Step() {
+            private int remaining = count;
+
+            @Override
+            protected Object fetch() {
+                for (; remaining > 0 && source.hasNext(); remaining--) {
+                    source.next();
+                }
+                return source.hasNext() ? source.next() : END;
+            }
+        });
+    }
+
+    @Override
+    public boolean hasNext() {
+        return source.hasNext();
+    }
+
+    @Override
+    public Object next() {
+        return source.next();
+    }
+
+    @Override
+    public Iterator<Object> iterator() {
+        return this;
+    }
+
+    @Override
+    public boolean toBoolean() {
+        return true;
+    }
+
+    @Override
+    public String typeOf() {
+        return "object";
+    }
+
+    @Override
+    public String toString() {
+        return "[object Iterator]";
+    }
+
+    // one step of a pipeline, fetch reads the next value of the step or END
+    private abstract static class Step implements Iterator<Object> {
+        static final Object END = new Object();
+        private Object pending = END;
+        private boolean done;
+
+        protected abstract Object fetch();
+
+        @Override
+        public boolean hasNext() {
+            if (pending == END && !done) {
+                pending = fetch();
+                done = pending == END;
+            }
+            return pending != END;
+        }
+
+        @Override
+        public Object next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Object value = pending;
+            pending = END;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package eu.aston.javajs.types;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Map of keys of any type to values created by the Map() function. Entries are kept in insertion order and keys are
+ * compared with SameValueZero. Unlike an object a key is not converted to a string.
+ */
+public final class JsMap implements IJsType {
+    private final JsHashTable table = new JsHashTable(true);
+
+    public int size() {
+        return table.size();
+    }
+
+    public boolean has(Object key) {
+        return table.find(key) >= 0;
+    }
+
+    public Object get(Object key) {
+        int entry = table.find(key);
+        return entry >= 0 ? table.value(entry) : Undefined.INSTANCE;
+    }
+
+    public void set(Object key, Object value) {
+        table.put(key, value);
+    }
+
+    public boolean delete(Object key) {
+        return table.remove(key);
+    }
+
+    public void clear() {
+        table.clear();
+    }
+
+    /**
+     * Snapshot of the entries, a callback may change the map while the snapshot is iterated.
+     */
+    public List<Map.Entry<Object, Object>> entries() {
+        List<Map.Entry<Object, Object>> result = new ArrayList<>(table.size());
+        for (int i = 0; i < table.limit(); i++) {
+            if (!table.isRemoved(i)) {
+                result.add(new AbstractMap.SimpleImmutableEntry<>(table.key(i), table.value(i)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Entries as an array of [key, value] arrays, the form of entries() and for-of.
+     */
+    public JsArray entryArrays() {
+        JsArray result = new JsArray(table.size());
+        for (int i = 0; i < table.limit(); i++) {
+            if (!table.isRemoved(i)) {
+                result.add(new JsArray(Arrays.asList(table.key(i), table.value(i))));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean toBoolean() {
+        return true;
+    }
+
+    @Override
+    public String typeOf() {
+        return "object";
+    }
+
+    @Override
+    public String toString() {
+        return "[object Map]";
+    }
+}
@@ -9,7 +9,7 @@ public class JsOps {
 
     public static BiFunction<Object, Object, Object> operation(String op) {
         return switch (op) {
-            case "+" -> stringNumberOp(operateString("+"), operateInt("+"), operateLong("+"), operateDouble("+"));
+            case "+" -> plus();
             case "-" -> numberOp(operateInt("-"), operateLong("-"), operateDouble("-"));
             case "*" -> numberOp(operateInt("*"), operateLong("*"), operateDouble("*"));
             case "/" -> numberOp(operateInt("/"), operateLong("/"), operateDouble("/"));
@@ -31,6 +31,20 @@ public class JsOps {
         return numberOp(operateInt("+"), operateLong("+"), operateDouble("+"));
     }
 
+    // a string operand is joined by one builder, a JsRope operand is copied without flattening
+    private static BiFunction<Object, Object, Object> plus() {
+        BiFunction<Object, Object, Object> numberPlus = numberPlus();
+        return (left, right) -> {
+            if (isNumber(left) && isNumber(right)) {
+                return numberPlus.apply(left, right);
+            }
+            StringBuilder sb = new StringBuilder();
+            JsTypes.appendString(sb, left);
+            JsTypes.appendString(sb, right);
+            return sb.toString();
+        };
+    }
+
     private static boolean isNumber(Object obj) {
         return obj == null || obj instanceof Number || obj instanceof Boolean || obj == Undefined.INSTANCE;
     }
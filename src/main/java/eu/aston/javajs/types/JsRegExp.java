@@ -0,0 +1,82 @@
+package eu.aston.javajs.types;
+
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Immutable compiled regular expression. Created from regex literals at parse time or through the
+ * RegExp(pattern, flags) function, so one instance is safely shared by all executions of a program.
+ * There is no lastIndex state, the 'g' flag only switches match/replace to all occurrences.
+ */
+public class JsRegExp implements IJsType {
+
+    private final String source;
+    private final String flags;
+    private final Pattern pattern;
+    private final boolean global;
+
+    public JsRegExp(String source, String flags) {
+        this.source = source;
+        this.flags = flags;
+        this.pattern = Pattern.compile(source, javaFlags(flags));
+        this.global = flags.indexOf('g') >= 0;
+    }
+
+    public static JsRegExp of(String source, String flags) {
+        return RegExpCache.INSTANCE.get(source, flags != null ? flags : "");
+    }
+
+    public static JsRegExp of(Object value) {
+        if (value instanceof JsRegExp regExp) {
+            return regExp;
+        }
+        return of(JsTypes.toString(value), "");
+    }
+
+    private static int javaFlags(String flags) {
+        int javaFlags = 0;
+        for (int i = 0; i < flags.length(); i++) {
+            switch (flags.charAt(i)) {
+                case 'i' -> javaFlags |= Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+                case 'm' -> javaFlags |= Pattern.MULTILINE;
+                case 's' -> javaFlags |= Pattern.DOTALL;
+                case 'u' -> javaFlags |= Pattern.UNICODE_CHARACTER_CLASS;
+                case 'g', 'y' -> {
+                }
+                default -> throw new PatternSyntaxException("Invalid regular expression flags", flags, i);
+            }
+        }
+        return javaFlags;
+    }
+
+    public String source() {
+        return source;
+    }
+
+    public String flags() {
+        return flags;
+    }
+
+    public Pattern pattern() {
+        return pattern;
+    }
+
+    public boolean global() {
+        return global;
+    }
+
+    @Override
+    public boolean toBoolean() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "/" + source + "/" + flags;
+    }
+
+    @Override
+    public String typeOf() {
+        return "object";
+    }
+}
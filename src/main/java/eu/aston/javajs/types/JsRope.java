@@ -0,0 +1,65 @@
+package eu.aston.javajs.types;
+
+/**
+ * String built by repeated {@code s += piece} statements on a variable. The ropes of one variable share a builder and
+ * every rope is the prefix of its length, so an append is amortized O(1) and an older value never changes. The rope
+ * stays in the variable slot, .length, + and string concatenation read it as CharSequence, other reads of the variable
+ * get the flattened String.
+ */
+public final class JsRope implements CharSequence {
+    private final StringBuilder builder;
+    private final int length;
+    private String value;
+
+    public JsRope(String start) {
+        this.builder = new StringBuilder(Math.max(16, start.length() * 2)).append(start);
+        this.length = start.length();
+        this.value = start;
+    }
+
+    private JsRope(StringBuilder builder) {
+        this.builder = builder;
+        this.length = builder.length();
+    }
+
+    public JsRope append(String piece) {
+        if (builder.length() == length) {
+            builder.append(piece);
+            return new JsRope(builder);
+        }
+        // an older value is appended again, it gets its own builder
+        StringBuilder copy = new StringBuilder((length + piece.length()) * 2);
+        copy.append(builder, 0, length).append(piece);
+        return new JsRope(copy);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index >= length) {
+            throw new StringIndexOutOfBoundsException(index);
+        }
+        return builder.charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    public void appendTo(StringBuilder sb) {
+        sb.append(builder, 0, length);
+    }
+
+    @Override
+    public String toString() {
+        if (value == null) {
+            value = builder.substring(0, length);
+        }
+        return value;
+    }
+}
@@ -1,5 +1,10 @@
 package eu.aston.javajs.types;
 
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -9,9 +14,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import java.util.regex.PatternSyntaxException;
 
+import eu.aston.javajs.AstNodes;
 import eu.aston.javajs.Scope;
 
 @SuppressWarnings({"unchecked", "rawtypes"})
@@ -65,6 +70,10 @@ public class JsSdk {
         scope.nativeFunction("String.trimEnd()", parentTypeFunction(String.class, JsSdk::string_trimEnd));
         scope.nativeFunction("String.trimStart()", parentTypeFunction(String.class, JsSdk::string_trimStart));
 
+        scope.nativeFunction("RegExp(pattern,flags)", JsSdk::regexp);
+        scope.nativeFunction("RegExp.test(str)", parentTypeFunction(JsRegExp.class, JsSdk::regexp_test));
+        scope.nativeFunction("RegExp.exec(str)", parentTypeFunction(JsRegExp.class, JsSdk::regexp_exec));
+
         // Array static methods
         scope.setValue("Array", Map.of("isArray", JsFunction.nativeFunction("isArray(val)", JsSdk::array_isArray)));
         // Array prototype methods
@@ -102,13 +111,65 @@ public class JsSdk {
         scope.nativeFunction("Array.some(callbackFn)", parentTypeFunction(List.class, JsSdk::array_some));
         scope.nativeFunction("Array.sort(compareFn)", parentTypeFunction(List.class, JsSdk::array_sort));
         scope.nativeFunction("Array.splice(start,deleteCount)", parentTypeFunction(List.class, JsSdk::array_splice));
+        scope.nativeFunction("Array.toSorted(compareFn)", parentTypeFunction(List.class, JsSdk::array_toSorted));
         scope.nativeFunction("Array.unshift()", parentTypeFunction(List.class, JsSdk::array_unshift));
+        scope.nativeFunction("Array.values()", parentTypeFunction(List.class, JsSdk::array_values));
         scope.nativeFunction("Array.with(index,value)", parentTypeFunction(List.class, JsSdk::array_with));
 
         scope.nativeFunction("Function.apply(thisArg, argsArray)",
                              parentTypeFunction(JsFunction.class, JsSdk::function_apply));
         scope.nativeFunction("Function.call(thisArg)", parentTypeFunction(JsFunction.class, JsSdk::function_call));
 
+        // Set and Map
+        scope.nativeFunction("Set(values)", JsSdk::set);
+        scope.nativeFunction("Set.add(value)", parentTypeFunction(JsSet.class, JsSdk::set_add));
+        scope.nativeFunction("Set.clear()", parentTypeFunction(JsSet.class, JsSdk::set_clear));
+        scope.nativeFunction("Set.delete(value)", parentTypeFunction(JsSet.class, JsSdk::set_delete));
+        scope.nativeFunction("Set.forEach(callbackFn)", parentTypeFunction(JsSet.class, JsSdk::set_forEach));
+        scope.nativeFunction("Set.has(value)", parentTypeFunction(JsSet.class, JsSdk::set_has));
+        scope.nativeFunction("Set.values()", parentTypeFunction(JsSet.class, JsSdk::set_values));
+        scope.nativeFunction("Map(entries)", JsSdk::map);
+        scope.nativeFunction("Map.clear()", parentTypeFunction(JsMap.class, JsSdk::map_clear));
+        scope.nativeFunction("Map.delete(key)", parentTypeFunction(JsMap.class, JsSdk::map_delete));
+        scope.nativeFunction("Map.entries()", parentTypeFunction(JsMap.class, JsSdk::map_entries));
+        scope.nativeFunction("Map.forEach(callbackFn)", parentTypeFunction(JsMap.class, JsSdk::map_forEach));
+        scope.nativeFunction("Map.get(key)", parentTypeFunction(JsMap.class, JsSdk::map_get));
+        scope.nativeFunction("Map.has(key)", parentTypeFunction(JsMap.class, JsSdk::map_has));
+        scope.nativeFunction("Map.keys()", parentTypeFunction(JsMap.class, JsSdk::map_keys));
+        scope.nativeFunction("Map.set(key,value)", parentTypeFunction(JsMap.class, JsSdk::map_set));
+        scope.nativeFunction("Map.values()", parentTypeFunction(JsMap.class, JsSdk::map_values));
+
+        // Iterator helpers
+        scope.nativeFunction("Iterator.drop(limit)", parentTypeFunction(JsIterator.class, JsSdk::iterator_drop));
+        scope.nativeFunction("Iterator.every(predicate)", parentTypeFunction(JsIterator.class, JsSdk::iterator_every));
+        scope.nativeFunction("Iterator.filter(predicate)",
+                             parentTypeFunction(JsIterator.class, JsSdk::iterator_filter));
+        scope.nativeFunction("Iterator.find(predicate)", parentTypeFunction(JsIterator.class, JsSdk::iterator_find));
+        scope.nativeFunction("Iterator.flatMap(mapper)", parentTypeFunction(JsIterator.class, JsSdk::iterator_flatMap));
+        scope.nativeFunction("Iterator.forEach(fn)", parentTypeFunction(JsIterator.class, JsSdk::iterator_forEach));
+        scope.nativeFunction("Iterator.map(mapper)", parentTypeFunction(JsIterator.class, JsSdk::iterator_map));
+        scope.nativeFunction("Iterator.next()", parentTypeFunction(JsIterator.class, JsSdk::iterator_next));
+        scope.nativeFunction("Iterator.reduce(reducer,initialValue)",
+                             parentTypeFunction(JsIterator.class, JsSdk::iterator_reduce));
+        scope.nativeFunction("Iterator.some(predicate)", parentTypeFunction(JsIterator.class, JsSdk::iterator_some));
+        scope.nativeFunction("Iterator.take(limit)", parentTypeFunction(JsIterator.class, JsSdk::iterator_take));
+        scope.nativeFunction("Iterator.toArray()", parentTypeFunction(JsIterator.class, JsSdk::iterator_toArray));
+
+        // ArrayBuffer and typed arrays
+        scope.nativeFunction("ArrayBuffer(byteLength)", JsSdk::arrayBuffer);
+        scope.nativeFunction("ArrayBuffer.slice(begin,end)",
+                             parentTypeFunction(JsArrayBuffer.class, JsSdk::arrayBuffer_slice));
+        scope.nativeFunction("Int32Array(source,byteOffset,length)",
+                             (s, args) -> typedArray(JsTypedArray.Kind.INT32, args));
+        scope.nativeFunction("Float64Array(source,byteOffset,length)",
+                             (s, args) -> typedArray(JsTypedArray.Kind.FLOAT64, args));
+        scope.nativeFunction("Uint8Array(source,byteOffset,length)",
+                             (s, args) -> typedArray(JsTypedArray.Kind.UINT8, args));
+        scope.nativeFunction("TypedArray.set(source,offset)",
+                             parentTypeFunction(JsTypedArray.class, JsSdk::typedArray_set));
+        scope.nativeFunction("TypedArray.subarray(begin,end)",
+                             parentTypeFunction(JsTypedArray.class, JsSdk::typedArray_subarray));
+
         scope.setValue("Object", Map.of("isExtensible",
                                         JsFunction.nativeFunction("isExtensible(val)", JsSdk::object_isExtensible),
                                         "assign",
@@ -133,6 +194,11 @@ public class JsSdk {
 
         scope.setValue("JSON", Map.of("parse", JsFunction.nativeFunction("parse(val)", JsSdk::json_parse), "stringify",
                                       JsFunction.nativeFunction("stringify(val)", JsSdk::json_stringify)));
+        scope.setValue("CSV", Map.of("parse", JsFunction.nativeFunction("parse(text,options)", JsSdk::csv_parse),
+                                     "forEach",
+                                     JsFunction.nativeFunction("forEach(source,callbackFn,options)", JsSdk::csv_forEach),
+                                     "stringify",
+                                     JsFunction.nativeFunction("stringify(rows,options)", JsSdk::csv_stringify)));
     }
 
     // parseInt function
@@ -272,17 +338,23 @@ public class JsSdk {
     }
 
     //String.prototype.match()
-    public static List<String> string_match(Scope scope, List<Object> args, String parent) {
+    public static List<Object> string_match(Scope scope, List<Object> args, String parent) {
         if (args.isEmpty()) {
-            return List.of();
+            return new JsArray();
         }
         try {
-            String regexpStr = JsTypes.toString(args.getFirst());
-            Pattern pattern = Pattern.compile(regexpStr);
-            Matcher matcher = pattern.matcher(parent);
+            JsRegExp regExp = JsRegExp.of(args.getFirst());
+            Matcher matcher = regExp.pattern().matcher(parent);
 
+            if (regExp.global()) {
+                List<Object> result = new JsArray();
+                while (matcher.find()) {
+                    result.add(matcher.group());
+                }
+                return result;
+            }
             if (matcher.find()) {
-                List<String> result = new java.util.ArrayList<>();
+                List<Object> result = new JsArray();
                 result.add(matcher.group());
                 for (int i = 1; i <= matcher.groupCount(); i++) {
                     result.add(matcher.group(i));
@@ -292,22 +364,20 @@ public class JsSdk {
         } catch (Exception e) {
             // Ignore invalid regex
         }
-        return List.of();
+        return new JsArray();
     }
 
     //String.prototype.matchAll()
-    public static List<List<String>> string_matchAll(Scope scope, List<Object> args, String parent) {
+    public static List<Object> string_matchAll(Scope scope, List<Object> args, String parent) {
         if (args.isEmpty()) {
-            return List.of();
+            return new JsArray();
         }
         try {
-            String regexpStr = JsTypes.toString(args.getFirst());
-            Pattern pattern = Pattern.compile(regexpStr);
-            Matcher matcher = pattern.matcher(parent);
+            Matcher matcher = JsRegExp.of(args.getFirst()).pattern().matcher(parent);
 
-            List<List<String>> results = new java.util.ArrayList<>();
+            List<Object> results = new JsArray();
             while (matcher.find()) {
-                List<String> match = new java.util.ArrayList<>();
+                List<Object> match = new JsArray();
                 match.add(matcher.group());
                 for (int i = 1; i <= matcher.groupCount(); i++) {
                     match.add(matcher.group(i));
@@ -318,7 +388,7 @@ public class JsSdk {
         } catch (Exception e) {
             // Ignore invalid regex
         }
-        return List.of();
+        return new JsArray();
     }
 
     //String.prototype.padEnd()
@@ -393,13 +463,16 @@ public class JsSdk {
         if (args.size() < 2) {
             return parent;
         }
-        String searchFor = JsTypes.toString(args.getFirst());
         String replaceWith = JsTypes.toString(args.get(1));
+        if (args.getFirst() instanceof JsRegExp regExp) {
+            Matcher matcher = regExp.pattern().matcher(parent);
+            return regExp.global() ? matcher.replaceAll(replaceWith) : matcher.replaceFirst(replaceWith);
+        }
+        String searchFor = JsTypes.toString(args.getFirst());
 
         try {
             // Check if searchFor is a regex
-            Pattern pattern = Pattern.compile(searchFor);
-            Matcher matcher = pattern.matcher(parent);
+            Matcher matcher = JsRegExp.of(searchFor, "").pattern().matcher(parent);
             if (matcher.find()) {
                 return matcher.replaceFirst(replaceWith);
             }
@@ -419,13 +492,15 @@ public class JsSdk {
         if (args.size() < 2) {
             return parent;
         }
-        String searchFor = JsTypes.toString(args.getFirst());
         String replaceWith = JsTypes.toString(args.get(1));
+        if (args.getFirst() instanceof JsRegExp regExp) {
+            return regExp.pattern().matcher(parent).replaceAll(replaceWith);
+        }
+        String searchFor = JsTypes.toString(args.getFirst());
 
         try {
             // Check if searchFor is a regex
-            Pattern pattern = Pattern.compile(searchFor);
-            return pattern.matcher(parent).replaceAll(replaceWith);
+            return JsRegExp.of(searchFor, "").pattern().matcher(parent).replaceAll(replaceWith);
         } catch (Exception e) {
             // Not a valid regex, treat as string
             return parent.replace(searchFor, replaceWith);
@@ -438,9 +513,7 @@ public class JsSdk {
             return -1;
         }
         try {
-            String regexpStr = JsTypes.toString(args.getFirst());
-            Pattern pattern = Pattern.compile(regexpStr);
-            Matcher matcher = pattern.matcher(parent);
+            Matcher matcher = JsRegExp.of(args.getFirst()).pattern().matcher(parent);
 
             if (matcher.find()) {
                 return matcher.start();
@@ -480,30 +553,71 @@ public class JsSdk {
     }
 
     //String.prototype.split()
-    public static List<String> string_split(Scope scope, List<Object> args, String parent) {
-        if (args.isEmpty()) {
-            return List.of(parent);
+    public static List<Object> string_split(Scope scope, List<Object> args, String parent) {
+        if (args.isEmpty() || args.getFirst() == Undefined.INSTANCE) {
+            return new JsArray(List.of(parent));
         }
-        String separator = JsTypes.toString(args.getFirst());
         int limit = args.size() > 1 && args.get(1) instanceof Number num ? num.intValue() : Integer.MAX_VALUE;
 
         if (limit <= 0) {
-            return List.of();
+            return new JsArray();
+        }
+        if (args.getFirst() instanceof JsRegExp regExp) {
+            return splitRegExp(parent, regExp, limit);
         }
+        String separator = JsTypes.toString(args.getFirst());
         if (separator.isEmpty()) {
-            return parent.chars().mapToObj(c -> String.valueOf((char) c)).limit(limit).collect(Collectors.toList());
+            return new JsArray(parent.chars().mapToObj(c -> String.valueOf((char) c)).limit(limit).toList());
         }
+        return splitLiteral(parent, separator, limit);
+    }
 
-        try {
-            // Check if separator is a regex
-            Pattern pattern = Pattern.compile(separator);
-            String[] parts = pattern.split(parent, limit);
-            return Arrays.asList(parts);
-        } catch (Exception e) {
-            // Not a valid regex, treat as string
-            String[] parts = parent.split(Pattern.quote(separator), limit);
-            return Arrays.asList(parts);
+    // captured groups are added between the parts like JavaScript does, Pattern.split drops them
+    private static List<Object> splitRegExp(String str, JsRegExp regExp, int limit) {
+        List<Object> result = new JsArray();
+        Matcher matcher = regExp.pattern().matcher(str);
+        if (str.isEmpty()) {
+            if (!matcher.matches()) {
+                result.add(str);
+            }
+            return result;
+        }
+        int last = 0;
+        while (matcher.find() && matcher.start() < str.length()) {
+            // an empty match where the last part ends splits nothing
+            if (matcher.end() == last) {
+                continue;
+            }
+            result.add(str.substring(last, matcher.start()));
+            for (int i = 1; i <= matcher.groupCount() && result.size() < limit; i++) {
+                String group = matcher.group(i);
+                result.add(group != null ? group : Undefined.INSTANCE);
+            }
+            if (result.size() >= limit) {
+                return result;
+            }
+            last = matcher.end();
+        }
+        result.add(str.substring(last));
+        return result;
+    }
+
+    // a string separator is matched as it is, never as a regular expression
+    private static List<Object> splitLiteral(String str, String separator, int limit) {
+        List<Object> result = new JsArray();
+        char first = separator.charAt(0);
+        boolean oneChar = separator.length() == 1;
+        int start = 0;
+        while (result.size() < limit) {
+            int end = oneChar ? str.indexOf(first, start) : str.indexOf(separator, start);
+            if (end < 0) {
+                result.add(str.substring(start));
+                break;
+            }
+            result.add(str.substring(start, end));
+            start = end + separator.length();
         }
+        return result;
     }
 
     //String.prototype.startsWith()
@@ -602,6 +716,370 @@ public class JsSdk {
         return "";
     }
 
+    //RegExp functions
+
+    //RegExp()
+    public static JsRegExp regexp(Scope scope, List<Object> args) {
+        if (args.getFirst() instanceof JsRegExp regExp && args.get(1) == Undefined.INSTANCE) {
+            return regExp;
+        }
+        String source = args.getFirst() instanceof JsRegExp regExp ? regExp.source() : JsTypes.toString(args.getFirst());
+        String flags = args.get(1) != Undefined.INSTANCE && args.get(1) != null ? JsTypes.toString(args.get(1)) : "";
+        try {
+            return JsRegExp.of(source, flags);
+        } catch (PatternSyntaxException e) {
+            throw new AstNodes.ExecuteScriptException("Invalid regular expression /" + source + "/" + flags, null);
+        }
+    }
+
+    //RegExp.prototype.test()
+    public static Boolean regexp_test(Scope scope, List<Object> args, JsRegExp parent) {
+        return parent.pattern().matcher(JsTypes.toString(args.getFirst())).find();
+    }
+
+    //RegExp.prototype.exec()
+    public static List<Object> regexp_exec(Scope scope, List<Object> args, JsRegExp parent) {
+        Matcher matcher = parent.pattern().matcher(JsTypes.toString(args.getFirst()));
+        if (!matcher.find()) {
+            return null;
+        }
+        List<Object> result = new JsArray();
+        result.add(matcher.group());
+        for (int i = 1; i <= matcher.groupCount(); i++) {
+            result.add(matcher.group(i));
+        }
+        return result;
+    }
+
+    //Iterator functions
+
+    private static JsCallback iteratorCallback(Scope scope, Object fn, String name) {
+        if (!(fn instanceof JsFunction function)) {
+            throw new AstNodes.ExecuteScriptException("Iterator." + name + " argument is not a function", null);
+        }
+        return new JsCallback(function, scope);
+    }
+
+    private static int iteratorLimit(Object limit, String name) {
+        double value = JsTypes.toNumber(limit).doubleValue();
+        if (Double.isNaN(value) || value < 0) {
+            throw new AstNodes.ExecuteScriptException(
+                    "Iterator." + name + " limit " + JsTypes.toString(limit) + " must be a positive number", null);
+        }
+        return (int) value;
+    }
+
+    //Iterator.prototype.drop()
+    public static JsIterator iterator_drop(Scope scope, List<Object> args, JsIterator parent) {
+        return parent.drop(iteratorLimit(args.getFirst(), "drop"));
+    }
+
+    //Iterator.prototype.every()
+    public static Boolean iterator_every(Scope scope, List<Object> args, JsIterator parent) {
+        JsCallback predicate = iteratorCallback(scope, args.getFirst(), "every");
+        for (int counter = 0; parent.hasNext(); counter++) {
+            if (!JsTypes.toBoolean(predicate.call(parent.next(), counter))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //Iterator.prototype.filter()
+    public static JsIterator iterator_filter(Scope scope, List<Object> args, JsIterator parent) {
+        return parent.filter(iteratorCallback(scope, args.getFirst(), "filter"));
+    }
+
+    //Iterator.prototype.find()
+    public static Object iterator_find(Scope scope, List<Object> args, JsIterator parent) {
+        JsCallback predicate = iteratorCallback(scope, args.getFirst(), "find");
+        for (int counter = 0; parent.hasNext(); counter++) {
+            Object value = parent.next();
+            if (JsTypes.toBoolean(predicate.call(value, counter))) {
+                return value;
+            }
+        }
+        return Undefined.INSTANCE;
+    }
+
+    //Iterator.prototype.flatMap()
+    public static JsIterator iterator_flatMap(Scope scope, List<Object> args, JsIterator parent) {
+        return parent.flatMap(iteratorCallback(scope, args.getFirst(), "flatMap"));
+    }
+
+    //Iterator.prototype.forEach()
+    public static Object iterator_forEach(Scope scope, List<Object> args, JsIterator parent) {
+        JsCallback fn = iteratorCallback(scope, args.getFirst(), "forEach");
+        for (int counter = 0; parent.hasNext(); counter++) {
+            fn.call(parent.next(), counter);
+        }
+        return Undefined.INSTANCE;
+    }
+
+    //Iterator.prototype.map()
+    public static JsIterator iterator_map(Scope scope, List<Object> args, JsIterator parent) {
+        return parent.map(iteratorCallback(scope, args.getFirst(), "map"));
+    }
+
+    //Iterator.prototype.next()
+    public static Map<String, Object> iterator_next(Scope scope, List<Object> args, JsIterator parent) {
+        Map<String, Object> result = new HashMap<>();
+        boolean done = !parent.hasNext();
+        result.put("value", done ? Undefined.INSTANCE : parent.next());
+        result.put("done", done);
+        return result;
+    }
+
+    //Iterator.prototype.reduce()
+    public static Object iterator_reduce(Scope scope, List<Object> args, JsIterator parent) {
+        JsCallback reducer = iteratorCallback(scope, args.getFirst(), "reduce");
+        int counter = 0;
+        Object accumulator = args.size() > 1 ? args.get(1) : Undefined.INSTANCE;
+        if (accumulator == Undefined.INSTANCE) {
+            if (!parent.hasNext()) {
+                throw new AstNodes.ExecuteScriptException("Reduce of empty iterator with no initial value", null);
+            }
+            accumulator = parent.next();
+            counter++;
+        }
+        for (; parent.hasNext(); counter++) {
+            accumulator = reducer.call(accumulator, parent.next(), counter, Undefined.INSTANCE);
+        }
+        return accumulator;
+    }
+
+    //Iterator.prototype.some()
+    public static Boolean iterator_some(Scope scope, List<Object> args, JsIterator parent) {
+        JsCallback predicate = iteratorCallback(scope, args.getFirst(), "some");
+        for (int counter = 0; parent.hasNext(); counter++) {
+            if (JsTypes.toBoolean(predicate.call(parent.next(), counter))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //Iterator.prototype.take()
+    public static JsIterator iterator_take(Scope scope, List<Object> args, JsIterator parent) {
+        return parent.take(iteratorLimit(args.getFirst(), "take"));
+    }
+
+    //Iterator.prototype.toArray()
+    public static List<Object> iterator_toArray(Scope scope, List<Object> args, JsIterator parent) {
+        List<Object> result = new JsArray();
+        parent.forEachRemaining(result::add);
+        return result;
+    }
+
+    //Set functions
+
+    //Set()
+    public static JsSet set(Scope scope, List<Object> args) {
+        JsSet set = new JsSet();
+        if (args.getFirst() instanceof List<?> values) {
+            values.forEach(set::add);
+        } else if (args.getFirst() instanceof JsSet values) {
+            values.values().forEach(set::add);
+        }
+        return set;
+    }
+
+    //Set.prototype.add()
+    public static JsSet set_add(Scope scope, List<Object> args, JsSet parent) {
+        parent.add(args.getFirst());
+        return parent;
+    }
+
+    //Set.prototype.clear()
+    public static Object set_clear(Scope scope, List<Object> args, JsSet parent) {
+        parent.clear();
+        return Undefined.INSTANCE;
+    }
+
+    //Set.prototype.delete()
+    public static Boolean set_delete(Scope scope, List<Object> args, JsSet parent) {
+        return parent.delete(args.getFirst());
+    }
+
+    //Set.prototype.forEach()
+    public static Object set_forEach(Scope scope, List<Object> args, JsSet parent) {
+        if (args.getFirst() instanceof JsFunction callbackFn) {
+            JsCallback callback = new JsCallback(callbackFn, scope);
+            for (Object value : parent.values()) {
+                callback.call(value, value, parent);
+            }
+        }
+        return Undefined.INSTANCE;
+    }
+
+    //Set.prototype.has()
+    public static Boolean set_has(Scope scope, List<Object> args, JsSet parent) {
+        return parent.has(args.getFirst());
+    }
+
+    //Set.prototype.values()
+    public static List<Object> set_values(Scope scope, List<Object> args, JsSet parent) {
+        return new JsArray(parent.values());
+    }
+
+    //Map functions
+
+    //Map()
+    public static JsMap map(Scope scope, List<Object> args) {
+        JsMap map = new JsMap();
+        if (args.getFirst() instanceof List<?> entries) {
+            for (Object entry : entries) {
+                if (!(entry instanceof List<?> pair)) {
+                    throw new AstNodes.ExecuteScriptException("Map entry " + JsTypes.toString(entry) +
+                                                                      " is not an array", null);
+                }
+                map.set(pair.isEmpty() ? Undefined.INSTANCE : pair.getFirst(),
+                        pair.size() > 1 ? pair.get(1) : Undefined.INSTANCE);
+            }
+        } else if (args.getFirst() instanceof JsMap other) {
+            other.entries().forEach(e -> map.set(e.getKey(), e.getValue()));
+        }
+        return map;
+    }
+
+    //Map.prototype.clear()
+    public static Object map_clear(Scope scope, List<Object> args, JsMap parent) {
+        parent.clear();
+        return Undefined.INSTANCE;
+    }
+
+    //Map.prototype.delete()
+    public static Boolean map_delete(Scope scope, List<Object> args, JsMap parent) {
+        return parent.delete(args.getFirst());
+    }
+
+    //Map.prototype.entries()
+    public static List<Object> map_entries(Scope scope, List<Object> args, JsMap parent) {
+        return parent.entryArrays();
+    }
+
+    //Map.prototype.forEach()
+    public static Object map_forEach(Scope scope, List<Object> args, JsMap parent) {
+        if (args.getFirst() instanceof JsFunction callbackFn) {
+            JsCallback callback = new JsCallback(callbackFn, scope);
+            for (Map.Entry<Object, Object> entry : parent.entries()) {
+                callback.call(entry.getValue(), entry.getKey(), parent);
+            }
+        }
+        return Undefined.INSTANCE;
+    }
+
+    //Map.prototype.get()
+    public static Object map_get(Scope scope, List<Object> args, JsMap parent) {
+        return parent.get(args.getFirst());
+    }
+
+    //Map.prototype.has()
+    public static Boolean map_has(Scope scope, List<Object> args, JsMap parent) {
+        return parent.has(args.getFirst());
+    }
+
+    //Map.prototype.keys()
+    public static List<Object> map_keys(Scope scope, List<Object> args, JsMap parent) {
+        List<Object> result = new JsArray(parent.size());
+        parent.entries().forEach(e -> result.add(e.getKey()));
+        return result;
+    }
+
+    //Map.prototype.set()
+    public static JsMap map_set(Scope scope, List<Object> args, JsMap parent) {
+        parent.set(args.getFirst(), args.get(1));
+        return parent;
+    }
+
+    //Map.prototype.values()
+    public static List<Object> map_values(Scope scope, List<Object> args, JsMap parent) {
+        List<Object> result = new JsArray(parent.size());
+        parent.entries().forEach(e -> result.add(e.getValue()));
+        return result;
+    }
+
+    //ArrayBuffer and typed array functions
+
+    //ArrayBuffer()
+    public static JsArrayBuffer arrayBuffer(Scope scope, List<Object> args) {
+        try {
+            return JsArrayBuffer.allocate(JsTypes.toNumber(args.getFirst()).intValue());
+        } catch (IllegalArgumentException e) {
+            throw new AstNodes.ExecuteScriptException(e.getMessage(), null);
+        }
+    }
+
+    //ArrayBuffer.prototype.slice()
+    public static JsArrayBuffer arrayBuffer_slice(Scope scope, List<Object> args, JsArrayBuffer parent) {
+        int length = parent.byteLength();
+        int begin = relativeIndex(args.getFirst(), 0, length);
+        int end = relativeIndex(args.get(1), length, length);
+        JsArrayBuffer result = JsArrayBuffer.allocate(Math.max(0, end - begin));
+        result.buffer().put(0, parent.buffer(), begin, result.byteLength());
+        return result;
+    }
+
+    //Int32Array(), Float64Array(), Uint8Array()
+    public static JsTypedArray typedArray(JsTypedArray.Kind kind, List<Object> args) {
+        Object source = args.getFirst();
+        try {
+            if (source instanceof JsArrayBuffer buffer) {
+                int byteOffset = args.get(1) instanceof Number n ? n.intValue() : 0;
+                int length = args.get(2) instanceof Number n ? n.intValue()
+                                                             : (buffer.byteLength() - byteOffset) / kind.bytes;
+                return new JsTypedArray(kind, buffer, byteOffset, length);
+            }
+            if (source instanceof List<?> list) {
+                JsTypedArray array = JsTypedArray.allocate(kind, list.size());
+                for (int i = 0; i < list.size(); i++) {
+                    array.set(i, list.get(i));
+                }
+                return array;
+            }
+            int length = source instanceof Number || source instanceof String ? JsTypes.toNumber(source).intValue() : 0;
+            return JsTypedArray.allocate(kind, length);
+        } catch (IllegalArgumentException e) {
+            throw new AstNodes.ExecuteScriptException(e.getMessage(), null);
+        }
+    }
+
+    //TypedArray.prototype.set()
+    public static Object typedArray_set(Scope scope, List<Object> args, JsTypedArray parent) {
+        if (!(args.getFirst() instanceof List<?> source)) {
+            return Undefined.INSTANCE;
+        }
+        int offset = args.get(1) instanceof Number n ? n.intValue() : 0;
+        if (offset < 0 || offset + source.size() > parent.size()) {
+            throw new AstNodes.ExecuteScriptException("Source is too large for " + parent.kind().typeName, null);
+        }
+        // a source of the same buffer is copied first
+        Object[] values = source.toArray();
+        for (int i = 0; i < values.length; i++) {
+            parent.set(offset + i, values[i]);
+        }
+        return Undefined.INSTANCE;
+    }
+
+    //TypedArray.prototype.subarray()
+    public static JsTypedArray typedArray_subarray(Scope scope, List<Object> args, JsTypedArray parent) {
+        int begin = relativeIndex(args.getFirst(), 0, parent.size());
+        int end = relativeIndex(args.get(1), parent.size(), parent.size());
+        return parent.subarray(begin, Math.max(begin, end));
+    }
+
+    // index from an argument, negative counts from the end, clamped to 0..length
+    private static int relativeIndex(Object arg, int defaultValue, int length) {
+        if (!(arg instanceof Number n)) {
+            return defaultValue;
+        }
+        int index = n.intValue();
+        if (index < 0) {
+            index += length;
+        }
+        return Math.max(0, Math.min(length, index));
+    }
+
     //Array methods
 
     public static boolean array_isArray(Scope scope, List<Object> args) {
@@ -611,7 +1089,7 @@ public class JsSdk {
 
     //Array.prototype.concat()
     public static List<Object> array_concat(Scope scope, List<Object> args, List<Object> parent) {
-        List<Object> result = new ArrayList<>(parent);
+        List<Object> result = new JsArray(parent);
 
         for (Object arg : args) {
             if (arg instanceof List) {
@@ -674,9 +1152,10 @@ public class JsSdk {
             return false;
         }
 
+        JsCallback callback = new JsCallback(callbackFn, scope);
         for (int i = 0; i < parent.size(); i++) {
             Object value = parent.get(i);
-            Object result = callbackFn.exec(scope, Arrays.asList(value, i, parent));
+            Object result = callback.call(value, i, parent);
             if (!JsTypes.toBoolean(result)) {
                 return false;
             }
@@ -718,18 +1197,19 @@ public class JsSdk {
     //Array.prototype.filter()
     public static List<Object> array_filter(Scope scope, List<Object> args, List<Object> parent) {
         if (args.isEmpty()) {
-            return new ArrayList<>();
+            return new JsArray();
         }
 
         if (!(args.getFirst() instanceof JsFunction callbackFn)) {
-            return new ArrayList<>();
+            return new JsArray();
         }
 
-        List<Object> result = new ArrayList<>();
+        List<Object> result = new JsArray();
 
+        JsCallback callback = new JsCallback(callbackFn, scope);
         for (int i = 0; i < parent.size(); i++) {
             Object value = parent.get(i);
-            Object filterResult = callbackFn.exec(scope, Arrays.asList(value, i, parent));
+            Object filterResult = callback.call(value, i, parent);
 
             if (JsTypes.toBoolean(filterResult)) {
                 result.add(value);
@@ -749,9 +1229,10 @@ public class JsSdk {
             return null;
         }
 
+        JsCallback callback = new JsCallback(callbackFn, scope);
         for (int i = 0; i < parent.size(); i++) {
             Object value = parent.get(i);
-            Object result = callbackFn.exec(scope, Arrays.asList(value, i, parent));
+            Object result = callback.call(value, i, parent);
 
             if (JsTypes.toBoolean(result)) {
                 return value;
@@ -771,9 +1252,10 @@ public class JsSdk {
             return -1;
         }
 
+        JsCallback callback = new JsCallback(callbackFn, scope);
         for (int i = 0; i < parent.size(); i++) {
             Object value = parent.get(i);
-            Object result = callbackFn.exec(scope, Arrays.asList(value, i, parent));
+            Object result = callback.call(value, i, parent);
 
             if (JsTypes.toBoolean(result)) {
                 return i;
@@ -793,9 +1275,10 @@ public class JsSdk {
             return null;
         }
 
+        JsCallback callback = new JsCallback(callbackFn, scope);
         for (int i = parent.size() - 1; i >= 0; i--) {
             Object value = parent.get(i);
-            Object result = callbackFn.exec(scope, Arrays.asList(value, i, parent));
+            Object result = callback.call(value, i, parent);
 
             if (JsTypes.toBoolean(result)) {
                 return value;
@@ -815,9 +1298,10 @@ public class JsSdk {
             return -1;
         }
 
+        JsCallback callback = new JsCallback(callbackFn, scope);
         for (int i = parent.size() - 1; i >= 0; i--) {
             Object value = parent.get(i);
-            Object result = callbackFn.exec(scope, Arrays.asList(value, i, parent));
+            Object result = callback.call(value, i, parent);
 
             if (JsTypes.toBoolean(result)) {
                 return i;
@@ -829,7 +1313,7 @@ public class JsSdk {
 
     //Array.prototype.flat()
     public static List<Object> array_flat(Scope scope, List<Object> args, List<Object> parent) {
-        List<Object> newArray = new ArrayList<>();
+        List<Object> newArray = new JsArray();
         int depth = args.isEmpty() ? 1 : JsTypes.toNumber(args.getFirst()).intValue();
         flattenArray(newArray, parent, depth);
         return newArray;
@@ -848,18 +1332,19 @@ public class JsSdk {
     //Array.prototype.flatMap()
     public static List<Object> array_flatMap(Scope scope, List<Object> args, List<Object> parent) {
         if (args.isEmpty()) {
-            return new ArrayList<>(parent);
+            return new JsArray(parent);
         }
 
         if (!(args.getFirst() instanceof JsFunction callbackFn)) {
-            return new ArrayList<>(parent);
+            return new JsArray(parent);
         }
 
-        List<Object> result = new ArrayList<>();
+        List<Object> result = new JsArray();
 
+        JsCallback callback = new JsCallback(callbackFn, scope);
         for (int i = 0; i < parent.size(); i++) {
             Object value = parent.get(i);
-            Object mappedValue = callbackFn.exec(scope, Arrays.asList(value, i, parent));
+            Object mappedValue = callback.call(value, i, parent);
 
             if (mappedValue instanceof List) {
                 result.addAll((List<Object>) mappedValue);
@@ -874,9 +1359,10 @@ public class JsSdk {
     //Array.prototype.forEach()
     public static Object array_forEach(Scope scope, List<Object> args, List<Object> parent) {
         if (!args.isEmpty() && args.getFirst() instanceof JsFunction callbackFn) {
+            JsCallback callback = new JsCallback(callbackFn, scope);
             for (int i = 0; i < parent.size(); i++) {
                 Object value = parent.get(i);
-                callbackFn.exec(scope, Arrays.asList(value, i, parent));
+                callback.call(value, i, parent);
             }
         }
         return null;
@@ -897,6 +1383,9 @@ public class JsSdk {
         if (fromIndex < 0) {
             fromIndex = 0;
         }
+        if (parent instanceof JsArray array) {
+            return array.indexOf(searchElement, fromIndex) >= 0;
+        }
 
         for (int i = fromIndex; i < parent.size(); i++) {
             if (Objects.equals(parent.get(i), searchElement)) {
@@ -922,6 +1411,9 @@ public class JsSdk {
         if (fromIndex < 0) {
             fromIndex = 0;
         }
+        if (parent instanceof JsArray array) {
+            return array.indexOf(searchElement, fromIndex);
+        }
 
         for (int i = fromIndex; i < parent.size(); i++) {
             if (Objects.equals(parent.get(i), searchElement)) {
@@ -936,7 +1428,18 @@ public class JsSdk {
     public static String array_join(Scope scope, List<Object> args, List<Object> parent) {
         String separator = args.isEmpty() ? "," : JsTypes.toString(args.getFirst());
 
-        return parent.stream().map(JsTypes::toString).collect(Collectors.joining(separator));
+        StringBuilder sb = new StringBuilder(parent.size() * 8);
+        if (parent instanceof JsArray array) {
+            array.join(sb, separator);
+            return sb.toString();
+        }
+        for (int i = 0; i < parent.size(); i++) {
+            if (i > 0) {
+                sb.append(separator);
+            }
+            JsTypes.appendString(sb, parent.get(i));
+        }
+        return sb.toString();
     }
 
     //Array.prototype.lastIndexOf()
@@ -946,7 +1449,8 @@ public class JsSdk {
         }
 
         Object searchElement = args.getFirst();
-        int fromIndex = args.size() > 1 ? JsTypes.toNumber(args.get(1)).intValue() : parent.size() - 1;
+        int fromIndex = args.size() > 1 && args.get(1) != Undefined.INSTANCE ? JsTypes.toNumber(args.get(1)).intValue()
+                                                                             : parent.size() - 1;
 
         if (fromIndex < 0) {
             fromIndex = parent.size() + fromIndex;
@@ -957,6 +1461,9 @@ public class JsSdk {
         if (fromIndex < 0) {
             return -1;
         }
+        if (parent instanceof JsArray array) {
+            return array.lastIndexOf(searchElement, fromIndex);
+        }
 
         for (int i = fromIndex; i >= 0; i--) {
             if (Objects.equals(parent.get(i), searchElement)) {
@@ -970,18 +1477,21 @@ public class JsSdk {
     //Array.prototype.map()
     public static List<Object> array_map(Scope scope, List<Object> args, List<Object> parent) {
         if (args.isEmpty()) {
-            return new ArrayList<>();
+            return new JsArray();
         }
 
         if (!(args.getFirst() instanceof JsFunction callbackFn)) {
-            return new ArrayList<>();
+            return new JsArray();
         }
 
-        List<Object> result = new ArrayList<>(parent.size());
-
+        JsCallback callback = new JsCallback(callbackFn, scope);
+        if (parent instanceof JsArray array) {
+            return array.map(callback);
+        }
+        List<Object> result = new JsArray(parent.size());
         for (int i = 0; i < parent.size(); i++) {
             Object value = parent.get(i);
-            Object mappedValue = callbackFn.exec(scope, Arrays.asList(value, i, parent));
+            Object mappedValue = callback.call(value, i, parent);
             result.add(mappedValue);
         }
 
@@ -1016,9 +1526,13 @@ public class JsSdk {
 
         int startIndex = args.size() > 1 ? 0 : 1;
 
+        JsCallback callback = new JsCallback(callbackFn, scope);
+        if (parent instanceof JsArray array) {
+            return array.reduce(callback, accumulator, startIndex);
+        }
         for (int i = startIndex; i < parent.size(); i++) {
             Object currentValue = parent.get(i);
-            accumulator = callbackFn.exec(scope, Arrays.asList(accumulator, currentValue, i, parent));
+            accumulator = callback.call(accumulator, currentValue, i, parent);
         }
 
         return accumulator;
@@ -1041,9 +1555,10 @@ public class JsSdk {
 
         int startIndex = args.size() > 1 ? parent.size() - 1 : parent.size() - 2;
 
+        JsCallback callback = new JsCallback(callbackFn, scope);
         for (int i = startIndex; i >= 0; i--) {
             Object currentValue = parent.get(i);
-            accumulator = callbackFn.exec(scope, Arrays.asList(accumulator, currentValue, i, parent));
+            accumulator = callback.call(accumulator, currentValue, i, parent);
         }
 
         return accumulator;
@@ -1076,10 +1591,10 @@ public class JsSdk {
         end = Math.min(parent.size(), end);
 
         if (start >= end) {
-            return new ArrayList<>();
+            return new JsArray();
         }
 
-        return new ArrayList<>(parent.subList(start, end));
+        return new JsArray(parent.subList(start, end));
     }
 
     //Array.prototype.some()
@@ -1095,9 +1610,10 @@ public class JsSdk {
             return false;
         }
 
+        JsCallback callback = new JsCallback(callbackFn, scope);
         for (int i = 0; i < parent.size(); i++) {
             Object value = parent.get(i);
-            Object result = callbackFn.exec(scope, Arrays.asList(value, i, parent));
+            Object result = callback.call(value, i, parent);
 
             if (JsTypes.toBoolean(result)) {
                 return true;
@@ -1113,24 +1629,83 @@ public class JsSdk {
             return parent;
         }
 
-        if (args.isEmpty()) {
-            // Default sorting (convert to strings)
-            parent.sort(Comparator.comparing(JsTypes::toString));
-        } else if (args.getFirst() instanceof JsFunction callbackFn) {
+        if (!args.isEmpty() && args.getFirst() instanceof JsFunction callbackFn) {
+            int order = callbackFn.numericOrder();
+            if (order != 0 && sortNumbers(parent, order)) {
+                return parent;
+            }
             // Custom comparator function
+            JsCallback compareFn = new JsCallback(callbackFn, scope);
             parent.sort((a, b) -> {
-                Object result = callbackFn.exec(scope, Arrays.asList(a, b));
-                return JsTypes.toNumber(result).intValue();
+                double result = JsTypes.toNumber(compareFn.call(a, b)).doubleValue();
+                return result < 0 ? -1 : result > 0 ? 1 : 0;
             });
+        } else if (parent instanceof JsTypedArray typedArray) {
+            // a typed array sorts by the numeric values
+            typedArray.sortValues();
+        } else {
+            // Default sorting compares strings, every element is converted once
+            SortKey[] keys = new SortKey[parent.size()];
+            for (int i = 0; i < keys.length; i++) {
+                Object value = parent.get(i);
+                keys[i] = new SortKey(JsTypes.toString(value), value);
+            }
+            Arrays.sort(keys, Comparator.comparing(SortKey::key));
+            for (int i = 0; i < keys.length; i++) {
+                parent.set(i, keys[i].value());
+            }
         }
 
         return parent;
     }
 
+    private record SortKey(String key, Object value) {
+    }
+
+    // sort by (a, b) => a - b or b - a without calls of the function, only when every element is a number
+    private static boolean sortNumbers(List<Object> list, int order) {
+        Object[] values = list.toArray();
+        boolean ints = true;
+        for (Object value : values) {
+            if (value instanceof Integer) {
+                continue;
+            }
+            ints = false;
+            // NaN and -0 compare differently in Java
+            if (!(value instanceof Number number) || Double.isNaN(number.doubleValue()) ||
+                    Double.doubleToRawLongBits(number.doubleValue()) == Long.MIN_VALUE) {
+                return false;
+            }
+        }
+        if (ints) {
+            int[] numbers = new int[values.length];
+            for (int i = 0; i < numbers.length; i++) {
+                numbers[i] = (Integer) values[i];
+            }
+            Arrays.sort(numbers);
+            for (int i = 0; i < numbers.length; i++) {
+                list.set(i, numbers[order > 0 ? i : numbers.length - 1 - i]);
+            }
+            return true;
+        }
+        Comparator<Object> ascending = Comparator.comparingDouble(v -> ((Number) v).doubleValue());
+        Arrays.sort(values, order > 0 ? ascending : ascending.reversed());
+        for (int i = 0; i < values.length; i++) {
+            list.set(i, values[i]);
+        }
+        return true;
+    }
+
+    //Array.prototype.toSorted()
+    public static List<Object> array_toSorted(Scope scope, List<Object> args, List<Object> parent) {
+        List<Object> copy = parent instanceof JsTypedArray typedArray ? typedArray.copy() : new JsArray(parent);
+        return array_sort(scope, args, copy);
+    }
+
     //Array.prototype.splice()
     public static List<Object> array_splice(Scope scope, List<Object> args, List<Object> parent) {
         if (args.isEmpty()) {
-            return new ArrayList<>();
+            return new JsArray();
         }
 
         int start = JsTypes.toNumber(args.getFirst()).intValue();
@@ -1143,7 +1718,7 @@ public class JsSdk {
         deleteCount = Math.max(0, Math.min(parent.size() - start, deleteCount));
 
         // Get the elements to be removed
-        List<Object> removed = new ArrayList<>();
+        List<Object> removed = new JsArray();
         for (int i = 0; i < deleteCount; i++) {
             removed.add(parent.get(start));
             parent.remove(start);
@@ -1167,10 +1742,15 @@ public class JsSdk {
         return parent.size();
     }
 
+    //Array.prototype.values()
+    public static JsIterator array_values(Scope scope, List<Object> args, List<Object> parent) {
+        return JsIterator.of(parent);
+    }
+
     //Array.prototype.with()
     public static List<Object> array_with(Scope scope, List<Object> args, List<Object> parent) {
         if (args.size() < 2) {
-            return new ArrayList<>(parent);
+            return new JsArray(parent);
         }
 
         int index = JsTypes.toNumber(args.getFirst()).intValue();
@@ -1182,11 +1762,11 @@ public class JsSdk {
 
         // If index is out of bounds, return a copy of the original array
         if (index < 0 || index >= parent.size()) {
-            return new ArrayList<>(parent);
+            return new JsArray(parent);
         }
 
         // Create a new array with the updated value
-        List<Object> result = new ArrayList<>(parent);
+        List<Object> result = new JsArray(parent);
         result.set(index, value);
         return result;
     }
@@ -1221,29 +1801,29 @@ public class JsSdk {
     }
 
     //Object.entries()
-    public static List<List<Object>> object_entries(Scope scope, List<Object> args) {
+    public static List<Object> object_entries(Scope scope, List<Object> args) {
         if (args.isEmpty() || !(args.getFirst() instanceof Map)) {
-            return List.of();
+            return new JsArray();
         }
 
         Map<String, Object> obj = (Map<String, Object>) args.getFirst();
-        List<List<Object>> entries = new ArrayList<>();
+        List<Object> entries = new JsArray();
 
         for (Map.Entry<String, Object> entry : obj.entrySet()) {
-            entries.add(Arrays.asList(entry.getKey(), entry.getValue()));
+            entries.add(new JsArray(Arrays.asList(entry.getKey(), entry.getValue())));
         }
 
         return entries;
     }
 
     //Object.getOwnPropertyNames()
-    public static List<String> object_getOwnPropertyNames(Scope scope, List<Object> args) {
+    public static List<Object> object_getOwnPropertyNames(Scope scope, List<Object> args) {
         if (args.isEmpty() || !(args.getFirst() instanceof Map)) {
-            return List.of();
+            return new JsArray();
         }
 
         Map<String, Object> obj = (Map<String, Object>) args.getFirst();
-        return new ArrayList<>(obj.keySet());
+        return new JsArray(obj.keySet());
     }
 
     //Object.groupBy()
@@ -1255,13 +1835,14 @@ public class JsSdk {
         List<Object> items = (List<Object>) args.getFirst();
         Map<String, List<Object>> result = new HashMap<>();
 
+        JsCallback callback = new JsCallback(callbackFn, scope);
         for (int i = 0; i < items.size(); i++) {
             Object item = items.get(i);
-            Object key = callbackFn.exec(scope, Arrays.asList(item, i, items));
+            Object key = callback.call(item, i, items);
             String keyString = JsTypes.toString(key);
 
             if (!result.containsKey(keyString)) {
-                result.put(keyString, new ArrayList<>());
+                result.put(keyString, new JsArray());
             }
 
             result.get(keyString).add(item);
@@ -1279,30 +1860,30 @@ public class JsSdk {
     }
 
     //Object.keys()
-    public static List<String> object_keys(Scope scope, List<Object> args) {
+    public static List<Object> object_keys(Scope scope, List<Object> args) {
         if (args.isEmpty() || !(args.getFirst() instanceof Map)) {
-            return List.of();
+            return new JsArray();
         }
 
         Map<String, Object> obj = (Map<String, Object>) args.getFirst();
-        return new ArrayList<>(obj.keySet());
+        return new JsArray(obj.keySet());
     }
 
     //Object.values()
     public static List<Object> object_values(Scope scope, List<Object> args) {
         if (args.isEmpty() || !(args.getFirst() instanceof Map)) {
-            return List.of();
+            return new JsArray();
         }
 
         Map<String, Object> obj = (Map<String, Object>) args.getFirst();
-        return new ArrayList<>(obj.values());
+        return new JsArray(obj.values());
     }
 
     // Function.prototype.apply()
     public static Object function_apply(Scope scope, List<Object> args, JsFunction fn) {
         Object thisArg = args.getFirst();
-        List<Object> fnArgs =
-                args.size() > 1 && args.get(1) instanceof List ? (List<Object>) args.get(1) : new ArrayList<>();
+        List<Object> fnArgs = args.size() > 1 && args.get(1) instanceof List<?> list ? new ArrayList<>(list)
+                                                                                    : new ArrayList<>();
         while (fnArgs.size() < fn.params.size()) {
             fnArgs.add(Undefined.INSTANCE);
         }
@@ -1312,7 +1893,7 @@ public class JsSdk {
     // Function.prototype.call()
     public static Object function_call(Scope scope, List<Object> args, JsFunction fn) {
         Object thisArg = args.isEmpty() ? null : args.getFirst();
-        List<Object> fnArgs = args.size() > 1 ? args.subList(1, args.size()) : new ArrayList<>();
+        List<Object> fnArgs = args.size() > 1 ? new ArrayList<>(args.subList(1, args.size())) : new ArrayList<>();
         while (fnArgs.size() < fn.params.size()) {
             fnArgs.add(Undefined.INSTANCE);
         }
@@ -1332,4 +1913,66 @@ public class JsSdk {
         return JsonTokenizer.stringify(scope, args.getFirst());
     }
 
+    // CSV functions, options are {delimiter: ",", header: false, newline: "\r\n"}
+
+    private static Object csvOption(Object options, String name, Object defaultValue) {
+        Object value = options instanceof Map<?, ?> map ? map.get(name) : null;
+        return value != null && value != Undefined.INSTANCE ? value : defaultValue;
+    }
+
+    private static char csvDelimiter(Object options) {
+        String delimiter = JsTypes.toString(csvOption(options, "delimiter", ","));
+        if (delimiter.length() != 1) {
+            throw new AstNodes.ExecuteScriptException("CSV delimiter must be one character: " + delimiter, null);
+        }
+        return delimiter.charAt(0);
+    }
+
+    private static CsvTokenizer csvTokenizer(Object source, Object options) {
+        Reader reader = switch (source) {
+            case String str -> new StringReader(str);
+            case Reader r -> r;
+            case InputStream in -> new InputStreamReader(in, StandardCharsets.UTF_8);
+            case null, default -> throw new AstNodes.ExecuteScriptException(
+                    "CSV source must be a string or a stream, not " + JsTypes.typeof(source), null);
+        };
+        return new CsvTokenizer(reader, csvDelimiter(options),
+                                JsTypes.toBoolean(csvOption(options, "header", false)));
+    }
+
+    // CSV.parse()
+    public static List<Object> csv_parse(Scope scope, List<Object> args) {
+        CsvTokenizer tokenizer = csvTokenizer(args.getFirst(), args.get(1));
+        List<Object> rows = new JsArray();
+        for (Object row = tokenizer.next(); row != null; row = tokenizer.next()) {
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    // CSV.forEach(), rows are read one by one and the callback returning false stops the reading
+    public static Integer csv_forEach(Scope scope, List<Object> args) {
+        CsvTokenizer tokenizer = csvTokenizer(args.getFirst(), args.get(2));
+        if (!(args.get(1) instanceof JsFunction callbackFn)) {
+            throw new AstNodes.ExecuteScriptException("CSV.forEach callback is not a function", null);
+        }
+        JsCallback callback = new JsCallback(callbackFn, scope);
+        int index = 0;
+        for (Object row = tokenizer.next(); row != null; row = tokenizer.next()) {
+            if (Boolean.FALSE.equals(callback.call(row, index++))) {
+                break;
+            }
+        }
+        return index;
+    }
+
+    // CSV.stringify()
+    public static String csv_stringify(Scope scope, List<Object> args) {
+        if (!(args.getFirst() instanceof List<?> rows)) {
+            throw new AstNodes.ExecuteScriptException("CSV.stringify rows must be an array", null);
+        }
+        Object options = args.get(1);
+        return CsvTokenizer.stringify(rows, csvDelimiter(options),
+                                      JsTypes.toString(csvOption(options, "newline", "\r\n")));
+    }
 }
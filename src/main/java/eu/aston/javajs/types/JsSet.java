@@ -0,0 +1,60 @@
+package eu.aston.javajs.types;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Set of values created by the Set() function. Values are kept in insertion order and compared with SameValueZero, so
+ * 1 and 1.0 are one value and objects are compared by identity.
+ */
+public final class JsSet implements IJsType {
+    private final JsHashTable table = new JsHashTable(false);
+
+    public int size() {
+        return table.size();
+    }
+
+    public boolean has(Object value) {
+        return table.find(value) >= 0;
+    }
+
+    public void add(Object value) {
+        table.put(value, null);
+    }
+
+    public boolean delete(Object value) {
+        return table.remove(value);
+    }
+
+    public void clear() {
+        table.clear();
+    }
+
+    /**
+     * Snapshot of the values, a callback may change the set while the snapshot is iterated.
+     */
+    public List<Object> values() {
+        List<Object> result = new ArrayList<>(table.size());
+        for (int i = 0; i < table.limit(); i++) {
+            if (!table.isRemoved(i)) {
+                result.add(table.key(i));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean toBoolean() {
+        return true;
+    }
+
+    @Override
+    public String typeOf() {
+        return "object";
+    }
+
+    @Override
+    public String toString() {
+        return "[object Set]";
+    }
+}
@@ -0,0 +1,176 @@
+package eu.aston.javajs.types;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+import eu.aston.javajs.AstNodes;
+
+/**
+ * Fixed length numeric view of an {@link JsArrayBuffer}. Elements are read and written in the buffer memory, so views
+ * of one buffer see the writes of each other. Scripts index it like an array and array functions work on it.
+ */
+public final class JsTypedArray extends AbstractList<Object> implements RandomAccess {
+
+    public enum Kind {
+        INT32("Int32Array", 4),
+        FLOAT64("Float64Array", 8),
+        UINT8("Uint8Array", 1);
+
+        public final String typeName;
+        public final int bytes;
+
+        Kind(String typeName, int bytes) {
+            this.typeName = typeName;
+            this.bytes = bytes;
+        }
+    }
+
+    private final Kind kind;
+    private final JsArrayBuffer buffer;
+    private final ByteBuffer data;
+    private final int byteOffset;
+    private final int length;
+
+    public JsTypedArray(Kind kind, JsArrayBuffer buffer, int byteOffset, int length) {
+        if (byteOffset < 0 || byteOffset % kind.bytes != 0) {
+            throw new IllegalArgumentException(
+                    "Start offset of " + kind.typeName + " should be a multiple of " + kind.bytes);
+        }
+        if (length < 0 || byteOffset + (long) length * kind.bytes > buffer.byteLength()) {
+            throw new IllegalArgumentException("Invalid " + kind.typeName + " length " + length);
+        }
+        this.kind = kind;
+        this.buffer = buffer;
+        this.data = buffer.buffer();
+        this.byteOffset = byteOffset;
+        this.length = length;
+    }
+
+    /**
+     * View of a whole host buffer without a copy.
+     */
+    public JsTypedArray(Kind kind, ByteBuffer buffer) {
+        this(kind, new JsArrayBuffer(buffer), 0, buffer.remaining() / kind.bytes);
+    }
+
+    public static JsTypedArray allocate(Kind kind, int length) {
+        if (length < 0 || (long) length * kind.bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid " + kind.typeName + " length " + length);
+        }
+        return new JsTypedArray(kind, JsArrayBuffer.allocate(length * kind.bytes), 0, length);
+    }
+
+    public Kind kind() {
+        return kind;
+    }
+
+    public JsArrayBuffer buffer() {
+        return buffer;
+    }
+
+    public int byteOffset() {
+        return byteOffset;
+    }
+
+    public int byteLength() {
+        return length * kind.bytes;
+    }
+
+    public JsTypedArray subarray(int begin, int end) {
+        return new JsTypedArray(kind, buffer, byteOffset + begin * kind.bytes, Math.max(0, end - begin));
+    }
+
+    @Override
+    public int size() {
+        return length;
+    }
+
+    @Override
+    public Object get(int index) {
+        int position = position(index);
+        return switch (kind) {
+            case INT32 -> data.getInt(position);
+            case FLOAT64 -> data.getDouble(position);
+            case UINT8 -> data.get(position) & 0xff;
+        };
+    }
+
+    /**
+     * Stores the number value of the element, integer kinds wrap it like JavaScript does.
+     */
+    @Override
+    public Object set(int index, Object value) {
+        Object old = get(index);
+        int position = position(index);
+        Number number = JsTypes.toNumber(value);
+        switch (kind) {
+            case INT32 -> data.putInt(position, toInt32(number));
+            case FLOAT64 -> data.putDouble(position, number.doubleValue());
+            case UINT8 -> data.put(position, (byte) toInt32(number));
+        }
+        return old;
+    }
+
+    /**
+     * Sorts the elements by their numeric value, the default order of a typed array sort.
+     */
+    public void sortValues() {
+        if (kind == Kind.FLOAT64) {
+            double[] values = new double[length];
+            for (int i = 0; i < length; i++) {
+                values[i] = data.getDouble(position(i));
+            }
+            Arrays.sort(values);
+            for (int i = 0; i < length; i++) {
+                data.putDouble(position(i), values[i]);
+            }
+            return;
+        }
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = (Integer) get(i);
+        }
+        Arrays.sort(values);
+        for (int i = 0; i < length; i++) {
+            set(i, values[i]);
+        }
+    }
+
+    /**
+     * Copy of the elements in a new buffer of the same kind.
+     */
+    public JsTypedArray copy() {
+        JsTypedArray copy = allocate(kind, length);
+        for (int i = 0; i < length; i++) {
+            copy.set(i, get(i));
+        }
+        return copy;
+    }
+
+    private int position(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+        }
+        return byteOffset + index * kind.bytes;
+    }
+
+    // modulo 2^32 like ToInt32, a double out of the long range would saturate in longValue()
+    private static int toInt32(Number number) {
+        if (number instanceof Double d) {
+            return d.isNaN() || d.isInfinite() ? 0 : (int) (long) (d % 4294967296.0);
+        }
+        return (int) number.longValue();
+    }
+
+    @Override
+    public void add(int index, Object element) {
+        throw new AstNodes.ExecuteScriptException(kind.typeName + " has a fixed length", null);
+    }
+
+    @Override
+    public Object remove(int index) {
+        throw new AstNodes.ExecuteScriptException(kind.typeName + " has a fixed length", null);
+    }
+}
@@ -2,7 +2,6 @@ package eu.aston.javajs.types;
 
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 public class JsTypes {
 
@@ -66,7 +65,36 @@ public class JsTypes {
     }
 
     static String toStringList(List<?> value) {
-        return value.stream().map(JsTypes::toString).collect(Collectors.joining(","));
+        StringBuilder sb = new StringBuilder(value.size() * 8);
+        appendList(sb, value);
+        return sb.toString();
+    }
+
+    /**
+     * Appends the string value like {@link #toString(Object)}, numbers, booleans and a {@link JsRope} without an
+     * intermediate string.
+     */
+    public static void appendString(StringBuilder sb, Object value) {
+        switch (value) {
+            case String s -> sb.append(s);
+            case JsRope r -> r.appendTo(sb);
+            case CharSequence s -> sb.append(s);
+            case Integer i -> sb.append(i.intValue());
+            case Long l -> sb.append(l.longValue());
+            case Double d -> sb.append(d.doubleValue());
+            case Boolean b -> sb.append(b.booleanValue());
+            case List<?> l -> appendList(sb, l);
+            case null, default -> sb.append(toString(value));
+        }
+    }
+
+    private static void appendList(StringBuilder sb, List<?> value) {
+        for (int i = 0; i < value.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            appendString(sb, value.get(i));
+        }
     }
 
     public static Object unaryMinus(Object value) {
@@ -88,7 +116,7 @@ public class JsTypes {
             case null -> "null";
             case Boolean ignore -> "boolean";
             case Number ignore -> "number";
-            case String ignore -> "string";
+            case CharSequence ignore -> "string";
             case List<?> ignore -> "array";
             case Map<?, ?> ignore -> "object";
             case IJsType t -> t.typeOf();
@@ -123,6 +151,20 @@ public class JsTypes {
                     case '\'' -> result.append('\'');
                     case '\"' -> result.append('\"');
                     case '0' -> result.append('\0');
+                    case '`' -> result.append('`');
+                    case 'x' -> {
+                        // Handle hex escape sequence \xXX
+                        if (i + 2 < str.length()) {
+                            try {
+                                result.append((char) Integer.parseInt(str.substring(i + 1, i + 3), 16));
+                                i += 2; // Skip the 2 hex digits
+                            } catch (NumberFormatException e) {
+                                result.append('\\').append('x');
+                            }
+                        } else {
+                            result.append('\\').append('x');
+                        }
+                    }
                     case 'u' -> {
                         // Handle Unicode escape sequence \\uXXXX
                         if (i + 4 < str.length()) {
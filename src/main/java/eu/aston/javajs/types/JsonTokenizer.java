@@ -1,7 +1,6 @@
 package eu.aston.javajs.types;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -141,8 +140,9 @@ public class JsonTokenizer {
         }
     }
 
-    private HashMap<String, Object> parseObject() {
-        HashMap<String, Object> map = new HashMap<>();
+    // keys keep the order of the text
+    private LinkedHashMap<String, Object> parseObject() {
+        LinkedHashMap<String, Object> map = new LinkedHashMap<>();
 
         advance(); // Skip the opening brace
         skipWhitespace();
@@ -189,7 +189,7 @@ public class JsonTokenizer {
     }
 
     private List<Object> parseArray() {
-        List<Object> list = new ArrayList<>();
+        List<Object> list = new JsArray();
 
         advance(); // Skip the opening bracket
         skipWhitespace();
@@ -266,6 +266,9 @@ public class JsonTokenizer {
             stringifyArray((List<?>) value, sb);
         } else if (value instanceof Map) {
             stringifyObject((Map<?, ?>) value, sb);
+        } else if (value instanceof JsSet || value instanceof JsMap) {
+            // like JavaScript, a set or a map has no own enumerable properties
+            sb.append("{}");
         } else {
             sb.append("null");
             return false;
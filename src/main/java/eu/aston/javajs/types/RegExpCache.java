@@ -0,0 +1,93 @@
+package eu.aston.javajs.types;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Bounded, thread-safe LRU cache of compiled regular expressions keyed by pattern source and flags.
+ * Scripts call String.match/replace/split with the same patterns for every record, so compiling
+ * once per distinct pattern keeps Pattern.compile out of the hot path. An invalid pattern is cached
+ * as its syntax error, so a bad user pattern is not compiled again for every record either.
+ */
+public class RegExpCache {
+
+    public static final RegExpCache INSTANCE = new RegExpCache(512);
+
+    // values are JsRegExp or PatternSyntaxException, guarded by the map itself
+    private final LinkedHashMap<String, Object> cache;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public RegExpCache(int maxSize) {
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+                if (size() > maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public JsRegExp get(String source, String flags) {
+        String key = flags + "/" + source;
+        Object entry;
+        synchronized (cache) {
+            entry = cache.get(key);
+        }
+        if (entry != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            // compiled outside the lock, two threads may compile one pattern but only one is kept
+            entry = compile(source, flags);
+            synchronized (cache) {
+                Object prev = cache.putIfAbsent(key, entry);
+                if (prev != null) {
+                    entry = prev;
+                }
+            }
+        }
+        if (entry instanceof PatternSyntaxException e) {
+            throw new PatternSyntaxException(e.getDescription(), e.getPattern(), e.getIndex());
+        }
+        return (JsRegExp) entry;
+    }
+
+    private static Object compile(String source, String flags) {
+        try {
+            return new JsRegExp(source, flags);
+        } catch (PatternSyntaxException e) {
+            return e;
+        }
+    }
+
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    public Stats stats() {
+        int size;
+        synchronized (cache) {
+            size = cache.size();
+        }
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), size);
+    }
+
+    public record Stats(long hits, long misses, long evictions, int size) {
+        public double hitRate() {
+            long total = hits + misses;
+            return total > 0 ? (double) hits / total : 0.0;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package eu.aston.javajs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import eu.aston.javajs.AstNodes.ASTNode;
+import eu.aston.javajs.AstNodes.ProgramNode;
+import eu.aston.javajs.types.JsSdk;
+import eu.aston.javajs.types.JsTypes;
+import org.junit.jupiter.api.Test;
+
+public class AstOptimizerTest {
+
+    private static String run(ASTNode program) {
+        Scope rootScope = JsSdk.createRootScope();
+        rootScope.setValue("result", null);
+        program.exec(rootScope);
+        return JsTypes.toString(rootScope.getValue("result"));
+    }
+
+    @Test
+    public void testFoldConstants() {
+        JsParser parser = new JsParser(new JsLexer("""
+                const size = 2 * 8;
+                const name = "a" + "b";
+                result = !true ? 0 : size + 1 + name;
+                """));
+        ProgramNode program = (ProgramNode) parser.parse();
+        AstOptimizer.Report report = parser.optimizeReport();
+        assertEquals(2, report.propagatedConstants);
+        assertEquals(1, report.prunedBranches);
+        assertTrue(report.foldedExpressions >= 4, report.toString());
+
+        // assignment of the last statement has a constant right side
+        AstNodes.AssignmentExpressionNode assignment =
+                (AstNodes.AssignmentExpressionNode) program.blockNode.statements.get(2);
+        AstNodes.ConstantNode constant = assertInstanceOf(AstNodes.ConstantNode.class, assignment.right);
+        assertEquals("17ab", constant.value);
+        assertEquals("17ab", run(program));
+    }
+
+    @Test
+    public void testPruneBranches() {
+        JsParser parser = new JsParser(new JsLexer("""
+                const debug = false;
+                let log = [];
+                if (debug) {
+                    log.push("debug");
+                } else {
+                    log.push("run");
+                    {
+                        log.push("block");
+                    }
+                }
+                while (debug) {
+                    log.push("loop");
+                }
+                switch ("b") {
+                    case "a": log.push("a");
+                    case "b": log.push("b");
+                    case "c": log.push("c"); break;
+                    default: log.push("default");
+                }
+                result = log.join(",");
+                """));
+        ProgramNode program = (ProgramNode) parser.parse();
+        AstOptimizer.Report report = parser.optimizeReport();
+        assertEquals(2, report.prunedBranches);
+        assertEquals(1, report.prunedCases);
+        assertEquals(2, report.collapsedBlocks);
+        assertEquals("run,block,b,c", run(program));
+    }
+
+    @Test
+    public void testKeepRuntimeErrors() {
+        JsParser parser = new JsParser(new JsLexer("""
+                let a = 1;
+                result = (true ? a?.b?.c : 0) ?? "none";
+                """));
+        ProgramNode program = (ProgramNode) parser.parse();
+        assertEquals(0, parser.optimizeReport().prunedBranches);
+        assertEquals("none", run(program));
+    }
+}
@@ -0,0 +1,68 @@
+package eu.aston.javajs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import eu.aston.javajs.types.JsSdk;
+import eu.aston.javajs.types.JsTypes;
+import org.junit.jupiter.api.Test;
+
+public class BundleCompilerTest {
+
+    @Test
+    public void testCompileBundle() {
+        Map<String, String> sources = new LinkedHashMap<>();
+        for (int i = 0; i < 20; i++) {
+            sources.put("script" + i, "function f(a) { return a * " + i + "; }\nresult = f(2);");
+        }
+        sources.put("broken", "let a = ;");
+
+        List<BundleCompiler.Result> results = new BundleCompiler(4).compile(sources);
+        assertEquals(21, results.size());
+        for (int i = 0; i < 20; i++) {
+            BundleCompiler.Result result = results.get(i);
+            assertEquals("script" + i, result.name());
+            assertTrue(result.ok());
+            assertTrue(result.nanos() > 0);
+            assertNotNull(result.report());
+
+            Scope rootScope = JsSdk.createRootScope();
+            rootScope.setValue("result", null);
+            result.program().exec(rootScope);
+            assertEquals(JsTypes.toString(i * 2), JsTypes.toString(rootScope.getValue("result")));
+        }
+
+        BundleCompiler.Result broken = results.get(20);
+        assertEquals("broken", broken.name());
+        assertFalse(broken.ok());
+        assertNull(broken.program());
+        assertNotNull(broken.error().getMessage());
+    }
+
+    @Test
+    public void testDeepScriptBetweenGoodOnes() {
+        Map<String, String> sources = new LinkedHashMap<>();
+        sources.put("first", "result = 1;");
+        sources.put("deep", "result = " + "(".repeat(20_000) + "1" + ")".repeat(20_000) + ";");
+        sources.put("unary", "result = " + "!".repeat(20_000) + "1;");
+        sources.put("last", "result = 2;");
+
+        List<BundleCompiler.Result> results = new BundleCompiler(2).compile(sources);
+        assertEquals(4, results.size());
+        assertTrue(results.get(0).ok());
+        assertTrue(results.get(3).ok());
+        for (BundleCompiler.Result deep : results.subList(1, 3)) {
+            assertFalse(deep.ok());
+            assertNull(deep.program());
+            assertTrue(deep.error() instanceof JsParser.SyntaxError);
+            assertTrue(deep.error().getMessage().contains("nested"), deep.error().getMessage());
+        }
+    }
+}
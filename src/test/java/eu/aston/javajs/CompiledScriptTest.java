@@ -0,0 +1,148 @@
+package eu.aston.javajs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import eu.aston.javajs.types.JsSdk;
+import eu.aston.javajs.types.JsTypes;
+import org.junit.jupiter.api.Test;
+
+public class CompiledScriptTest {
+
+    private static final String SCRIPT = """
+            const base = 10;
+            function add(a, b) {
+                return a + b + base;
+            }
+            let total = add(1, 2);
+            function fail() {
+                throw "failed";
+            }
+            result = total;
+            """;
+
+    private static String run(CompiledScript script, String name) {
+        Scope rootScope = JsSdk.createRootScope();
+        rootScope.setValue(name, null);
+        script.program().exec(rootScope);
+        return JsTypes.toString(rootScope.getValue(name));
+    }
+
+    @Test
+    public void testEditReparsesOnlyTouchedStatement() {
+        CompiledScript script = CompiledScript.compile(SCRIPT);
+        assertEquals(5, script.statements());
+        assertEquals("13", run(script, "result"));
+
+        int pos = SCRIPT.indexOf("add(1, 2)") + 4;
+        CompiledScript edited = script.edit(pos, pos + 1, "5");
+        assertEquals(1, edited.parsedStatements());
+        assertEquals(SCRIPT.replace("add(1, 2)", "add(5, 2)"), edited.source());
+        assertEquals("17", run(edited, "result"));
+
+        // new declaration is linked with reused statements, the function reading the const points to the new
+        // declaration and is parsed again
+        pos = edited.source().indexOf("10");
+        edited = edited.edit(pos, pos + 2, "100");
+        assertEquals(2, edited.parsedStatements());
+        assertEquals("107", run(edited, "result"));
+    }
+
+    @Test
+    public void testEditMovesLinesOfReusedStatements() {
+        CompiledScript script = CompiledScript.compile(SCRIPT + "fail();\n");
+        int pos = SCRIPT.indexOf("let total");
+        CompiledScript edited = script.edit(pos, pos, "let unused = 1;\n\n");
+        // the inserted statement is parsed with the statements around it, the statements moved to other lines are
+        // reused
+        assertEquals(3, edited.parsedStatements());
+
+        AstNodes.ExecuteScriptException e = assertThrows(AstNodes.ExecuteScriptException.class,
+                                                         () -> run(edited, "result"));
+        assertTrue(e.getMessage().contains("line 9"), e.getMessage());
+        // the previous script keeps its lines
+        e = assertThrows(AstNodes.ExecuteScriptException.class, () -> run(script, "result"));
+        assertTrue(e.getMessage().contains("line 7"), e.getMessage());
+    }
+
+    @Test
+    public void testPreviousScriptKeepsLinks() {
+        String source = """
+                let y = 1;
+                function get() {
+                    return x;
+                }
+                result = get();
+                """;
+        CompiledScript script = CompiledScript.compile(source);
+        CompiledScript edited = script.edit(4, 5, "x");
+        // get() reads the new declaration instead of the global and is parsed again
+        assertEquals(2, edited.parsedStatements());
+
+        Scope rootScope = JsSdk.createRootScope();
+        rootScope.setValue("x", 7);
+        rootScope.setValue("result", null);
+        script.program().exec(rootScope);
+        assertEquals("7", JsTypes.toString(rootScope.getValue("result")));
+        assertEquals("1", run(edited, "result"));
+        script.program().exec(rootScope);
+        assertEquals("7", JsTypes.toString(rootScope.getValue("result")));
+    }
+
+    @Test
+    public void testEditOptimizesProgram() {
+        String source = """
+                const limit = 2;
+                if (limit > 5) {
+                    result = "big";
+                } else {
+                    result = "small";
+                }
+                """;
+        CompiledScript script = CompiledScript.compile(source);
+        assertEquals(1, script.optimizeReport().propagatedConstants);
+        assertEquals(1, script.optimizeReport().prunedBranches);
+        assertEquals("small", run(script, "result"));
+
+        CompiledScript edited = script.edit(14, 15, "9");
+        assertEquals(1, edited.optimizeReport().prunedBranches);
+        assertEquals("big", run(edited, "result"));
+        assertEquals("small", run(script, "result"));
+    }
+
+    @Test
+    public void testEditWithSyntaxError() {
+        CompiledScript script = CompiledScript.compile(SCRIPT);
+        int pos = SCRIPT.indexOf("return");
+        assertThrows(JsParser.SyntaxError.class, () -> script.edit(pos, pos + 6, "return ("));
+
+        // previous script is kept when the edit fails
+        CompiledScript edited = script.edit(pos, pos + 6, "return 1 +");
+        assertEquals("14", run(edited, "result"));
+    }
+
+    @Test
+    public void testEditWithConstAssignment() {
+        CompiledScript script = CompiledScript.compile(SCRIPT);
+        int pos = SCRIPT.indexOf("result = total");
+        assertThrows(JsParser.SyntaxError.class, () -> script.edit(pos, pos + 6, "base"));
+
+        // links of the failed edit are rolled back
+        CompiledScript edited = script.edit(pos, pos, "total = base;\n");
+        assertEquals("10", run(edited, "result"));
+    }
+
+    @Test
+    public void testEditPreviousScript() {
+        CompiledScript script = CompiledScript.compile(SCRIPT);
+        int pos = SCRIPT.indexOf("add(1, 2)") + 4;
+        CompiledScript edited = script.edit(pos, pos + 1, "5");
+
+        // the previous script is compiled again, the edited one stays valid
+        CompiledScript other = script.edit(pos, pos + 1, "6");
+        assertEquals("18", run(other, "result"));
+        assertEquals("17", run(edited, "result"));
+        assertEquals("16", run(edited.edit(pos, pos + 1, "4"), "result"));
+    }
+}
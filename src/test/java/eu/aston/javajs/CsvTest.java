@@ -0,0 +1,113 @@
+package eu.aston.javajs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+import eu.aston.javajs.AstNodes.ASTNode;
+import eu.aston.javajs.types.JsSdk;
+import org.junit.jupiter.api.Test;
+
+public class CsvTest {
+
+    // rows are generated while the script reads them, the text never exists as a whole
+    private static class RowsReader extends Reader {
+        private final int rows;
+        private int row;
+        private String current = "";
+        private int position;
+
+        RowsReader(int rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (position == current.length()) {
+                if (row == rows) {
+                    return -1;
+                }
+                current = row + ",\"name " + row + ", quoted\"," + (row % 10) + "\r\n";
+                row++;
+                position = 0;
+            }
+            int count = Math.min(length, current.length() - position);
+            current.getChars(position, position + count, buffer, offset);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    // prepends a header line to the generated rows
+    private static class RowsReaderWithHeader extends Reader {
+        private final Reader rows;
+        private final String header = "id,name,level\n";
+        private int position;
+
+        RowsReaderWithHeader(Reader rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            if (position < header.length()) {
+                int count = Math.min(length, header.length() - position);
+                header.getChars(position, position + count, buffer, offset);
+                position += count;
+                return count;
+            }
+            return rows.read(buffer, offset, length);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    public void testStreamRows() {
+        ASTNode program = new JsParser(new JsLexer("""
+                let sum = 0;
+                let last = null;
+                const count = CSV.forEach(input, (row, i) => {
+                    sum += Number(row.level);
+                    last = row.name;
+                    return i < 49999;
+                }, {header: true});
+                result = count + "," + sum + "," + last;
+                """)).parse();
+        RowsReader reader = new RowsReader(100_000);
+        Scope rootScope = JsSdk.createRootScope();
+        rootScope.setValue("input", new RowsReaderWithHeader(reader));
+        rootScope.setValue("result", null);
+        program.exec(rootScope);
+
+        assertEquals("50000,225000,name 49999, quoted", rootScope.getValue("result"));
+        // the callback stopped the reading, the rest of the rows was never generated
+        assertTrue(reader.row < 60_000);
+    }
+
+    @Test
+    public void testFieldsOverBlocks() {
+        String longText = "x".repeat(20_000);
+        String csv = "a;\"" + longText + "\"\"\n" + longText + "\";" + longText + "\nb;c\n";
+        ASTNode program = new JsParser(new JsLexer("""
+                const rows = CSV.parse(input, {delimiter: ";"});
+                result = rows.length + "," + rows[0][1].length + "," + rows[0][2].length + "," + rows[1].join("");
+                """)).parse();
+        Scope rootScope = JsSdk.createRootScope();
+        rootScope.setValue("input", new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+        rootScope.setValue("result", null);
+        program.exec(rootScope);
+
+        assertEquals("2,40002,20000,bc", rootScope.getValue("result"));
+    }
+}
@@ -121,4 +121,54 @@ public class JsScriptLexerTest {
         }
         assertEquals(2, restIdentifierCount, "Should contain two REST_IDENTIFIER tokens");
     }
-} 
\ No newline at end of file
+
+    @Test
+    public void testRegexLexing() {
+        // Regex literal at expression start
+        String input = "const re = /a[/]b\\/c/gi;";
+        JsLexer lexer = new JsLexer(input);
+        List<Token> tokens = lexer.tokenize();
+
+        assertEquals(5, tokens.size());
+        assertEquals(TokenType.REGEX, tokens.get(3).getType());
+        assertEquals("/a[/]b\\/c/gi", tokens.get(3).getValue());
+
+        // Slash after an operand is a division
+        input = "a / b / 2";
+        lexer = new JsLexer(input);
+        tokens = lexer.tokenize();
+
+        assertEquals(5, tokens.size());
+        assertEquals(TokenType.OPERATOR, tokens.get(1).getType());
+        assertEquals(TokenType.OPERATOR, tokens.get(3).getType());
+
+        // Slash after closing parenthesis is a division
+        input = "(a) / 2";
+        lexer = new JsLexer(input);
+        tokens = lexer.tokenize();
+
+        assertEquals(TokenType.OPERATOR, tokens.get(3).getType());
+        assertEquals("/", tokens.get(3).getValue());
+    }
+
+    @Test
+    public void testTokenKinds() {
+        String input = "let count = count >= 10 ? null : 'a\\x41';";
+        JsLexer lexer = new JsLexer(input);
+        List<Token> tokens = lexer.tokenize();
+
+        assertEquals(11, tokens.size());
+        assertEquals(TokenKind.LET, tokens.get(0).getKind());
+        assertEquals(TokenKind.ASSIGN, tokens.get(2).getKind());
+        assertEquals(TokenKind.GE, tokens.get(4).getKind());
+        assertEquals(TokenKind.QUESTION, tokens.get(6).getKind());
+        assertEquals(TokenKind.NULL, tokens.get(7).getKind());
+        assertEquals(TokenKind.SEMICOLON, tokens.get(10).getKind());
+
+        // Identifiers share one interned name
+        assertTrue(tokens.get(1).getValue() == tokens.get(3).getValue());
+
+        // String value is the raw literal, escapes are decoded by the parser
+        assertEquals("'a\\x41'", tokens.get(9).getValue());
+    }
+}
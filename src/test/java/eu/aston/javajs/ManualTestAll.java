@@ -56,7 +56,7 @@ public class ManualTestAll {
                     });
                     rootScope.nativeFunction("Error(val)", (scope, args) -> JsTypes.toString(args.getFirst()));
                     JsLexer lexer = new JsLexer(script + script2);
-                    JsParser parser = new JsParser(lexer.tokenize());
+                    JsParser parser = new JsParser(lexer);
                     ASTNode root = parser.parse();
 
                     //JsParser.printTree(root, " ");
@@ -119,7 +119,7 @@ public class ManualTestAll {
     public static void runScript(String script) {
 
         JsLexer lexer = new JsLexer(script);
-        JsParser parser = new JsParser(lexer.tokenize());
+        JsParser parser = new JsParser(lexer);
         ASTNode programNode = parser.parse();
 
         for (int i = 0; i < 10; i++) {
@@ -0,0 +1,58 @@
+package eu.aston.javajs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.regex.PatternSyntaxException;
+
+import eu.aston.javajs.types.JsRegExp;
+import eu.aston.javajs.types.RegExpCache;
+import org.junit.jupiter.api.Test;
+
+public class RegExpCacheTest {
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() {
+        RegExpCache cache = new RegExpCache(2);
+        JsRegExp a = cache.get("a", "");
+        cache.get("b", "");
+        // a is used again, so b is the least recently used one
+        assertSame(a, cache.get("a", ""));
+        cache.get("c", "");
+
+        assertEquals(2, cache.stats().size());
+        assertEquals(1, cache.stats().evictions());
+        assertSame(a, cache.get("a", ""));
+        assertEquals(2, cache.stats().hits());
+    }
+
+    @Test
+    public void testInvalidPatternCached() {
+        RegExpCache cache = new RegExpCache(8);
+        assertThrows(PatternSyntaxException.class, () -> cache.get("(", ""));
+        assertThrows(PatternSyntaxException.class, () -> cache.get("(", ""));
+
+        assertEquals(1, cache.stats().misses());
+        assertEquals(1, cache.stats().hits());
+    }
+
+    @Test
+    public void testBoundedUnderConcurrency() throws InterruptedException {
+        RegExpCache cache = new RegExpCache(16);
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            int offset = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    cache.get("p" + ((i * 7 + offset) % 100), "");
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(16, cache.stats().size());
+    }
+}
@@ -0,0 +1,114 @@
+package eu.aston.javajs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import eu.aston.javajs.AstNodes.ASTNode;
+import eu.aston.javajs.types.JsFunction;
+import eu.aston.javajs.types.JsSdk;
+import eu.aston.javajs.types.JsTypes;
+import org.junit.jupiter.api.Test;
+
+public class ScopeTest {
+
+    @Test
+    public void testGlobalFunctionChanged() {
+        ASTNode program = new JsParser(new JsLexer("""
+                let out = [];
+                for (let i = 0; i < 3; i++) {
+                    out.push(value(i));
+                }
+                value = (i) => "script" + i;
+                out.push(value(3));
+                result = out.join(",");
+                """)).parse();
+        Scope rootScope = JsSdk.createRootScope();
+        rootScope.setValue("result", null);
+        rootScope.nativeFunction("value(i)", (scope, args) -> "host" + JsTypes.toString(args.getFirst()));
+        program.exec(rootScope);
+        assertEquals("host0,host1,host2,script3", rootScope.getValue("result"));
+
+        // same call sites with another root scope and with a function replaced by the host
+        Scope rootScope2 = JsSdk.createRootScope();
+        rootScope2.setValue("result", null);
+        rootScope2.setValue("value", JsFunction.nativeFunction("value(i)", (scope, args) -> "other"));
+        program.exec(rootScope2);
+        assertEquals("other,other,other,script3", rootScope2.getValue("result"));
+
+        rootScope.nativeFunction("value(i)", (scope, args) -> "again");
+        program.exec(rootScope);
+        assertEquals("again,again,again,script3", rootScope.getValue("result"));
+    }
+
+    @Test
+    public void testGlobalSlotsByName() {
+        ASTNode program = new JsParser(new JsLexer("""
+                output = input.map((x) => x * 2);
+                flag = typeof JSON.stringify;
+                """)).parse();
+        Scope rootScope = JsSdk.createRootScope();
+        rootScope.setValue("input", List.of(1, 2));
+        rootScope.setValue("output", null);
+        rootScope.setValue("flag", null);
+        program.exec(rootScope);
+        assertEquals("2,4", JsTypes.toString(rootScope.getValue("output")));
+        assertEquals("function", rootScope.getValue("flag"));
+
+        Map<String, Object> globals = rootScope.rootThis();
+        assertTrue(globals.containsKey("input"));
+        assertTrue(globals.keySet().contains("flag"));
+        assertTrue(globals.values().contains("function"));
+        globals.remove("input");
+        assertFalse(globals.containsKey("input"));
+        assertNull(rootScope.getValue("input"));
+        assertThrows(RuntimeException.class, () -> program.exec(rootScope));
+
+        // a global unknown to the root scope is not visible in another one
+        Scope otherScope = JsSdk.createRootScope();
+        assertNull(otherScope.getValue("output"));
+        assertFalse(otherScope.rootThis().containsKey("flag"));
+    }
+
+    @Test
+    public void testGlobalSlotsPerRootScope() {
+        ASTNode program = new JsParser(new JsLexer("result = a + b * 100;")).parse();
+        // the names get other slots in the two root scopes
+        Scope first = new Scope();
+        first.setValue("result", null);
+        first.setValue("a", 1);
+        first.setValue("b", 2);
+        Scope second = new Scope();
+        second.setValue("result", null);
+        second.setValue("b", 20);
+        second.setValue("a", 10);
+        for (int i = 0; i < 2; i++) {
+            program.exec(first);
+            program.exec(second);
+        }
+        assertEquals("201", JsTypes.toString(first.getValue("result")));
+        assertEquals("2010", JsTypes.toString(second.getValue("result")));
+        // names used by a script in one root scope are not added to another one
+        assertFalse(new Scope().rootThis().containsKey("result"));
+    }
+
+    @Test
+    public void testGlobalBuiltByAppend() {
+        ASTNode program = new JsParser(new JsLexer("""
+                for (let i = 0; i < 3; i++) {
+                    output += "#" + i;
+                }
+                """)).parse();
+        Scope rootScope = JsSdk.createRootScope();
+        rootScope.setValue("output", "start");
+        program.exec(rootScope);
+        assertEquals("start#0#1#2", rootScope.getValue("output"));
+        assertEquals("start#0#1#2", rootScope.rootThis().entrySet().stream()
+                .filter(e -> e.getKey().equals("output")).findFirst().orElseThrow().getValue());
+    }
+}
@@ -1,6 +1,7 @@
 package eu.aston.javajs;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
@@ -15,13 +16,17 @@ public class TestPerf {
         String script = Files.readString(Path.of("performance/perf.js"));
         long l1 = System.currentTimeMillis();
         JsLexer lexer = new JsLexer(script);
-        JsParser parser = new JsParser(lexer.tokenize());
+        JsParser parser = new JsParser(lexer);
         AstNodes.ASTNode programNode = parser.parse();
         long l2 = System.currentTimeMillis();
         System.out.println("parse time " + (l2 - l1));
         long avg = 0;
+        long allocated = 0;
         int loops = 190;
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
         for (int i = 0; i < loops; i++) {
+            long b1 = threadMXBean.getCurrentThreadAllocatedBytes();
             long t1 = System.nanoTime();
             Scope rootScope = JsSdk.createRootScope();
             rootScope.nativeFunction("print()", (scope, args) -> {
@@ -32,7 +37,9 @@ public class TestPerf {
             long t2 = System.nanoTime();
             //System.out.println("run time "+(t2-t1));
             avg += t2 - t1;
+            allocated += threadMXBean.getCurrentThreadAllocatedBytes() - b1;
         }
         System.out.println("avg run " + (1.0 * avg / loops / 1_000_000));
+        System.out.println("avg allocated bytes " + (allocated / loops));
     }
 }
@@ -55,7 +55,7 @@ public class TestScripts {
             String name = s.split("/n")[0];
             tests.add(DynamicTest.dynamicTest(name, () -> Assertions.assertThrows(Exception.class, () -> {
                 JsLexer lexer = new JsLexer(s);
-                JsParser parser = new JsParser(lexer.tokenize());
+                JsParser parser = new JsParser(lexer);
                 parser.parse();
                 System.out.println("error script:\n" + s);
             })));
@@ -64,7 +64,7 @@ public class TestScripts {
 
     private void runScript(Scope rootScope, String script) {
         JsLexer lexer = new JsLexer(script + script2);
-        JsParser parser = new JsParser(lexer.tokenize());
+        JsParser parser = new JsParser(lexer);
         AstNodes.ASTNode root = parser.parse();
         root.exec(rootScope);
     }
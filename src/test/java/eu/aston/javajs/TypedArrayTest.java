@@ -0,0 +1,63 @@
+package eu.aston.javajs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import eu.aston.javajs.AstNodes.ASTNode;
+import eu.aston.javajs.types.JsArrayBuffer;
+import eu.aston.javajs.types.JsSdk;
+import eu.aston.javajs.types.JsTypedArray;
+import eu.aston.javajs.types.JsTypes;
+import org.junit.jupiter.api.Test;
+
+public class TypedArrayTest {
+
+    @Test
+    public void testHostBuffer() {
+        ByteBuffer memory = ByteBuffer.allocateDirect(8 * 4).order(ByteOrder.LITTLE_ENDIAN);
+        memory.putDouble(0, 1.5);
+        memory.putDouble(8, 2.5);
+
+        ASTNode program = new JsParser(new JsLexer("""
+                let sum = 0;
+                for (let i = 0; i < samples.length; i++) {
+                    sum += samples[i];
+                }
+                samples[3] = sum;
+                const bytes = Uint8Array(samples.buffer, 24, 8);
+                result = sum + "," + samples.reduce((a, b) => a + b, 0) + "," + bytes.byteOffset;
+                """)).parse();
+        Scope rootScope = JsSdk.createRootScope();
+        rootScope.setValue("samples", new JsTypedArray(JsTypedArray.Kind.FLOAT64, memory));
+        rootScope.setValue("result", null);
+        program.exec(rootScope);
+
+        assertEquals("4.0,8.0,24", rootScope.getValue("result"));
+        // the script wrote to the host memory
+        assertEquals(4.0, memory.getDouble(24));
+    }
+
+    @Test
+    public void testLargeBufferOffHeap() {
+        ASTNode program = new JsParser(new JsLexer("""
+                const values = Int32Array(4 * 1024 * 1024);
+                values[values.length - 1] = 7;
+                values[values.length] = 8;
+                result = values.buffer;
+                """)).parse();
+        Scope rootScope = JsSdk.createRootScope();
+        rootScope.setValue("result", null);
+        program.exec(rootScope);
+
+        JsArrayBuffer buffer = (JsArrayBuffer) rootScope.getValue("result");
+        assertTrue(buffer.isDirect());
+        assertEquals(16 * 1024 * 1024, buffer.byteLength());
+        assertEquals(7, buffer.buffer().getInt(buffer.byteLength() - 4));
+        assertFalse(JsArrayBuffer.allocate(1024).isDirect());
+        assertEquals("object", JsTypes.typeof(buffer));
+    }
+}
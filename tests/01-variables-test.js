@@ -164,6 +164,11 @@ function testEscapeSequences() {
   // Test escape sequences with special characters
   const specialStr = "\x22\u0027"; // Quote marks
   assert(specialStr === "\"'", "Escape sequences with special characters work correctly");
+
+  // Escaped backslash is decoded only once
+  const backslashStr = "a\\d\\x41";
+  assert(backslashStr.length === 7, "Escaped backslash stays a single backslash");
+  assert(backslashStr.charAt(1) === "\\", "Escaped backslash is kept in the value");
 }
 
 function testObjectCreation() {
@@ -138,7 +138,12 @@ function testStringConcatenation() {
   const name = "Alice";
   assert(`Hello, ${name}!` === "Hello, Alice!", "Template literals with interpolation work");
   assert(`2 + 2 = ${2 + 2}` === "2 + 2 = 4", "Template literals with expressions work");
-  
+  const price = 2.5;
+  const items = [1, [2, 3], "x"];
+  assert(`${price}|${7}|${true}|${null}|${items}` === "2.5|7|true|null|1,2,3,x",
+         "Template literals append numbers, booleans and arrays");
+  assert(`${name}` + "!" + price + false === "Alice!2.5false", "Concatenation mixes strings and values");
+
   // Concatenation with other types
   assert("Number: " + 42 === "Number: 42", "Concatenating string with number works");
   assert("Boolean: " + true === "Boolean: true", "Concatenating string with boolean works");
@@ -146,6 +151,42 @@ function testStringConcatenation() {
   // Array join
 
   assert(["Apple", "Banana", "Cherry"].join(", ") === "Apple, Banana, Cherry", "Array join method works");
+
+  // Repeated += on a variable
+  let built = "";
+  let copies = [];
+  for (let i = 0; i < 5; i++) {
+    built += i;
+    copies.push(built);
+  }
+  assert(built === "01234" && typeof built === "string", "String built by += is a string");
+  assert(copies.join(",") === "0,01,012,0123,01234", "Earlier values do not change by later +=");
+  let branch = copies[2];
+  branch += "x";
+  built += "y";
+  assert(branch === "012x" && built === "01234y", "Appending to an earlier value copies it");
+  assert(built.length === 6 && built.charAt(5) === "y" && built.toUpperCase() === "01234Y",
+         "String functions work on a string built by +=");
+  const appendLater = () => { built += "z"; };
+  appendLater();
+  assert(built === "01234yz", "Closure appends to a captured variable");
+
+  // Reading .length, an index and + inside the += loop
+  let line = "";
+  let lengths = 0;
+  for (let i = 0; i < 2000; i++) {
+    if (line.length < 3000) {
+      line += "ab";
+    }
+    lengths += line.length;
+  }
+  assert(line.length === 3000 && lengths === 3751500, "length read in a += loop");
+  assert(line.charAt(2999) === "b" && (line + "!").length === 3001 && (line + "!").indexOf("ab!") === 2998 &&
+         `${line}`.length === 3000,
+         "charAt, + and template read a string built by +=");
+  let counter = 1;
+  counter += 2;
+  assert(counter === 3, "+= on a number adds");
 }
 
 // Test length operator
@@ -101,6 +101,49 @@ function testConditionalStatements() {
       resultSwitch = 'other';
   }
   assert(resultSwitch === 'other', "switch statement executes default case when no match");
+
+  // switch with constant cases, numbers of different types and fall-through
+  function route(code) {
+    let route = "";
+    switch (code) {
+      case 1:
+        route += "one";
+      case 2:
+        route += "two";
+        break;
+      case "2":
+        route = "string two";
+        break;
+      case null:
+        route = "null";
+        break;
+      case undefined:
+        route = "undefined";
+        break;
+      case true:
+        route = "true";
+        break;
+      default:
+        route += "default";
+    }
+    return route;
+  }
+  assert(route(1) === "onetwo", "switch falls through to the next case");
+  assert(route(4 / 2) === "two", "switch matches a computed number");
+  assert(route("2") === "string two", "switch does not convert strings to numbers");
+  assert(route(null) === "null" && route(undefined) === "undefined", "switch matches null and undefined");
+  assert(route(true) === "true" && route(false) === "default", "switch matches booleans");
+  assert(route([2]) === "default", "switch does not match an array");
+
+  // case test which is not constant is evaluated in order
+  let evaluated = [];
+  const next = (v) => { evaluated.push(v); return v; };
+  switch (2) {
+    case next(1):
+    case next(2):
+    case next(3):
+  }
+  assert(evaluated.join(",") === "1,2", "switch evaluates expression cases in order until a match");
 }
 
 // Test loop statements
@@ -254,6 +254,47 @@ function testJsonOperations() {
     }, "Extra comma in array should throw error");
 }
 
+function testRecursion() {
+  // params and locals are read after the recursive call returns
+  function factorial(n) {
+    let local = n;
+    if (n <= 1) {
+      return 1;
+    }
+    const rest = factorial(n - 1);
+    return rest * local * n / n;
+  }
+  assert(factorial(5) === 120, "Recursive calls have their own params and locals");
+
+  function walk(node) {
+    if (node === null) {
+      return 0;
+    }
+    const left = walk(node.left);
+    return left + node.value + walk(node.right);
+  }
+  const tree = {value: 1, left: {value: 2, left: null, right: null}, right: {value: 3, left: null, right: null}};
+  assert(walk(tree) === 6, "Recursive tree walk sums all nodes");
+
+  // closure called again while it runs
+  function makeCountdown() {
+    let calls = 0;
+    function down(n) {
+      calls++;
+      return n === 0 ? calls : down(n - 1) + n - n;
+    }
+    return down;
+  }
+  assert(makeCountdown()(10) === 11, "Recursive closure keeps its param and shares captured var");
+
+  // arguments is filled only for functions which read it
+  function count() {
+    return arguments.length;
+  }
+  assert(count(1, 2, 3) === 3, "Arguments contain all passed values");
+  assert([1, 2].map((a, b, c, d) => d === undefined).join(",") === "true,true", "Missing params are undefined");
+}
+
 const functions = [
     testFunctionDeclaration,
     testFunctionExpression,
@@ -264,7 +305,8 @@ const functions = [
     testFunctionsAsParameters,
     testNonFunctionPropertyCall,
     testThisOperator,
-    testJsonOperations
+    testJsonOperations,
+    testRecursion
 ];
 for(let testFunction of functions) {
     try {
@@ -118,6 +118,31 @@ function testClosures() {
   assert(counter() === 4, "Original counter continues from 4");
 }
 
+// 8. Test Captured Variables
+function testCapturedVariables() {
+  // every loop pass declares a new binding
+  const readers = [];
+  for (let i = 0; i < 3; i++) {
+    let value = i * 10;
+    readers.push(() => value);
+  }
+  assert(readers[0]() === 0 && readers[2]() === 20, "Closures keep the binding of their loop pass");
+
+  // captured param and a local which is not captured
+  function adder(base) {
+    let local = 1;
+    local = local + 1;
+    return (x) => base + x + local;
+  }
+  assert(adder(5)(1) === 8, "Captured param and local are read through the closure");
+
+  // write through the closure is visible in the outer function
+  let shared = 1;
+  const setShared = (v) => { shared = v; };
+  setShared(7);
+  assert(shared === 7, "Outer function sees a write made by the closure");
+}
+
 // Run all tests
 const functions = [
     testGlobalScope,
@@ -127,6 +152,7 @@ const functions = [
     testHoisting,
     testFunctionHoisting,
     testClosures,
+    testCapturedVariables,
   ];
 for(let testFunction of functions) {
     try {
@@ -189,3 +189,7 @@ if (true) let a = 1, b = 2;
 /*parse-error*/
 // Multiple variable declarations not allowed directly in else statement
 if (false) {} else let c = 3, d = 4;
+
+/*parse-error*/
+// Unterminated regular expression
+let re = /abc;
@@ -0,0 +1,385 @@
+// Test file for the built-in SDK objects and functions
+// Tests regular expressions and the native helpers registered in JsSdk
+
+// Test regex literals and RegExp function
+function testRegExp() {
+  const re = /^[a-z]+\d*$/i;
+  assert(typeof re === "object", "regex literal is an object");
+  assert(/^[a-z]+$/.source === "^[a-z]+$", "regex source is kept without slashes");
+  assert(re.flags === "i", "regex flags are parsed");
+  assert(re.test("Abc12") === true, "case insensitive regex matches");
+  assert(re.test("12abc") === false, "regex does not match invalid input");
+  assert(RegExp("b+", "g").global === true, "RegExp function creates global regex");
+  assert(/[/]/.test("a/b"), "slash inside character class does not end regex");
+  assert(/a\/b/.test("a/b"), "escaped slash inside regex");
+
+  // Division is still parsed as operator
+  const a = 10;
+  const b = 2;
+  assert(a / b === 5, "division after identifier");
+  assert((a) / b / 1 === 5, "division after closing parenthesis");
+  assert([a][0] / b === 5, "division after closing bracket");
+}
+
+// Test String functions with regex arguments
+function testStringRegExp() {
+  assert("a1b22c333".match(/\d+/)[0] === "1", "match without g returns first match");
+  assert("a1b22c333".match(/\d+/g).length === 3, "match with g returns all matches");
+  assert("a1b22c333".match(/\d+/g)[2] === "333", "match with g returns matched strings");
+  assert("a1b22c333".matchAll(/(\d)\d*/g).length === 3, "matchAll with regex literal");
+  assert("hello world".search(/o/) === 4, "search with regex literal");
+  assert("a-b-c".replace(/-/, "+") === "a+b-c", "replace with regex replaces first match");
+  assert("a-b-c".replace(/-/g, "+") === "a+b+c", "replace with global regex replaces all");
+  assert("a-b-c".replaceAll(/-/g, "") === "abc", "replaceAll with regex literal");
+  assert("a1b2c".split(/\d/).length === 3, "split with regex literal");
+  assert("John Smith".replace(/(\w+)\s(\w+)/, "$2 $1") === "Smith John", "replace with group references");
+  assert(/(\d+)-(\d+)/.exec("x 12-34")[2] === "34", "exec returns groups");
+  assert(/\d/.exec("abc") === null, "exec returns null when not found");
+
+  // String patterns are still supported
+  assert("a1b22".match("[0-9]+")[0] === "1", "match with string pattern");
+  assert("abc".search("c") === 2, "search with string pattern");
+}
+
+function testArrayQueue() {
+  const q = [3, 4];
+  q.unshift(1, 2);
+  q.push(5);
+  assert(q.join(",") === "1,2,3,4,5", "unshift adds in order at the front");
+  assert(q.shift() === 1 && q.length === 4, "shift removes the first element");
+
+  // the buffer wraps around while elements go in at one end and out at the other
+  let sum = 0;
+  for (let i = 6; i < 40; i++) {
+    q.push(i);
+    sum += q.shift();
+  }
+  assert(sum === 629, "queue keeps the order of elements");
+  assert(q[0] === 36 && q[3] === 39, "index access after wrapping");
+  q.splice(1, 2, "a");
+  assert(q.join(",") === "36,a,39", "splice in the middle");
+  q[5] = 41;
+  assert(q.length === 6 && q[4] === undefined, "write past the end fills the gap");
+  assert(JSON.parse("[1,[2]]")[1].concat([3]).length === 2, "parsed arrays are arrays");
+  const parts = "a,b".split(",");
+  parts.push("c");
+  assert(parts.join("-") === "a-b-c", "split result can grow");
+}
+
+function testNumericArray() {
+  const xs = [];
+  for (let i = 0; i < 20; i++) {
+    xs.unshift(i);
+  }
+  assert(xs.reduce((a, b) => a + b, 0) === 190, "reduce over numbers");
+  assert(xs.indexOf(7) === 12 && xs.lastIndexOf(19) === 0 && !xs.includes(20), "search numbers");
+  xs.sort();
+  assert(xs.slice(0, 4).join(",") === "0,1,10,11", "default sort compares strings");
+  xs.sort((a, b) => a - b);
+  assert(xs[0] === 0 && xs[19] === 19, "sort with compare function");
+
+  const halves = xs.map(x => x * 0.5);
+  assert(halves[3] === 1.5 && halves.indexOf(1.5) === 3, "array of doubles");
+  halves.splice(1, 0, "x");
+  assert(halves[1] === "x" && halves[4] === 1.5 && halves.length === 21, "a string turns numbers to values");
+  xs[2] = null;
+  xs.push(undefined);
+  assert(xs[2] === null && xs[20] === undefined && xs[3] === 3, "null and undefined in a number array");
+
+  const changing = [1, 2, 3];
+  const seen = changing.map((x, i) => {
+    if (i === 0) {
+      changing[2] = "three";
+    }
+    return x + ":" + i;
+  });
+  assert(seen.join(",") === "1:0,2:1,three:2", "map reads an array changed by the callback");
+  assert(changing.reduce((a, x, i) => a + x + i, "") === "1021three2", "reduce passes values and indexes");
+}
+
+function testTypedArray() {
+  const ints = Int32Array([1, 2.7, -3]);
+  assert(ints.length === 3 && ints[1] === 2 && ints[2] === -3, "Int32Array from an array truncates");
+  ints[0] = 2147483648;
+  assert(ints[0] === -2147483648, "Int32Array wraps values");
+  ints[5] = 1;
+  assert(ints.length === 3 && ints[5] === undefined, "write out of the length is ignored");
+  ints[0] = 1e20;
+  ints[1] = -4294967297.5;
+  assert(ints[0] === 1661992960 && ints[1] === -1, "Int32Array wraps large values modulo 2^32");
+  let caught = 0;
+  for (const name of ["push", "pop", "shift", "unshift", "splice"]) {
+    try {
+      ints[name](1);
+    } catch (e) {
+      caught++;
+    }
+  }
+  assert(caught === 5 && ints.length === 3, "typed array has no length changing functions");
+
+  const buffer = ArrayBuffer(16);
+  const doubles = Float64Array(buffer);
+  const bytes = Uint8Array(buffer);
+  doubles[0] = 1;
+  assert(buffer.byteLength === 16 && bytes.length === 16 && bytes[7] === 63, "views share the buffer");
+  bytes[8] = 300;
+  assert(bytes[8] === 44 && doubles[1] > 0, "Uint8Array wraps values");
+
+  const part = bytes.subarray(8, 10);
+  part[1] = 1;
+  assert(part.length === 2 && part.byteOffset === 8 && bytes[9] === 1, "subarray is a view");
+  const copy = Uint8Array(buffer.slice(8));
+  copy[0] = 0;
+  assert(copy.length === 8 && bytes[8] === 44, "slice copies the bytes");
+  part.set([5, 6]);
+  assert(bytes[8] === 5 && bytes[9] === 6, "set copies values");
+  assert(Int32Array(3).map(x => x + 1).join(",") === "1,1,1", "array functions work on typed arrays");
+  assert(Int32Array([3, 1, 2]).sort().join(",") === "1,2,3", "typed array sorts in place");
+  assert(Int32Array([10, 9, -1]).sort().join(",") === "-1,9,10", "typed array sorts by numbers");
+  assert(Float64Array([10.5, 9.25, -0.5]).sort().join(",") === "-0.5,9.25,10.5", "Float64Array sorts by numbers");
+  const bytes8 = Uint8Array([200, 30, 100]);
+  assert(bytes8.toSorted().join(",") === "30,100,200" && bytes8[0] === 200, "toSorted copies a typed array");
+}
+
+function testArraySearchIndex() {
+  const names = [];
+  for (let round = 0; round < 2; round++) {
+    for (let i = 0; i < 50; i++) {
+      names.push("n" + i);
+    }
+  }
+  let found = 0;
+  for (let i = 0; i < 20; i++) {
+    found += names.includes("n" + i) ? 1 : 0;
+  }
+  assert(found === 20 && !names.includes("x"), "repeated includes");
+  assert(names.indexOf("n3") === 3 && names.indexOf("n3", 4) === 53 && names.lastIndexOf("n3") === 53,
+         "indexOf and lastIndexOf from the index");
+  assert(names.lastIndexOf("n3", 52) === 3 && names.indexOf("n3", 54) === -1, "search from a position");
+  names[3] = "x";
+  assert(names.includes("x") && names.indexOf("n3") === 53, "search after a write");
+  names.shift();
+  assert(names.indexOf("x") === 2 && names.indexOf("n3") === 52, "search after shift");
+}
+
+function testSetAndMap() {
+  const seen = Set(["a", "b"]);
+  seen.add("c").add("a");
+  assert(seen.size === 3 && seen.has("c") && !seen.has("d"), "Set keeps unique values");
+  assert(seen.delete("a") && !seen.delete("a") && seen.values().join(",") === "b,c", "Set delete");
+  let visited = "";
+  seen.forEach(v => { visited += v; });
+  assert(visited === "bc", "Set forEach in insertion order");
+
+  const key = {id: 1};
+  const counts = Map([["x", 1]]);
+  counts.set(key, 2).set(3, "three");
+  assert(counts.get(key) === 2 && counts.get(3) === "three" && counts.get("3") === undefined,
+         "Map keys are not converted to strings");
+  assert(counts.keys().length === 3 && counts.values()[0] === 1 && counts.entries()[2][1] === "three",
+         "Map keys, values and entries");
+  counts.delete("x");
+  counts.clear();
+  assert(counts.size === 0 && !counts.has(key), "Map clear");
+}
+
+function testSetAndMapOrder() {
+  const ids = Set([3, 1, 2]);
+  ids.add(2 / 2);
+  ids.add(NaN);
+  ids.add(0 / 0);
+  assert(ids.size === 4 && ids.has(1.0) && ids.has(NaN), "Set compares with SameValueZero");
+  ids.delete(3);
+  ids.add(3);
+  let order = [];
+  for (const id of ids) {
+    order.push(id);
+  }
+  assert(order.join(",") === "1,2,NaN,3", "for-of visits a Set in insertion order");
+
+  const labels = Map();
+  labels.set("z", 1).set(-0, "zero").set("a", 2);
+  order = [];
+  for (const entry of labels) {
+    order.push(entry[0] + "=" + entry[1]);
+  }
+  assert(order.join(",") === "z=1,0=zero,a=2" && labels.get(0) === "zero", "for-of visits Map entries in order");
+  assert(JSON.stringify(labels) === '{}', "Map is written as an empty object");
+  assert(JSON.stringify({list: Set(["b", "a"])}) === '{"list": {}}', "Set is written as an empty object");
+  assert(JSON.stringify({list: Set(["b", "a"]).values()}) === '{"list": ["b","a"]}', "Set to array is written");
+  assert(Object.keys(JSON.parse('{"b": 1, "a": 2, "c": 3}')).join(",") === "b,a,c", "parse keeps key order");
+
+  const big = Set();
+  for (let i = 0; i < 1000; i++) {
+    big.add("k" + i);
+  }
+  for (let i = 0; i < 990; i++) {
+    big.delete("k" + i);
+  }
+  big.add("last");
+  assert(big.size === 11 && big.values()[0] === "k990" && big.values()[10] === "last", "order after removes");
+}
+
+function testArraySort() {
+  const xs = [5, 3, 10, 1, 4];
+  xs.sort((a, b) => a - b);
+  assert(xs.join(",") === "1,3,4,5,10", "numeric sort");
+  xs.sort((a, b) => b - a);
+  assert(xs.join(",") === "10,5,4,3,1", "descending numeric sort");
+  assert([1.5, -2, 0.25].sort((a, b) => a - b).join(",") === "-2,0.25,1.5", "numeric sort of doubles");
+  assert([0.3, 0.1, 0.2].sort((a, b) => (a - b) / 10).join(",") === "0.1,0.2,0.3", "fractional comparator result");
+  const people = [{n: "a", age: 30}, {n: "b", age: 20}, {n: "c", age: 30}, {n: "d", age: 20}];
+  people.sort((x, y) => x.age - y.age);
+  assert(people.map(p => p.n).join("") === "bdac", "sort is stable");
+  const original = [3, 1, 2];
+  const sorted = original.toSorted((a, b) => a - b);
+  assert(sorted.join(",") === "1,2,3" && original.join(",") === "3,1,2", "toSorted keeps the original");
+  assert(["b", "a"].toSorted().join(",") === "a,b", "toSorted without comparator");
+  const order = ["low", "mid", "high"];
+  const levels = ["high", "low", "mid", "low"];
+  levels.sort((a, b) => order.indexOf(a) - order.indexOf(b));
+  assert(levels.join(",") === "low,low,mid,high", "comparator using a captured variable");
+  let calls = 0;
+  const counted = [4, 2, 3];
+  counted.sort((a, b) => {
+    calls++;
+    return a - b;
+  });
+  assert(calls > 0 && counted.join(",") === "2,3,4", "comparator with a block body is called");
+}
+
+function testIteratorHelpers() {
+  const xs = [];
+  for (let i = 0; i < 100; i++) {
+    xs.push(i);
+  }
+  let mapped = 0;
+  const top = xs.values().filter(x => x % 2 === 0).map(x => {
+    mapped++;
+    return x * 10;
+  }).take(3).toArray();
+  assert(top.join(",") === "0,20,40", "filter, map and take");
+  assert(mapped === 3, "take stops the pipeline");
+  assert(xs.values().drop(98).toArray().join(",") === "98,99", "drop");
+  assert(xs.values().map((x, i) => x - i).every(d => d === 0), "map counter and every");
+  assert(xs.values().some(x => x > 98) && !xs.values().some(x => x > 99), "some");
+  assert(xs.values().find(x => x * x > 50) === 8, "find");
+  assert(xs.values().take(5).reduce((a, b) => a + b) === 10, "reduce without initial value");
+  assert(xs.values().take(5).reduce((a, b) => a + b, 100) === 110, "reduce with initial value");
+  assert([1, 2].values().flatMap(x => [x, x]).toArray().join(",") === "1,1,2,2", "flatMap");
+  const it = ["a", "b"].values();
+  const first = it.next();
+  assert(first.value === "a" && first.done === false, "next value");
+  it.next();
+  assert(it.next().done === true, "next at the end");
+  let seen = "";
+  for (const s of ["x", "y", "z"].values().filter(s => s !== "y")) {
+    seen += s;
+  }
+  assert(seen === "xz", "for of over an iterator");
+  let sum = 0;
+  xs.values().take(4).forEach(x => sum += x);
+  assert(sum === 6, "forEach");
+  let failed = false;
+  try {
+    xs.values().map(1);
+  } catch (e) {
+    failed = true;
+  }
+  assert(failed, "a helper argument must be a function");
+}
+
+function testArrayCallbacks() {
+  const xs = [1, 2, 3];
+  assert(xs.map(x => x * 2).join(",") === "2,4,6", "callback with one param");
+  assert(xs.map((x, i, arr) => x + i + arr.length).join(",") === "4,6,8", "callback with all params");
+  let count = 0;
+  xs.forEach(function () {
+    count += arguments.length;
+  });
+  assert(count === 9, "callback reading arguments gets all of them");
+  const tree = {v: 1, children: [{v: 2, children: []}, {v: 3, children: [{v: 4, children: []}]}]};
+  function sumTree(node) {
+    return node.v + node.children.map(sumTree).reduce((a, b) => a + b, 0);
+  }
+  assert(sumTree(tree) === 10, "recursive callback");
+  const getters = xs.map(x => () => x * 10);
+  assert(getters.map(g => g()).join(",") === "10,20,30", "closures created by a callback keep their values");
+  const seen = [];
+  const colors = Set(["red", "green"]);
+  colors.forEach((value, key) => seen.push(value + key));
+  Map([["a", 1]]).forEach((value, key, map) => seen.push(key + value + map.size));
+  assert(seen.join(",") === "redred,greengreen,a11", "Set and Map forEach");
+}
+
+function testStringSplit() {
+  assert("a,b,,c,".split(",").join("|") === "a|b||c|", "split keeps empty parts");
+  assert("a.b.c".split(".").length === 3, "dot is a literal separator");
+  assert("a|b".split("|").join(",") === "a,b", "pipe is a literal separator");
+  assert("a--b--c".split("--").join(",") === "a,b,c", "multi char separator");
+  assert("a,b,c".split(",", 2).join("|") === "a|b", "limit drops the rest");
+  assert("a1b2c".split(/\d/, 2).join("|") === "a|b", "regex split with limit");
+  assert("abc".split("").length === 3, "empty separator");
+  assert("abc".split()[0] === "abc", "no separator");
+  assert("abc".split(/(b)/).join("|") === "a|b|c", "regex split adds captured groups");
+  assert("a1b".split(/(x)?\d/).length === 3, "unmatched group is undefined");
+  assert("abc".split(/(?:)/).join("|") === "a|b|c", "empty regex splits characters");
+  assert("".split(/,/).length === 1 && "".split(/(?:)/).length === 0, "regex split of an empty string");
+  assert("a,b,c".split(/(,)/, 2).join("|") === "a|,", "limit counts captured groups");
+  assert("abc".split("x")[0] === "abc", "separator not found");
+}
+
+function testCsv() {
+  const text = 'id,name,note\r\n1,"Smith, John","said ""hi"""\n2,Ann,\n\n3,"multi\nline",x';
+  const rows = CSV.parse(text);
+  assert(rows.length === 4 && rows[0].join("|") === "id|name|note", "header row as array");
+  assert(rows[1][1] === "Smith, John" && rows[1][2] === 'said "hi"', "quoted fields");
+  assert(rows[2].length === 3 && rows[2][2] === "", "empty last field");
+  assert(rows[3][1] === "multi\nline", "line break in a quoted field");
+  const people = CSV.parse(text, {header: true});
+  assert(people.length === 3 && people[0].name === "Smith, John" && people[2].id === "3", "rows as objects");
+  assert(CSV.parse("a;b\nc;d", {delimiter: ";"})[1][1] === "d", "custom delimiter");
+  assert(CSV.parse("").length === 0, "empty text");
+  let ids = "";
+  const read = CSV.forEach(text, (row, i) => {
+    ids += row.id;
+    return i < 1;
+  }, {header: true});
+  assert(read === 2 && ids === "12", "forEach stops when the callback returns false");
+  const out = CSV.stringify([["a", "b,c"], [1, 'q"'], [null, "x\ny"]]);
+  assert(out === 'a,"b,c"\r\n1,"q"""\r\n,"x\ny"\r\n', "stringify arrays");
+  assert(CSV.stringify([{x: 1, y: "a"}, {x: 2}], {newline: "\n"}) === "x,y\n1,a\n2,\n", "stringify objects");
+  assert(CSV.parse(CSV.stringify(rows))[3][1] === "multi\nline", "stringify and parse round trip");
+  let failed = false;
+  try {
+    CSV.parse('a,"b');
+  } catch (e) {
+    failed = true;
+  }
+  assert(failed, "unterminated quoted field");
+}
+
+//Run all tests
+const functions = [testRegExp,
+    testStringRegExp,
+    testArrayQueue,
+    testNumericArray,
+    testTypedArray,
+    testArraySearchIndex,
+    testSetAndMap,
+    testSetAndMapOrder,
+    testArraySort,
+    testIteratorHelpers,
+    testArrayCallbacks,
+    testStringSplit,
+    testCsv,
+    ];
+
+for(let testFunction of functions) {
+    try {
+        testFunction();
+
+    } catch (error) {
+        assert(false, "method "+testFunction+" error "+error);
+    }
+}